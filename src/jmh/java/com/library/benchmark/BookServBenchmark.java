@@ -0,0 +1,113 @@
+package com.library.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.library.model.dto.LibroDtoIn;
+import com.library.model.dto.LibroDtoOut;
+import com.library.model.entity.Book;
+import com.library.model.entity.User;
+import com.library.model.service.BookServ;
+
+/**
+ * Throughput (ops/ms) e latenza campionata (ms/op, con percentili) delle operazioni di
+ * {@code BookServ}, a singolo thread e con più thread in concorrenza.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookServBenchmark {
+
+	static final int HOT_BOOKS = 1_000;
+
+	@Param({ "10000", "100000", "1000000" })
+	public int books;
+
+	private LibraryFixture fixture;
+	private BookServ bs;
+	private Book sample;
+	private final AtomicLong created = new AtomicLong();
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		fixture = LibraryFixture.start(books);
+		bs = fixture.bean(BookServ.class);
+		sample = Book.builder().id(1L).identificativoIsbn(LibraryFixture.isbn(1)).titolo(LibraryFixture.title(1))
+				.tipologia("Fantasy").autore("Autore").linguaggio("IT").costo(12.5)
+				.proprietario(User.builder().email(LibraryFixture.email(1)).build()).build();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		fixture.close();
+	}
+
+	/**
+	 * Libro casuale dell'intero catalogo: passa dal proxy, quindi da {@code bookCache} (limitata
+	 * a 10000 voci) e, per le chiavi non in cache, dal modello di lettura.
+	 */
+	@Benchmark
+	public LibroDtoOut findBook() {
+		long i = ThreadLocalRandom.current().nextLong(books);
+		return bs.findBook(LibraryFixture.title(i), LibraryFixture.isbn(i));
+	}
+
+	@Benchmark
+	@Threads(8)
+	public LibroDtoOut findBookContended() {
+		return findBook();
+	}
+
+	/**
+	 * Libro tra i primi {@value #HOT_BOOKS}: dopo il riscaldamento le letture sono tutte in
+	 * {@code bookCache}.
+	 */
+	@Benchmark
+	public LibroDtoOut findBookCached() {
+		long i = ThreadLocalRandom.current().nextLong(HOT_BOOKS);
+		return bs.findBook(LibraryFixture.title(i), LibraryFixture.isbn(i));
+	}
+
+	@Benchmark
+	public LibroDtoIn createDtoInParam() {
+		return bs.createDtoInParam("Nuovo " + created.incrementAndGet(), "Fantasy", "Autore", "IT", 10);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public LibroDtoIn createDtoInParamContended() {
+		return createDtoInParam();
+	}
+
+	@Benchmark
+	public LibroDtoOut libroDtoOut() {
+		return bs.libroDtoOut(sample);
+	}
+
+	@Benchmark
+	@Threads(8)
+	public LibroDtoOut libroDtoOutContended() {
+		return libroDtoOut();
+	}
+
+}
@@ -0,0 +1,142 @@
+package com.library.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+
+/**
+ * Test di carico HTTP: confronta i virtual thread con il pool di thread di piattaforma di
+ * Tomcat, a parità di client concorrenti.
+ * <p>
+ * Il gruppo {@code mixed} simula un picco di scritture durante le ricerche: 224 client
+ * cercano libri ({@code GET /api/books/find}) mentre 32 registrano utenti
+ * ({@code POST /api/users/create}). Con i thread di piattaforma i client oltre
+ * {@code tomcatThreads} restano in coda sul connettore; con i virtual thread la concorrenza è
+ * limitata solo dai bulkhead. I contatori {@code ok} e {@code rejected} riportano le risposte
+ * 2xx e i rifiuti 503 dei bulkhead.
+ * </p>
+ * <p>
+ * Esempio: {@code mvn -Pbenchmark verify -Djmh.args="HttpLoadBenchmark"}
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class HttpLoadBenchmark {
+
+	@Param({ "10000" })
+	public int books;
+
+	@Param({ "false", "true" })
+	public boolean virtualThreads;
+
+	@Param({ "200" })
+	public int tomcatThreads;
+
+	private LibraryFixture fixture;
+	private HttpClient client;
+	private String baseUrl;
+	private final AtomicLong created = new AtomicLong();
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		fixture = LibraryFixture.start(books, WebApplicationType.SERVLET,
+				"--server.port=0",
+				"--spring.threads.virtual.enabled=" + virtualThreads,
+				"--server.tomcat.threads.max=" + tomcatThreads,
+				"--server.tomcat.accept-count=1000");
+		baseUrl = "http://localhost:" + fixture.ctx.getEnvironment().getProperty("local.server.port");
+		client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(Duration.ofSeconds(10))
+				.build();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		client.close();
+		fixture.close();
+	}
+
+	/**
+	 * Risposte ricevute da un client, per distinguere il throughput utile dai rifiuti.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Responses {
+		public long ok;
+		public long rejected;
+
+		void count(int status) {
+			if (status == 503)
+				rejected++;
+			else if (status / 100 == 2)
+				ok++;
+			else
+				throw new IllegalStateException("Risposta inattesa: " + status);
+		}
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(224)
+	public int find(Responses r) throws IOException, InterruptedException {
+		long i = ThreadLocalRandom.current().nextLong(books);
+		int status = send(HttpRequest.newBuilder(uri("/api/books/find?title=" + encode(LibraryFixture.title(i))
+				+ "&isbnId=" + encode(LibraryFixture.isbn(i)))).GET());
+		r.count(status);
+		return status;
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(32)
+	public int create(Responses r) throws IOException, InterruptedException {
+		long n = created.incrementAndGet();
+		int status = send(HttpRequest.newBuilder(uri("/api/users/create?nome=Carico&cognome=Http&email="
+				+ encode("carico" + n + "@bench.it"))).POST(HttpRequest.BodyPublishers.noBody()));
+		r.count(status);
+		return status;
+	}
+
+	private int send(HttpRequest.Builder request) throws IOException, InterruptedException {
+		return client.send(request.timeout(Duration.ofSeconds(30)).build(), HttpResponse.BodyHandlers.discarding())
+				.statusCode();
+	}
+
+	private URI uri(String path) {
+		return URI.create(baseUrl + path);
+	}
+
+	private static String encode(String value) {
+		return URLEncoder.encode(value, StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,137 @@
+package com.library.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.library.LibraryApplication;
+import com.library.model.dto.ImportReportDto;
+import com.library.model.service.BookImportServ;
+
+/**
+ * Avvia l'applicazione (di default senza web) su un database H2 in memoria e lo popola con un catalogo
+ * di {@code books} libri e {@value #USERS} utenti senza libri.
+ * <p>
+ * Il libro {@code i} ha titolo {@link #title(long)} e ISBN {@link #isbn(long)}, l'utente
+ * {@code i} ha email {@link #email(long)}. Il log applicativo è ridotto a WARN e il log attività
+ * disattivato perché i risultati misurino il codice e non la scrittura su file.
+ * </p>
+ */
+final class LibraryFixture implements AutoCloseable {
+
+	static final int USERS = 1_000;
+
+	final ConfigurableApplicationContext ctx;
+	final JdbcTemplate jdbc;
+	final int books;
+
+	private LibraryFixture(ConfigurableApplicationContext ctx, int books) {
+		this.ctx = ctx;
+		this.jdbc = ctx.getBean(JdbcTemplate.class);
+		this.books = books;
+	}
+
+	static LibraryFixture start(int books) throws IOException {
+		return start(books, WebApplicationType.NONE);
+	}
+
+	/**
+	 * @param web  {@code SERVLET} per avviare anche Tomcat
+	 * @param args proprietà aggiuntive, es. {@code --server.port=0}
+	 */
+	static LibraryFixture start(int books, WebApplicationType web, String... args) throws IOException {
+
+		System.setProperty("spring.devtools.restart.enabled", "false");
+		// argomenti da riga di comando: hanno la precedenza su application.properties
+		List<String> all = new ArrayList<>(List.of("--spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+				"--spring.jmx.enabled=false",
+				"--logging.level.root=WARN",
+				"--logging.level.com.library=WARN",
+				"--logging.level.com.library.activity=OFF"));
+		all.addAll(List.of(args));
+		ConfigurableApplicationContext ctx = new SpringApplicationBuilder(LibraryApplication.class)
+				.web(web)
+				.run(all.toArray(String[]::new));
+
+		LibraryFixture f = new LibraryFixture(ctx, books);
+		f.seedUsers();
+		f.seedBooks();
+		return f;
+	}
+
+	<T> T bean(Class<T> type) {
+		return ctx.getBean(type);
+	}
+
+	static String title(long i) {
+		return "Libro " + i;
+	}
+
+	static String isbn(long i) {
+		return String.format(Locale.ROOT, "BENCH-%08d", i);
+	}
+
+	static String email(long i) {
+		return "utente" + i + "@bench.it";
+	}
+
+	private void seedUsers() {
+		jdbc.batchUpdate("insert into users (nome, cognome, email) values (?, ?, ?)", new BatchPreparedStatementSetter() {
+			@Override
+			public void setValues(PreparedStatement ps, int i) throws SQLException {
+				ps.setString(1, "Nome" + i);
+				ps.setString(2, "Cognome" + i);
+				ps.setString(3, email(i));
+			}
+
+			@Override
+			public int getBatchSize() {
+				return USERS;
+			}
+		});
+	}
+
+	/**
+	 * Popola il catalogo tramite l'import CSV, lo stesso percorso usato in produzione.
+	 */
+	private void seedBooks() throws IOException {
+
+		Path csv = Files.createTempFile("library-bench", ".csv");
+		try {
+			try (BufferedWriter w = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+				w.write("titolo,tipologia,autore,linguaggio,costo,identificativoIsbn\n");
+				for (long i = 0; i < books; i++) {
+					w.write(title(i) + ",Genere " + (i % 20) + ",Autore " + (i % 500) + "," + (i % 3 == 0 ? "EN" : "IT")
+							+ "," + (5 + i % 50) + "," + isbn(i) + "\n");
+				}
+			}
+			try (InputStream in = Files.newInputStream(csv)) {
+				ImportReportDto report = bean(BookImportServ.class).importCsv(in);
+				if (report.getImported() != books)
+					throw new IllegalStateException("Catalogo di benchmark incompleto: " + report);
+			}
+		} finally {
+			Files.deleteIfExists(csv);
+		}
+	}
+
+	@Override
+	public void close() {
+		ctx.close();
+	}
+
+}
@@ -0,0 +1,125 @@
+package com.library.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.library.model.event.BookChangedEvent;
+import com.library.model.event.BookSnapshot;
+import com.library.model.search.SuggestionTrie;
+import com.library.model.search.TrigramIndex;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Latenza campionata (con percentili) della ricerca approssimata sull'indice a trigrammi e
+ * dei suggerimenti sul trie, senza database: i titoli combinano parole casuali scelte secondo
+ * la legge di Zipf, le query sono titoli esistenti con due lettere vicine scambiate e i
+ * prefissi sono i primi caratteri di titoli esistenti.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class SearchIndexBenchmark {
+
+	/** lettere ripetute secondo la loro frequenza nell'italiano scritto */
+	private static final String LETTERS = "aaaaaaaaaaaabbccccccddddeeeeeeeeeeeffgggghiiiiiiiiiiilllllllmmmmmnnnnnnnooooooooopppqrrrrrrrssssssstttttttuuuvvvz";
+	private static final int VOCABULARY = 50_000;
+	private static final int AUTHORS = 20_000;
+
+	@Param({ "1000000" })
+	public int books;
+
+	private TrigramIndex index;
+	private SuggestionTrie trie;
+	private String[] queries;
+	private String[] prefixes;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Random random = new Random(42);
+		String[] vocabulary = new String[VOCABULARY];
+		for (int i = 0; i < VOCABULARY; i++)
+			vocabulary[i] = word(random);
+		String[] authors = new String[AUTHORS];
+		for (int i = 0; i < AUTHORS; i++)
+			authors[i] = capitalize(word(random)) + " " + capitalize(word(random));
+		// frequenza delle parole secondo la legge di Zipf, come nei titoli reali
+		double[] cumulative = new double[VOCABULARY];
+		double sum = 0;
+		for (int i = 0; i < VOCABULARY; i++)
+			cumulative[i] = sum += 1.0 / (i + 1);
+
+		index = new TrigramIndex();
+		trie = new SuggestionTrie(new SimpleMeterRegistry());
+		String[] titles = new String[books];
+		for (int i = 0; i < books; i++) {
+			int words = 2 + random.nextInt(4);
+			StringBuilder title = new StringBuilder();
+			for (int w = 0; w < words; w++) {
+				int at = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+				title.append(w == 0 ? "" : " ").append(vocabulary[Math.min(at < 0 ? -at - 1 : at, VOCABULARY - 1)]);
+			}
+			titles[i] = capitalize(title.toString());
+			BookChangedEvent created = new BookChangedEvent(null, new BookSnapshot((long) i + 1, LibraryFixture.isbn(i),
+					titles[i], "Romanzo", authors[random.nextInt(AUTHORS)], "IT", 10, null, 0, null));
+			index.onBookChanged(created);
+			trie.onBookChanged(created);
+		}
+
+		queries = new String[1_000];
+		for (int i = 0; i < queries.length; i++) {
+			String t = titles[random.nextInt(books)];
+			int at = random.nextInt(t.length() - 1);
+			// una lettera scambiata con la successiva
+			queries[i] = t.substring(0, at) + t.charAt(at + 1) + t.charAt(at) + t.substring(at + 2);
+		}
+		prefixes = new String[1_000];
+		for (int i = 0; i < prefixes.length; i++) {
+			String t = titles[random.nextInt(books)];
+			prefixes[i] = t.substring(0, 1 + random.nextInt(Math.min(t.length(), 6)));
+		}
+	}
+
+	private static String word(Random random) {
+		StringBuilder w = new StringBuilder();
+		int letters = 3 + random.nextInt(8);
+		for (int i = 0; i < letters; i++)
+			w.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+		return w.toString();
+	}
+
+	private static String capitalize(String s) {
+		return Character.toUpperCase(s.charAt(0)) + s.substring(1);
+	}
+
+	@Benchmark
+	public List<TrigramIndex.Match> fuzzySearch() {
+		return index.search(queries[ThreadLocalRandom.current().nextInt(queries.length)], 20);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public List<SuggestionTrie.Suggestion> suggest() {
+		return trie.suggest(prefixes[ThreadLocalRandom.current().nextInt(prefixes.length)], SuggestionTrie.TOP_K);
+	}
+
+}
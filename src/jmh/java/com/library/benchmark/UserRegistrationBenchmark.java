@@ -0,0 +1,82 @@
+package com.library.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.library.model.dto.UserBulkReportDto;
+import com.library.model.dto.UserDtoIn;
+import com.library.model.service.UserBulkServ;
+import com.library.model.service.UserServ;
+
+/**
+ * Utenti registrati al millisecondo: una richiesta per utente ({@code createDtoin}) contro la
+ * registrazione massiva ({@code registerAll}) a blocchi di {@value #BULK} utenti. In entrambi
+ * i casi un'operazione è un utente registrato.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserRegistrationBenchmark {
+
+	static final int BULK = 1_000;
+
+	@Param({ "10000" })
+	public int books;
+
+	private LibraryFixture fixture;
+	private UserServ us;
+	private UserBulkServ bulk;
+	private final AtomicLong registered = new AtomicLong();
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		fixture = LibraryFixture.start(books);
+		us = fixture.bean(UserServ.class);
+		bulk = fixture.bean(UserBulkServ.class);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		fixture.close();
+	}
+
+	private String nextEmail() {
+		return "nuovo" + registered.incrementAndGet() + "@bench.it";
+	}
+
+	@Benchmark
+	public UserDtoIn createUser() {
+		return us.createDtoin("Nome", "Cognome", nextEmail());
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BULK)
+	public UserBulkReportDto registerAll() {
+		List<UserDtoIn> users = new ArrayList<>(BULK);
+		for (int i = 0; i < BULK; i++)
+			users.add(new UserDtoIn("Nome", "Cognome", nextEmail()));
+		return bulk.registerAll(users);
+	}
+
+}
@@ -0,0 +1,171 @@
+package com.library.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.library.model.entity.User;
+import com.library.model.exception.BookAlreadyOwnedException;
+import com.library.model.exception.ConcurrentUpdateException;
+import com.library.model.service.UserServ;
+
+/**
+ * Throughput (ops/ms) e latenza campionata (ms/op, con percentili) delle operazioni di
+ * {@code UserServ} che modificano la proprietà dei libri.
+ * <p>
+ * Nella variante "Contended" tutti i thread si contendono un piccolo insieme di libri: i
+ * conflitti (409) fanno parte della misura.
+ * </p>
+ * <p>
+ * I libri vengono assegnati e restituiti fuori dalla misura tramite il servizio, come in
+ * produzione: versioni, contatore dei prestiti, cache e modello di lettura restano coerenti.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserServBenchmark {
+
+	static final int HOT_BOOKS = 16;
+
+	@Param({ "10000", "100000", "1000000" })
+	public int books;
+
+	private LibraryFixture fixture;
+	private UserServ us;
+	/** libri oltre HOT_BOOKS, assegnati a rotazione */
+	private final AtomicLong cursor = new AtomicLong(HOT_BOOKS);
+	private final AtomicLong users = new AtomicLong();
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		fixture = LibraryFixture.start(books);
+		us = fixture.bean(UserServ.class);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		fixture.close();
+	}
+
+	long nextBook() {
+		return HOT_BOOKS + (cursor.getAndIncrement() - HOT_BOOKS) % (books - HOT_BOOKS);
+	}
+
+	/**
+	 * Assegna all'utente un libro non ancora assegnato, a partire dal cursore; i libri di altri
+	 * utenti vengono saltati.
+	 *
+	 * @return ISBN del libro assegnato
+	 */
+	String assignFree(String email) {
+		while (true) {
+			long i = nextBook();
+			try {
+				us.bookAssignment(email, LibraryFixture.title(i), LibraryFixture.isbn(i));
+				return LibraryFixture.isbn(i);
+			} catch (BookAlreadyOwnedException | ConcurrentUpdateException e) {
+				// libro di un altro thread: si passa al successivo
+			}
+		}
+	}
+
+	/**
+	 * Utente di un thread: quando raggiunge il limite di libri li restituisce, fuori dalla
+	 * misura.
+	 */
+	@State(Scope.Thread)
+	public static class Borrower {
+		String email;
+		final List<String> borrowed = new ArrayList<>();
+
+		@Setup(Level.Trial)
+		public void setup(UserServBenchmark b) {
+			email = "lettore" + b.users.incrementAndGet() + "@bench.it";
+			b.us.createDtoin("Lettore", "Benchmark", email);
+		}
+
+		@Setup(Level.Invocation)
+		public void release(UserServBenchmark b) {
+			if (borrowed.size() < User.MAX_BOOKS)
+				return;
+			b.us.returnBooks(email, borrowed);
+			borrowed.clear();
+		}
+	}
+
+	/**
+	 * Utente con tre libri non assegnati ad altri, creato prima di ogni invocazione di
+	 * {@code removeUser}.
+	 */
+	@State(Scope.Thread)
+	public static class Leaver {
+		String email;
+
+		@Setup(Level.Invocation)
+		public void setup(UserServBenchmark b) {
+			email = "uscente" + b.users.incrementAndGet() + "@bench.it";
+			b.us.createDtoin("Uscente", "Benchmark", email);
+			for (int i = 0; i < 3; i++)
+				b.assignFree(email);
+		}
+	}
+
+	@Benchmark
+	public Object bookAssignment(Borrower u) {
+		long i = nextBook();
+		try {
+			Object dto = us.bookAssignment(u.email, LibraryFixture.title(i), LibraryFixture.isbn(i));
+			u.borrowed.add(LibraryFixture.isbn(i));
+			return dto;
+		} catch (BookAlreadyOwnedException e) {
+			// il cursore ha raggiunto un libro ancora assegnato a un altro thread
+			return e;
+		}
+	}
+
+	@Benchmark
+	@Threads(4)
+	public Object bookAssignmentContended(Borrower u) {
+		long i = ThreadLocalRandom.current().nextLong(HOT_BOOKS);
+		try {
+			us.bookAssignment(u.email, LibraryFixture.title(i), LibraryFixture.isbn(i));
+			return us.removeBook(u.email, LibraryFixture.title(i));
+		} catch (BookAlreadyOwnedException | ConcurrentUpdateException e) {
+			return e;
+		}
+	}
+
+	@Benchmark
+	public String removeUser(Leaver u) {
+		return us.removeUser(u.email);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public String removeUserContended(Leaver u) {
+		return removeUser(u);
+	}
+
+}
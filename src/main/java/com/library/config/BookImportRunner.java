@@ -0,0 +1,46 @@
+package com.library.config;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.library.model.dto.ImportReportDto;
+import com.library.model.service.BookImportServ;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Import CSV da riga di comando: all'avvio importa il file indicato da
+ * {@code library.import.file}, es.
+ * {@code java -jar library.jar --library.import.file=/percorso/catalogo.csv}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty("library.import.file")
+public class BookImportRunner implements ApplicationRunner {
+
+	@Autowired
+	private BookImportServ importServ;
+
+	@Value("${library.import.file}")
+	private Path file;
+
+	@Override
+	public void run(ApplicationArguments args) throws Exception {
+
+		log.info("Import CSV da file: {}", file);
+		try (InputStream in = Files.newInputStream(file)) {
+			ImportReportDto report = importServ.importCsv(in);
+			log.info("Import da file completato: {}", report);
+			report.getRejects().forEach(r -> log.warn("Riga scartata: {}", r));
+		}
+	}
+
+}
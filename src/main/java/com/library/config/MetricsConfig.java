@@ -0,0 +1,27 @@
+package com.library.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Abilita {@code @Timed} sui servizi: ogni metodo pubblico di una classe annotata registra
+ * il timer {@value #SERVICE_TIMER} con i tag {@code class} e {@code method}.
+ * <p>
+ * Le altre metriche (endpoint REST, cache, pool Hikari, statistiche Hibernate) sono
+ * configurate automaticamente da Actuator.
+ * </p>
+ */
+@Configuration
+public class MetricsConfig {
+
+	public static final String SERVICE_TIMER = "library.service";
+
+	@Bean
+	public TimedAspect timedAspect(MeterRegistry registry) {
+		return new TimedAspect(registry);
+	}
+
+}
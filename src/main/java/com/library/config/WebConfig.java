@@ -0,0 +1,27 @@
+package com.library.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.library.model.concurrency.BulkheadInterceptor;
+
+/**
+ * Applica i bulkhead alle API REST. Import, export e registrazione massiva sono esclusi: sono operazioni lunghe e
+ * rare, che non devono occupare a lungo i permessi delle richieste brevi.
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+	@Autowired
+	private BulkheadInterceptor bulkhead;
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(bulkhead)
+				.addPathPatterns("/api/**")
+				.excludePathPatterns("/api/books/import", "/api/books/export", "/api/users/bulk");
+	}
+
+}
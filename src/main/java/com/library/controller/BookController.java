@@ -1,6 +1,13 @@
 package com.library.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
@@ -10,10 +17,27 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.library.model.concurrency.ReadRequest;
+import com.library.model.dto.BookBatchReportDto;
+import com.library.model.dto.BookPageDto;
+import com.library.model.dto.BookSearchResultDto;
+import com.library.model.dto.CatalogStatsDto;
+import com.library.model.dto.FuzzyMatchDto;
+import com.library.model.dto.ImportReportDto;
 import com.library.model.dto.LibroDtoIn;
 import com.library.model.dto.LibroDtoOut;
+import com.library.model.dto.SuggestionDto;
+import com.library.model.io.ExportFormat;
+import com.library.model.read.Versioned;
+import com.library.model.service.BookCatalogServ;
+import com.library.model.service.BookExportServ;
+import com.library.model.service.BookImportServ;
+import com.library.model.service.BookSearchServ;
 import com.library.model.service.BookServ;
+import com.library.model.stats.CatalogStatistics;
 
 import io.swagger.v3.oas.annotations.Operation;
 
@@ -29,11 +53,11 @@ public class BookController {
 	 *	UPDATE				<V>
 	 *	DELETE				<V>
 	 * OPERAZIONI BATCH		<X>	// Inserimento/rimozione multipla
-	 * FILE READING			<X>	// Import/export CSV/Excel/PDF
-	 * PAGINAZIONE & SORT	<X>	// Gestione risultati in modo scalabile
-	 * RICERCA AVANZATA		<X>	// Filtro per titolo, autore, prezzo, lingua, tipo
+	 * FILE READING			<V>
+	 * PAGINAZIONE & SORT	<V>
+	 * RICERCA AVANZATA		<V>
 	 * VALIDAZIONE INPUT	<V>
-	 * STATISTICHE			<X>	// Totali, medie, libri per autore (o altro?).
+	 * STATISTICHE			<V>
 	 * LOG ATTIVITÀ			<V>
 	 * GESTIONE ERRORI		<V>
 	 * SUPPORTO LINGUA		<X>	// Supporto multilingua nelle risposte
@@ -41,6 +65,16 @@ public class BookController {
 	
 	@Autowired
 	private BookServ serv;
+	@Autowired
+	private BookCatalogServ catalog;
+	@Autowired
+	private BookSearchServ search;
+	@Autowired
+	private BookImportServ importServ;
+	@Autowired
+	private BookExportServ exportServ;
+	@Autowired
+	private CatalogStatistics stats;
 
 	@Operation(summary = "Crea libro", description = "Inserisci un nuovo libro nel sistema con dei parametri")
 	@PostMapping("/create")
@@ -49,11 +83,23 @@ public class BookController {
 		return serv.createDtoInParam(title, type, author, language, price);
 	}
 
-	@Operation(summary = "Trova libro", description = "Trova il libro con gli stessi campi inseriti")
+	@Operation(summary = "Trova libro", description = "Trova il libro con gli stessi campi inseriti. "
+			+ "Risponde con ETag e Last-Modified; con If-None-Match / If-Modified-Since restituisce 304 se invariato")
 	@GetMapping("/find")
-	public LibroDtoOut findBook(@RequestParam String title, @RequestParam String isbnId) {
+	public LibroDtoOut findBook(@RequestParam String title, @RequestParam String isbnId, WebRequest request) {
+
+		Versioned<LibroDtoOut> book = serv.findBookVersioned(title, isbnId);
+		// il 304 si decide dalla versione, senza costruire il DTO
+		return request.checkNotModified(book.etag(), book.lastModified()) ? null : book.get();
+	}
+
+	@Operation(summary = "Lettura multipla", description = "Restituisce i libri di una lista JSON di ISBN, "
+			+ "nello stesso ordine; gli ISBN inesistenti sono riportati nella singola voce")
+	@ReadRequest
+	@PostMapping(value = "/batch-get", consumes = MediaType.APPLICATION_JSON_VALUE)
+	public BookBatchReportDto batchGet(@RequestBody List<String> isbns) {
 
-		return serv.findBook(title, isbnId);
+		return catalog.findBooks(isbns);
 	}
 
 	@Operation(summary = "Cancella libro", description = "Cancella il libro secondo i filtri inseriti")
@@ -81,4 +127,67 @@ public class BookController {
 
 	}
 
+	@Operation(summary = "Elenco libri", description = "Elenco paginato e ordinabile (titolo, autore, costo, tipologia). "
+			+ "Per la pagina successiva passare il token restituito")
+	@GetMapping
+	public BookPageDto listBooks(@RequestParam(defaultValue = "titolo") String sort,
+			@RequestParam(defaultValue = "asc") String direction, @RequestParam(defaultValue = "20") int size,
+			@RequestParam(required = false) String token) {
+
+		return catalog.listBooks(sort, direction, size, token);
+	}
+
+	@Operation(summary = "Ricerca avanzata", description = "Filtra i libri per autore, tipologia, lingua e intervallo di prezzo")
+	@GetMapping("/search")
+	public BookSearchResultDto searchBooks(@RequestParam(required = false) String author,
+			@RequestParam(required = false) String type, @RequestParam(required = false) String language,
+			@RequestParam(required = false) Double minPrice, @RequestParam(required = false) Double maxPrice,
+			@RequestParam(defaultValue = "20") int limit) {
+
+		return search.search(author, type, language, minPrice, maxPrice, limit);
+	}
+
+	@Operation(summary = "Ricerca approssimata", description = "Cerca per titolo o autore tollerando errori di battitura; "
+			+ "risultati ordinati per somiglianza")
+	@GetMapping("/fuzzy")
+	public List<FuzzyMatchDto> fuzzySearch(@RequestParam String q, @RequestParam(defaultValue = "20") int limit) {
+
+		return search.fuzzySearch(q, limit);
+	}
+
+	@Operation(summary = "Suggerimenti", description = "Titoli e autori che iniziano con il prefisso, "
+			+ "prima quelli con più libri")
+	@GetMapping("/suggest")
+	public List<SuggestionDto> suggest(@RequestParam String prefix, @RequestParam(defaultValue = "10") int limit) {
+
+		return search.suggest(prefix, limit);
+	}
+
+	@Operation(summary = "Import CSV", description = "Importa in blocco un file CSV di libri. Intestazione: "
+			+ "titolo,tipologia,autore,linguaggio,costo[,identificativoIsbn]")
+	@PostMapping(value = "/import", consumes = { "text/csv", MediaType.TEXT_PLAIN_VALUE,
+			MediaType.APPLICATION_OCTET_STREAM_VALUE })
+	public ImportReportDto importBooks(InputStream body) throws IOException {
+
+		return importServ.importCsv(body);
+	}
+
+	@Operation(summary = "Export catalogo", description = "Esporta in streaming l'intero catalogo in formato csv o ndjson")
+	@GetMapping("/export")
+	public ResponseEntity<StreamingResponseBody> exportBooks(@RequestParam(defaultValue = "csv") String format) {
+
+		ExportFormat f = ExportFormat.from(format);
+		return ResponseEntity.ok()
+				.contentType(MediaType.parseMediaType(f.getMediaType()))
+				.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"books." + f.getExtension() + "\"")
+				.body(out -> exportServ.exportBooks(f, out));
+	}
+
+	@Operation(summary = "Statistiche catalogo", description = "Totali, venduti e prezzo medio per autore, tipologia e lingua")
+	@GetMapping("/stats")
+	public CatalogStatsDto catalogStats() {
+
+		return stats.catalog();
+	}
+
 }
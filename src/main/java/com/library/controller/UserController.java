@@ -1,6 +1,12 @@
 package com.library.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.List;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -10,10 +16,18 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
+import com.library.model.audit.AuditLog;
+import com.library.model.dto.AuditEntryDto;
+import com.library.model.dto.UserBulkReportDto;
 import com.library.model.dto.UserDtoIn;
 import com.library.model.dto.UserDtoOut;
+import com.library.model.dto.UserStatsDto;
+import com.library.model.read.Versioned;
+import com.library.model.service.UserBulkServ;
 import com.library.model.service.UserServ;
+import com.library.model.stats.CatalogStatistics;
 
 import io.swagger.v3.oas.annotations.Operation;
 import jakarta.validation.constraints.NotBlank;
@@ -30,7 +44,7 @@ public class UserController {
 	 *	READ				<V>
 	 *	UPDATE				<V>
 	 *	DELETE				<V>
-	 * OPERAZIONI BATCH		<X>	// Inserimento/rimozione multipla
+	 * OPERAZIONI BATCH		<X>	// Rimozione multipla (inserimento multiplo <V>)
 	 * FILE READING			<X>	// Import/export CSV/Excel/PDF
 	 * VALIDAZIONE INPUT	<V>
 	 * LOG ATTIVITÀ			<V>
@@ -40,14 +54,20 @@ public class UserController {
 	 * EXPORT PDF			<X>	// Esporta profilo utente in PDF
 	 * VERIFICA ESISTENZA	<V>
 	 * RESET DATI			<X>	// Resetta i dati utente (eccetto email)
-	 * AUDIT TRAIL			<X>	// Storico modifiche dell’utente
-	 * STATISTICHE SISTEMA	<X>	// Statistiche utenti/libri
+	 * AUDIT TRAIL			<V>
+	 * STATISTICHE SISTEMA	<V>
 	 * ENDPOINT TEST		<X>	// ping o health check
-	 * CONTROLLO ACQUISTO	<X> // due o più utenti possono prelevare lo stesso libro (scambio di proprietà)
+	 * CONTROLLO ACQUISTO	<V>
 	 */
 
 	@Autowired
 	private UserServ user;
+	@Autowired
+	private UserBulkServ bulk;
+	@Autowired
+	private CatalogStatistics stats;
+	@Autowired
+	private AuditLog audit;
 
 	@Operation(summary = "Registra un nuovo utente", description = "Registra un nuovo utente nel sistema")
 	@PostMapping("/create")
@@ -56,6 +76,23 @@ public class UserController {
 		return user.createDtoin(nome, cognome, email);
 	}
 
+	@Operation(summary = "Registrazione massiva", description = "Registra in blocco una lista JSON di utenti "
+			+ "(name, surname, email) e restituisce l'esito di ogni voce")
+	@PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+	public UserBulkReportDto saveUsers(@RequestBody List<UserDtoIn> users) {
+
+		return bulk.registerAll(users);
+	}
+
+	@Operation(summary = "Registrazione massiva CSV", description = "Registra in blocco gli utenti di un file CSV. "
+			+ "Intestazione: nome,cognome,email")
+	@PostMapping(value = "/bulk", consumes = { "text/csv", MediaType.TEXT_PLAIN_VALUE,
+			MediaType.APPLICATION_OCTET_STREAM_VALUE })
+	public UserBulkReportDto saveUsersCsv(InputStream body) throws IOException {
+
+		return bulk.registerCsv(body);
+	}
+
 	@Operation(summary = "Assegna libro", description = "Assegna un libro a utente indicato")
 	@PatchMapping("/buy")
 	public UserDtoOut assignUserBook(@RequestParam @NotBlank String email, @RequestParam @NotBlank String bookName,
@@ -65,11 +102,14 @@ public class UserController {
 
 	}
 
-	@Operation(summary = "Trova una persona", description = "Ricerca una persona tramite Email")
+	@Operation(summary = "Trova una persona", description = "Ricerca una persona tramite Email. "
+			+ "Risponde con ETag e Last-Modified; con If-None-Match / If-Modified-Since restituisce 304 se invariata")
 	@GetMapping("/find")
-	public UserDtoOut findUser(@RequestParam @NotBlank String email) {
+	public UserDtoOut findUser(@RequestParam @NotBlank String email, WebRequest request) {
 
-		return user.findUser(email);
+		Versioned<UserDtoOut> u = user.findUserVersioned(email);
+		// il 304 si decide dalle versioni di utente e libri, senza costruire il DTO
+		return request.checkNotModified(u.etag(), u.lastModified()) ? null : u.get();
 	}
 
 	@Operation(summary = "Rimuovi una persona", description = "rimuovi una persona tramite Email")
@@ -102,4 +142,29 @@ public class UserController {
 		return user.removeBook(email, nomeLibro);
 	}
 
+	@Operation(summary = "Restituisci libri", description = "Restituisce in blocco i libri (lista JSON di ISBN) "
+			+ "in possesso di un User")
+	@PatchMapping("/return")
+	public UserDtoOut returnBooks(@RequestParam @NotBlank String email, @RequestBody List<String> isbns) {
+
+		return user.returnBooks(email, isbns);
+	}
+
+	@Operation(summary = "Statistiche sistema", description = "Numero di utenti e libri, utenti per numero di libri posseduti")
+	@GetMapping("/stats")
+	public UserStatsDto userStats() {
+
+		return stats.users();
+	}
+
+	@Operation(summary = "Storico modifiche", description = "Modifiche ai dati dell'utente e ai libri assegnati o "
+			+ "restituiti tra from e to (ISO-8601, facoltativi), in ordine di tempo: chi, cosa, dati prima e dopo")
+	@GetMapping("/audit")
+	public List<AuditEntryDto> auditTrail(@RequestParam @NotBlank String email,
+			@RequestParam(required = false) Instant from, @RequestParam(required = false) Instant to,
+			@RequestParam(defaultValue = "100") int limit) {
+
+		return audit.history(email, from, to, limit);
+	}
+
 }
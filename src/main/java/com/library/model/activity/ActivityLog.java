@@ -0,0 +1,69 @@
+package com.library.model.activity;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.spi.LoggingEventBuilder;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Log delle attività degli utenti sul sistema (creazioni, modifiche, acquisti, letture).
+ * <p>
+ * Ogni attività è un evento strutturato: il nome dell'operazione più coppie chiave/valore,
+ * scritte in JSON dal logger {@value #LOGGER} (vedi {@code logback-spring.xml}) tramite un
+ * appender asincrono. I valori non vengono formattati dal thread della richiesta ma dal
+ * thread dell'appender, quindi devono essere immutabili (stringhe, numeri): mai entità.
+ * </p>
+ * <p>
+ * Le letture ad alto volume si possono campionare per operazione, es.
+ * {@code library.activity.sampling.findBook=0.01} registra circa un evento su cento; gli
+ * eventi campionati riportano il campo {@code sampleRate}.
+ * </p>
+ */
+@Component
+@ConfigurationProperties(prefix = "library.activity")
+@Getter
+@Setter
+public class ActivityLog {
+
+	public static final String LOGGER = "com.library.activity";
+
+	private static final Logger log = LoggerFactory.getLogger(LOGGER);
+
+	/** operazione → frazione di eventi registrati, tra 0 e 1 (assente = tutti) */
+	private Map<String, Double> sampling = new HashMap<>();
+
+	/**
+	 * Registra un'attività, se il logger è abilitato e l'evento supera il campionamento.
+	 *
+	 * @param operation nome dell'operazione, es. {@code bookAssignment}
+	 * @param keyValues coppie chiave, valore
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public void record(String operation, Object... keyValues) {
+
+		if (!log.isInfoEnabled())
+			return;
+
+		Double rate = sampling.get(operation);
+		boolean sampled = rate != null && rate < 1;
+		if (sampled && ThreadLocalRandom.current().nextDouble() >= rate)
+			return;
+
+		LoggingEventBuilder event = log.atInfo().setMessage(operation).addKeyValue("operation", operation);
+		for (int i = 0; i + 1 < keyValues.length; i += 2)
+			event = event.addKeyValue(String.valueOf(keyValues[i]), keyValues[i + 1]);
+		if (sampled)
+			event = event.addKeyValue("sampleRate", rate);
+		event.log();
+	}
+
+}
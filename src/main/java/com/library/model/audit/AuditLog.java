@@ -0,0 +1,535 @@
+package com.library.model.audit;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.model.dto.AuditEntryDto;
+import com.library.model.event.BookChangedEvent;
+import com.library.model.event.UserChangedEvent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Registro di audit delle modifiche a utenti e libri: chi, cosa, dati prima e dopo.
+ * <p>
+ * I record vengono raccolti dagli eventi di {@code UserServ} e {@code BookServ} dopo il commit
+ * e accodati: la richiesta non scrive nulla nella propria transazione. Un solo thread svuota
+ * la coda a blocchi di {@value #MAX_BATCH} record, li aggiunge al segmento attivo
+ * ({@link AuditSegment}, file mappato in memoria) e ne forza la scrittura su disco una volta
+ * per blocco. Se la coda ({@code library.audit.queue-capacity}) è piena la richiesta attende:
+ * nessun record viene scartato.
+ * </p>
+ * <p>
+ * Il registro è append-only e diviso in segmenti di {@code library.audit.segment-size}, chiusi
+ * anche dopo {@code library.audit.roll-interval}. Ogni record porta in chiaro le email degli
+ * utenti coinvolti (l'utente modificato, il proprietario del libro prima e dopo): la ricerca
+ * "modifiche dell'utente X tra T1 e T2" salta i segmenti fuori dall'intervallo e, in quelli
+ * rimasti, parte dalla voce dell'indice sparso che precede T1. Una volta al giorno
+ * ({@code library.audit.compaction-interval}) i segmenti più vecchi di
+ * {@code library.audit.retention} vengono cancellati e quelli piccoli consecutivi (es. chiusi
+ * a ogni riavvio) uniti in uno solo, senza modificare i record.
+ * </p>
+ * <p>
+ * Il registro è locale all'istanza: ogni istanza usa la prima sottocartella libera di
+ * {@code library.audit.dir} e registra le modifiche fatte da lei. La registrazione in blocco
+ * degli utenti emette un evento per ogni utente creato ed è registrata come le creazioni
+ * singole; l'import CSV dei libri invece emette solo {@code CatalogReloadEvent}, quindi i libri
+ * importati non compaiono nel registro.
+ * </p>
+ */
+@Slf4j
+@Component
+public class AuditLog {
+
+	static final String RECORDS_METRIC = "library.audit.records";
+	static final String BLOCKED_METRIC = "library.audit.blocked";
+	static final String QUEUE_METRIC = "library.audit.queue";
+	static final String BYTES_METRIC = "library.audit.bytes";
+
+	static final int MAX_BATCH = 1024;
+	public static final int MAX_LIMIT = 1000;
+	static final String SYSTEM_ACTOR = "sistema";
+
+	private static final String LOCK_FILE = ".lock";
+
+	/**
+	 * Record in attesa di scrittura: i dati sono immutabili (snapshot), la serializzazione
+	 * avviene nel thread di scrittura.
+	 */
+	private record Pending(long time, String actor, String entity, String action, Object before, Object after,
+			Set<String> keys) {
+	}
+
+	/**
+	 * Contenuto JSON di un record, letto come {@link AuditEntryDto}.
+	 */
+	private record Entry(Instant at, String actor, String entity, String action, Object before, Object after) {
+	}
+
+	private final ObjectMapper mapper;
+	private final Path dir;
+	private final int segmentSize;
+	private final Duration retention;
+	private final Duration rollInterval;
+	private final BlockingQueue<Pending> queue;
+	private final Counter records;
+	private final Counter blocked;
+
+	private final FileChannel lockChannel;
+	private final FileLock lock;
+	/** modifiche alla lista dei segmenti: chiusura del segmento attivo, retention e compattazione */
+	private final ReentrantLock segmentsLock = new ReentrantLock();
+	/** segmenti in ordine di tempo, l'ultimo è quello attivo; sostituita a ogni modifica */
+	private volatile List<AuditSegment> segments;
+	private long nextId;
+	private long lastTime;
+
+	private final AtomicLong enqueued = new AtomicLong();
+	private volatile long written;
+	private volatile boolean running = true;
+	private final Thread writer;
+
+	public AuditLog(ObjectMapper mapper, MeterRegistry registry,
+			@Value("${library.audit.dir:${user.home}/libreriaAudit}") Path baseDir,
+			@Value("${library.audit.segment-size:64MB}") DataSize segmentSize,
+			@Value("${library.audit.queue-capacity:65536}") int queueCapacity,
+			@Value("${library.audit.retention:P365D}") Duration retention,
+			@Value("${library.audit.roll-interval:P1D}") Duration rollInterval) {
+		this.mapper = mapper;
+		this.segmentSize = (int) Math.min(Integer.MAX_VALUE, segmentSize.toBytes());
+		this.retention = retention;
+		this.rollInterval = rollInterval;
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.records = registry.counter(RECORDS_METRIC);
+		this.blocked = registry.counter(BLOCKED_METRIC);
+
+		try {
+			Files.createDirectories(baseDir);
+			// la prima sottocartella non in uso da un'altra istanza (o da un altro contesto)
+			Path d;
+			FileChannel ch;
+			FileLock l;
+			for (int n = 0;; n++) {
+				d = Files.createDirectories(baseDir.resolve(String.valueOf(n)));
+				ch = FileChannel.open(d.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+				l = tryLock(ch);
+				if (l != null)
+					break;
+				ch.close();
+			}
+			this.dir = d;
+			this.lockChannel = ch;
+			this.lock = l;
+			this.segments = openSegments();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Registro di audit non disponibile in " + baseDir, e);
+		}
+
+		Gauge.builder(QUEUE_METRIC, queue, BlockingQueue::size).register(registry);
+		Gauge.builder(BYTES_METRIC, this, a -> a.segments.stream().mapToLong(AuditSegment::size).sum())
+				.register(registry);
+
+		writer = Thread.ofPlatform().name("audit-writer").daemon(true).start(this::drain);
+		log.info("Registro di audit in {}: {} segmenti", dir, segments.size());
+	}
+
+	private static FileLock tryLock(FileChannel ch) throws IOException {
+		try {
+			return ch.tryLock();
+		} catch (OverlappingFileLockException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Apre i segmenti della cartella, scarta quelli già inclusi in un segmento compattato
+	 * (compattazione interrotta) e crea il nuovo segmento attivo.
+	 */
+	private List<AuditSegment> openSegments() throws IOException {
+
+		List<Path> files;
+		try (Stream<Path> s = Files.list(dir)) {
+			files = s.toList();
+		}
+		List<long[]> ranges = new ArrayList<>();
+		for (Path f : files) {
+			if (f.getFileName().toString().endsWith(".tmp"))
+				Files.deleteIfExists(f);
+			long[] ids = AuditSegment.ids(f);
+			if (ids != null)
+				ranges.add(ids);
+		}
+		// a parità di primo id prima il segmento più ampio, che include gli altri
+		ranges.sort(Comparator.<long[]>comparingLong(r -> r[0]).thenComparing(r -> -r[1]));
+
+		List<AuditSegment> opened = new ArrayList<>();
+		long covered = -1;
+		for (long[] r : ranges) {
+			Path f = dir.resolve(AuditSegment.name(r[0], r[1]));
+			if (r[1] <= covered) {
+				Files.deleteIfExists(f.resolveSibling(f.getFileName().toString().replace(".log", ".idx")));
+				Files.deleteIfExists(f);
+				continue;
+			}
+			covered = r[1];
+			AuditSegment s = AuditSegment.open(f);
+			if (s.isEmpty())
+				s.delete();
+			else
+				opened.add(s);
+		}
+
+		nextId = covered + 1;
+		lastTime = opened.isEmpty() ? Long.MIN_VALUE : opened.get(opened.size() - 1).lastTime();
+		opened.add(AuditSegment.create(dir, nextId++, segmentSize));
+		return List.copyOf(opened);
+	}
+
+	/**
+	 * Registra la modifica di un libro; le chiavi sono il proprietario prima e dopo.
+	 *
+	 * @param e evento di modifica
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onBookChanged(BookChangedEvent e) {
+
+		Set<String> keys = new LinkedHashSet<>(2);
+		if (e.before() != null && e.before().proprietario() != null)
+			keys.add(e.before().proprietario());
+		if (e.after() != null && e.after().proprietario() != null)
+			keys.add(e.after().proprietario());
+		append("BOOK", action(e.isCreate(), e.isDelete()), e.before(), e.after(), keys);
+	}
+
+	/**
+	 * Registra la creazione, modifica o cancellazione di un utente; le chiavi sono l'email
+	 * prima e dopo.
+	 *
+	 * @param e evento di modifica
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onUserChanged(UserChangedEvent e) {
+
+		Set<String> keys = new LinkedHashSet<>(2);
+		if (e.before() != null)
+			keys.add(e.before().email());
+		if (e.after() != null)
+			keys.add(e.after().email());
+		append("USER", action(e.isCreate(), e.isDelete()), e.before(), e.after(), keys);
+	}
+
+	private static String action(boolean create, boolean delete) {
+		return create ? "CREATE" : delete ? "DELETE" : "UPDATE";
+	}
+
+	/**
+	 * Accoda un record per il thread di scrittura. Con la coda piena attende che si liberi.
+	 *
+	 * @param entity tipo di entità modificata, es. {@code USER}
+	 * @param action {@code CREATE}, {@code UPDATE} o {@code DELETE}
+	 * @param before dati prima della modifica, {@code null} per una creazione
+	 * @param after  dati dopo la modifica, {@code null} per una cancellazione
+	 * @param keys   email degli utenti coinvolti, usate dalla ricerca
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public void append(String entity, String action, Object before, Object after, Set<String> keys) {
+
+		Pending p = new Pending(System.currentTimeMillis(), actor(), entity, action, before, after, keys);
+		enqueued.incrementAndGet();
+		if (queue.offer(p))
+			return;
+		blocked.increment();
+		try {
+			queue.put(p);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			enqueued.decrementAndGet();
+			log.error("Record di audit non registrato: {} {} {}", entity, action, keys);
+		}
+	}
+
+	/**
+	 * @return l'utente autenticato della richiesta, altrimenti l'indirizzo del client;
+	 *         {@value #SYSTEM_ACTOR} fuori da una richiesta HTTP
+	 */
+	private static String actor() {
+
+		if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes a) {
+			HttpServletRequest r = a.getRequest();
+			return r.getRemoteUser() != null ? r.getRemoteUser() : r.getRemoteAddr();
+		}
+		return SYSTEM_ACTOR;
+	}
+
+	private void drain() {
+
+		List<Pending> batch = new ArrayList<>(MAX_BATCH);
+		while (running || !queue.isEmpty()) {
+			try {
+				Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first != null) {
+					batch.add(first);
+					queue.drainTo(batch, MAX_BATCH - 1);
+					write(batch);
+					written += batch.size();
+					batch.clear();
+				}
+				rollIfOld();
+			} catch (InterruptedException e) {
+				running = false;
+			} catch (IOException | RuntimeException e) {
+				log.error("Scrittura del registro di audit non riuscita: {} record persi", batch.size(), e);
+				written += batch.size();
+				batch.clear();
+			}
+		}
+	}
+
+	private void write(List<Pending> batch) throws IOException {
+
+		for (Pending p : batch) {
+			// il tempo non decresce lungo il registro, anche con richieste concorrenti
+			long time = Math.max(p.time(), lastTime);
+			byte[] payload = payload(p, time);
+			byte[][] keys = p.keys().stream().map(AuditSegment::utf8).toArray(byte[][]::new);
+
+			if (!active().append(time, keys, payload)) {
+				roll();
+				if (!active().append(time, keys, payload)) {
+					log.error("Record di audit più grande di un segmento ({} byte): {} {}", payload.length, p.entity(),
+							p.action());
+					continue;
+				}
+			}
+			lastTime = time;
+		}
+		active().force();
+		records.increment(batch.size());
+	}
+
+	private byte[] payload(Pending p, long time) throws JsonProcessingException {
+		return mapper.writeValueAsBytes(
+				new Entry(Instant.ofEpochMilli(time), p.actor(), p.entity(), p.action(), p.before(), p.after()));
+	}
+
+	private AuditSegment active() {
+		List<AuditSegment> s = segments;
+		return s.get(s.size() - 1);
+	}
+
+	private void rollIfOld() throws IOException {
+		AuditSegment a = active();
+		if (!a.isEmpty() && a.firstTime() < System.currentTimeMillis() - rollInterval.toMillis())
+			roll();
+	}
+
+	/**
+	 * Chiude il segmento attivo e ne apre uno nuovo. Chiamato dal thread di scrittura.
+	 */
+	private void roll() throws IOException {
+
+		AuditSegment next = AuditSegment.create(dir, nextId++, segmentSize);
+		segmentsLock.lock();
+		try {
+			AuditSegment current = active();
+			current.seal();
+			List<AuditSegment> l = new ArrayList<>(segments);
+			if (current.isEmpty()) {
+				l.remove(current);
+				current.delete();
+			}
+			l.add(next);
+			segments = List.copyOf(l);
+		} finally {
+			segmentsLock.unlock();
+		}
+		log.debug("Nuovo segmento di audit {}", next.file.getFileName());
+	}
+
+	/**
+	 * Restituisce le modifiche che coinvolgono l'utente indicato, in ordine di tempo. I record
+	 * ancora in coda non sono inclusi.
+	 *
+	 * @param email email dell'utente (anche precedente a una modifica)
+	 * @param from  inizio dell'intervallo, incluso ({@code null} = dall'inizio)
+	 * @param to    fine dell'intervallo, inclusa ({@code null} = fino ad ora)
+	 * @param limit numero massimo di record, al più {@value #MAX_LIMIT}
+	 * @return i record trovati, i più vecchi per primi
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public List<AuditEntryDto> history(String email, Instant from, Instant to, int limit) {
+
+		long f = from != null ? from.toEpochMilli() : Long.MIN_VALUE;
+		long t = to != null ? to.toEpochMilli() : Long.MAX_VALUE;
+		int max = Math.max(1, Math.min(limit, MAX_LIMIT));
+		byte[] key = AuditSegment.utf8(email);
+
+		List<byte[]> payloads = new ArrayList<>();
+		for (AuditSegment s : segments) {
+			if (s.isEmpty() || s.lastTime() < f || s.firstTime() > t)
+				continue;
+			if (!s.scan(key, f, t, max, payloads))
+				break;
+		}
+
+		List<AuditEntryDto> result = new ArrayList<>(payloads.size());
+		for (byte[] p : payloads) {
+			try {
+				result.add(mapper.readValue(p, AuditEntryDto.class));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Applica la retention (cancella i segmenti chiusi più vecchi di
+	 * {@code library.audit.retention}) e unisce i segmenti chiusi consecutivi finché la somma
+	 * resta entro la dimensione di un segmento.
+	 *
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@Scheduled(fixedDelayString = "${library.audit.compaction-interval:P1D}",
+			initialDelayString = "${library.audit.compaction-interval:P1D}")
+	public void compact() {
+
+		long expired = System.currentTimeMillis() - retention.toMillis();
+		List<AuditSegment> sealed = segments.stream().filter(AuditSegment::isSealed).toList();
+
+		List<AuditSegment> dropped = new ArrayList<>();
+		List<List<AuditSegment>> groups = new ArrayList<>();
+		List<AuditSegment> group = new ArrayList<>();
+		long groupSize = 0;
+		for (AuditSegment s : sealed) {
+			if (s.lastTime() < expired) {
+				dropped.add(s);
+				continue;
+			}
+			if (groupSize + s.size() > segmentSize) {
+				groups.add(group);
+				group = new ArrayList<>();
+				groupSize = 0;
+			}
+			group.add(s);
+			groupSize += s.size() - AuditSegment.HEADER;
+		}
+		groups.add(group);
+
+		List<AuditSegment[]> merged = new ArrayList<>();
+		for (List<AuditSegment> g : groups) {
+			if (g.size() < 2)
+				continue;
+			try {
+				merged.add(new AuditSegment[] { g.get(0), g.get(g.size() - 1), AuditSegment.merge(dir, g) });
+			} catch (IOException e) {
+				log.error("Compattazione dei segmenti di audit non riuscita", e);
+			}
+		}
+		if (dropped.isEmpty() && merged.isEmpty())
+			return;
+
+		List<AuditSegment> removed = new ArrayList<>(dropped);
+		segmentsLock.lock();
+		try {
+			List<AuditSegment> l = new ArrayList<>(segments);
+			l.removeAll(dropped);
+			for (AuditSegment[] m : merged) {
+				int first = l.indexOf(m[0]);
+				int last = l.indexOf(m[1]);
+				List<AuditSegment> parts = l.subList(first, last + 1);
+				removed.addAll(parts);
+				parts.clear();
+				l.add(first, m[2]);
+			}
+			segments = List.copyOf(l);
+		} finally {
+			segmentsLock.unlock();
+		}
+
+		for (AuditSegment s : removed) {
+			try {
+				s.delete();
+			} catch (IOException e) {
+				log.warn("Segmento di audit {} non cancellato, verrà rimosso al riavvio", s.file.getFileName());
+			}
+		}
+		log.info("Registro di audit compattato: {} segmenti scaduti, {} unioni", dropped.size(), merged.size());
+	}
+
+	/**
+	 * Attende che i record accodati fino ad ora siano scritti.
+	 */
+	void awaitWritten() throws InterruptedException {
+		long target = enqueued.get();
+		while (written < target)
+			Thread.sleep(5);
+	}
+
+	int segmentCount() {
+		return segments.size();
+	}
+
+	/**
+	 * Scrive i record ancora in coda e chiude il segmento attivo.
+	 */
+	@PreDestroy
+	public void close() throws IOException, InterruptedException {
+
+		running = false;
+		writer.join(TimeUnit.SECONDS.toMillis(30));
+		segmentsLock.lock();
+		try {
+			AuditSegment a = active();
+			a.seal();
+			if (a.isEmpty())
+				a.delete();
+		} finally {
+			segmentsLock.unlock();
+		}
+		lock.release();
+		lockChannel.close();
+	}
+
+}
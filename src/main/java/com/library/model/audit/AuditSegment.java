@@ -0,0 +1,403 @@
+package com.library.model.audit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Un segmento del registro di audit: un file mappato in memoria con i record in ordine di
+ * tempo e un indice sparso (tempo, posizione) tenuto in memoria.
+ * <p>
+ * Il file inizia con {@value #MAGIC} e la versione del formato; ogni record è
+ * {@code [lunghezza][crc32][tempo][numero chiavi][chiavi][payload]}, dove lunghezza e crc
+ * coprono i byte successivi al crc e le chiavi (email degli utenti coinvolti) sono in chiaro
+ * per filtrare senza leggere il payload. Una lunghezza zero, o un crc errato dopo uno
+ * spegnimento improvviso, segna la fine dei dati.
+ * </p>
+ * <p>
+ * Il segmento attivo viene creato della dimensione massima e scritto da un solo thread; la
+ * posizione di fine dei dati è pubblicata dopo ogni record, quindi le letture concorrenti
+ * vedono solo record completi. Chiuso il segmento ({@link #seal()}), il file viene ridotto
+ * ai dati scritti e l'indice salvato nel file {@code .idx}, così all'avvio non va riletto.
+ * Il nome {@code <primo>-<ultimo>.log} indica gli id dei segmenti contenuti: un segmento
+ * compattato ne raccoglie più di uno.
+ * </p>
+ */
+@Slf4j
+final class AuditSegment {
+
+	static final int MAGIC = 0x41554454;
+	static final int FORMAT = 1;
+	static final int HEADER = 8;
+	/** lunghezza e crc */
+	static final int RECORD_PREFIX = 8;
+	/** una voce dell'indice sparso ogni tanti byte di record */
+	static final int INDEX_INTERVAL = 4096;
+
+	private static final Pattern NAME = Pattern.compile("(\\d+)-(\\d+)\\.log");
+
+	final Path file;
+	final long firstId;
+	final long lastId;
+
+	private volatile MappedByteBuffer buffer;
+	/** fine dei dati: i byte prima di questa posizione sono record completi */
+	private volatile int size;
+	/** coppie (tempo, posizione); le voci fino a indexSize sono visibili ai lettori */
+	private volatile long[] index = new long[64];
+	private volatile int indexSize;
+	private int lastIndexed = -INDEX_INTERVAL;
+	private volatile long firstTime = Long.MAX_VALUE;
+	private volatile long lastTime = Long.MIN_VALUE;
+	private volatile boolean sealed;
+
+	private AuditSegment(Path file, long firstId, long lastId) {
+		this.file = file;
+		this.firstId = firstId;
+		this.lastId = lastId;
+	}
+
+	static String name(long firstId, long lastId) {
+		return String.format("%020d-%020d.log", firstId, lastId);
+	}
+
+	/**
+	 * @return gli id (primo, ultimo) dal nome del file, {@code null} se non è un segmento
+	 */
+	static long[] ids(Path file) {
+		Matcher m = NAME.matcher(file.getFileName().toString());
+		return m.matches() ? new long[] { Long.parseLong(m.group(1)), Long.parseLong(m.group(2)) } : null;
+	}
+
+	/**
+	 * Crea un nuovo segmento attivo della capacità indicata.
+	 */
+	static AuditSegment create(Path dir, long id, int capacity) throws IOException {
+
+		AuditSegment s = new AuditSegment(dir.resolve(name(id, id)), id, id);
+		try (FileChannel ch = FileChannel.open(s.file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			s.buffer = ch.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+		}
+		s.buffer.putInt(0, MAGIC).putInt(4, FORMAT);
+		s.size = HEADER;
+		return s;
+	}
+
+	/**
+	 * Apre un segmento esistente, di sola lettura. Senza un indice valido (segmento attivo
+	 * al momento di uno spegnimento improvviso) i record vengono riletti e il segmento chiuso.
+	 */
+	static AuditSegment open(Path file) throws IOException {
+
+		long[] ids = ids(file);
+		AuditSegment s = new AuditSegment(file, ids[0], ids[1]);
+		try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+			s.buffer = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+		}
+		if (s.buffer.capacity() < HEADER || s.buffer.getInt(0) != MAGIC)
+			throw new IOException("Segmento di audit non valido: " + file);
+
+		if (s.loadIndex()) {
+			s.sealed = true;
+			return s;
+		}
+		s.recover();
+		s.seal();
+		log.warn("Segmento di audit {} riletto: {} byte di record", file.getFileName(), s.size);
+		return s;
+	}
+
+	private Path indexFile() {
+		return file.resolveSibling(file.getFileName().toString().replace(".log", ".idx"));
+	}
+
+	/**
+	 * Rilegge i record dall'inizio fino al primo incompleto, ricostruendo l'indice.
+	 */
+	private void recover() {
+
+		int pos = HEADER;
+		int capacity = buffer.capacity();
+		while (pos + RECORD_PREFIX <= capacity) {
+			int length = buffer.getInt(pos);
+			if (length < 8 || pos + RECORD_PREFIX + length > capacity || crc(buffer, pos, length) != buffer.getInt(pos + 4))
+				break;
+			indexed(buffer.getLong(pos + RECORD_PREFIX), pos);
+			pos += RECORD_PREFIX + length;
+		}
+		size = pos;
+	}
+
+	private static int crc(ByteBuffer b, int pos, int length) {
+		CRC32 crc = new CRC32();
+		crc.update(b.slice(pos + RECORD_PREFIX, length));
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Aggiunge un record. Chiamato solo dal thread di scrittura.
+	 *
+	 * @return {@code false} se il record non entra nel segmento
+	 */
+	boolean append(long time, byte[][] keys, byte[] payload) {
+
+		int length = 8 + 2 + payload.length;
+		for (byte[] k : keys)
+			length += 2 + k.length;
+		int pos = size;
+		if (sealed || (long) pos + RECORD_PREFIX + length > buffer.capacity())
+			return false;
+
+		MappedByteBuffer b = buffer;
+		int p = pos + RECORD_PREFIX;
+		b.putLong(p, time);
+		b.putShort(p + 8, (short) keys.length);
+		p += 10;
+		for (byte[] k : keys) {
+			b.putShort(p, (short) k.length);
+			b.put(p + 2, k);
+			p += 2 + k.length;
+		}
+		b.put(p, payload);
+		b.putInt(pos + 4, crc(b, pos, length));
+		b.putInt(pos, length);
+
+		indexed(time, pos);
+		size = pos + RECORD_PREFIX + length;
+		return true;
+	}
+
+	private void indexed(long time, int pos) {
+
+		if (firstTime == Long.MAX_VALUE)
+			firstTime = time;
+		lastTime = time;
+		if (pos - lastIndexed < INDEX_INTERVAL)
+			return;
+		lastIndexed = pos;
+		long[] idx = index;
+		int n = indexSize;
+		if (2 * n + 2 > idx.length) {
+			idx = Arrays.copyOf(idx, idx.length * 2);
+			index = idx;
+		}
+		idx[2 * n] = time;
+		idx[2 * n + 1] = pos;
+		indexSize = n + 1;
+	}
+
+	/**
+	 * Scrive su disco le pagine modificate del segmento attivo.
+	 */
+	void force() {
+		if (!sealed)
+			buffer.force();
+	}
+
+	/**
+	 * Chiude il segmento: riduce il file ai dati scritti, salva l'indice e lo rimappa in sola
+	 * lettura. Chiamato dal thread di scrittura, o all'apertura.
+	 */
+	void seal() throws IOException {
+
+		if (sealed && Files.exists(indexFile()))
+			return;
+		if (!buffer.isReadOnly())
+			buffer.force();
+		try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ch.truncate(size);
+			buffer = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+		writeIndex();
+		sealed = true;
+	}
+
+	private void writeIndex() throws IOException {
+
+		int n = indexSize;
+		ByteBuffer b = ByteBuffer.allocate(28 + 16 * n);
+		b.putLong(size).putLong(firstTime).putLong(lastTime).putInt(n);
+		for (int i = 0; i < 2 * n; i++)
+			b.putLong(index[i]);
+		Path tmp = indexFile().resolveSibling(indexFile().getFileName() + ".tmp");
+		Files.write(tmp, b.array());
+		Files.move(tmp, indexFile(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private boolean loadIndex() throws IOException {
+
+		Path idx = indexFile();
+		if (!Files.exists(idx))
+			return false;
+		ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(idx));
+		if (b.remaining() < 28 || b.getLong(0) != buffer.capacity())
+			return false;
+		int n = b.getInt(24);
+		if (b.remaining() != 28 + 16 * n)
+			return false;
+		size = (int) b.getLong(0);
+		firstTime = b.getLong(8);
+		lastTime = b.getLong(16);
+		long[] entries = new long[Math.max(2, 2 * n)];
+		for (int i = 0; i < 2 * n; i++)
+			entries[i] = b.getLong(28 + 8 * i);
+		index = entries;
+		indexSize = n;
+		return true;
+	}
+
+	/**
+	 * Crea un segmento con i record dei segmenti indicati (consecutivi e chiusi), nell'ordine.
+	 * Il file viene scritto con un nome temporaneo e rinominato solo quando è completo.
+	 */
+	static AuditSegment merge(Path dir, List<AuditSegment> parts) throws IOException {
+
+		AuditSegment m = new AuditSegment(dir.resolve(name(parts.get(0).firstId, parts.get(parts.size() - 1).lastId)),
+				parts.get(0).firstId, parts.get(parts.size() - 1).lastId);
+		Path tmp = m.file.resolveSibling(m.file.getFileName() + ".tmp");
+
+		try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE)) {
+			ch.write(ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(FORMAT).flip());
+			int offset = HEADER;
+			for (AuditSegment s : parts) {
+				ch.write(s.buffer.slice(HEADER, s.size - HEADER));
+				int n = s.indexSize;
+				long[] idx = s.index;
+				for (int i = 0; i < n; i++)
+					m.indexed(idx[2 * i], offset + (int) idx[2 * i + 1] - HEADER);
+				m.firstTime = Math.min(m.firstTime, s.firstTime);
+				m.lastTime = Math.max(m.lastTime, s.lastTime);
+				offset += s.size - HEADER;
+			}
+			ch.force(true);
+			m.size = offset;
+		}
+		Files.move(tmp, m.file, StandardCopyOption.ATOMIC_MOVE);
+		try (FileChannel ch = FileChannel.open(m.file, StandardOpenOption.READ)) {
+			m.buffer = ch.map(FileChannel.MapMode.READ_ONLY, 0, m.size);
+		}
+		m.writeIndex();
+		m.sealed = true;
+		return m;
+	}
+
+	/**
+	 * Cancella i file del segmento. Su alcuni sistemi un file ancora mappato non si può
+	 * cancellare: in quel caso viene rimosso all'avvio successivo.
+	 */
+	void delete() throws IOException {
+		Files.deleteIfExists(indexFile());
+		Files.deleteIfExists(file);
+	}
+
+	/**
+	 * Aggiunge a {@code out} i payload dei record con la chiave indicata e tempo compreso tra
+	 * {@code from} e {@code to} (inclusi), nell'ordine in cui sono stati scritti.
+	 *
+	 * @return {@code false} se è stato raggiunto il limite
+	 */
+	boolean scan(byte[] key, long from, long to, int limit, List<byte[]> out) {
+
+		int end = size;
+		MappedByteBuffer b = buffer;
+		int pos = start(from);
+
+		while (pos < end) {
+			int length = b.getInt(pos);
+			int p = pos + RECORD_PREFIX;
+			long time = b.getLong(p);
+			if (time > to)
+				return true;
+			if (time >= from) {
+				int keys = b.getShort(p + 8);
+				p += 10;
+				boolean match = false;
+				for (int i = 0; i < keys; i++) {
+					int len = b.getShort(p);
+					match |= len == key.length && equals(b, p + 2, key);
+					p += 2 + len;
+				}
+				if (match) {
+					byte[] payload = new byte[pos + RECORD_PREFIX + length - p];
+					b.get(p, payload);
+					out.add(payload);
+					if (out.size() >= limit)
+						return false;
+				}
+			}
+			pos += RECORD_PREFIX + length;
+		}
+		return true;
+	}
+
+	/**
+	 * @return posizione dell'ultima voce dell'indice con tempo minore di {@code from}: i record
+	 *         precedenti sono tutti più vecchi
+	 */
+	private int start(long from) {
+
+		// prima la dimensione, poi l'array: un array sostituito dopo la lettura è più grande
+		int n = indexSize;
+		long[] idx = index;
+		int lo = 0;
+		int hi = n - 1;
+		int found = -1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (idx[2 * mid] < from) {
+				found = mid;
+				lo = mid + 1;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return found < 0 ? HEADER : (int) idx[2 * found + 1];
+	}
+
+	private static boolean equals(ByteBuffer b, int pos, byte[] key) {
+		for (int i = 0; i < key.length; i++)
+			if (b.get(pos + i) != key[i])
+				return false;
+		return true;
+	}
+
+	static byte[] utf8(String s) {
+		return s.getBytes(StandardCharsets.UTF_8);
+	}
+
+	boolean isEmpty() {
+		return size <= HEADER;
+	}
+
+	boolean isSealed() {
+		return sealed;
+	}
+
+	int size() {
+		return size;
+	}
+
+	long firstTime() {
+		return firstTime;
+	}
+
+	long lastTime() {
+		return lastTime;
+	}
+
+}
@@ -0,0 +1,273 @@
+package com.library.model.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.library.model.event.CatalogReloadEvent;
+import com.library.model.read.LibraryReadModel;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Propaga le invalidazioni di cache tra le istanze che condividono il database.
+ * <p>
+ * Ogni istanza conosce solo le proprie scritture: senza questo registro un libro acquistato
+ * tramite un'altra istanza resterebbe "Non venduto" in {@code bookCache} e nel modello di
+ * lettura fino alla scadenza. {@link LibraryCache} scrive le chiavi invalidate nella tabella
+ * {@code cache_invalidations} nella stessa transazione della modifica, quindi le righe diventano
+ * visibili insieme ai dati. Ogni istanza legge le righe nuove per id ogni
+ * {@code library.cache.invalidation.poll-interval}, ignora le proprie ed elimina solo le chiavi
+ * indicate (cache e modello di lettura), senza svuotare le cache.
+ * </p>
+ * <p>
+ * Gli id sono assegnati all'insert ma le transazioni possono concludersi in ordine diverso:
+ * un id saltato viene riletto alle interrogazioni successive finché la riga non compare o
+ * non passa {@code library.cache.invalidation.gap-timeout} (transazione annullata). Le chiavi
+ * ricevute vengono eliminate di nuovo all'interrogazione successiva, nel caso una lettura
+ * iniziata prima del commit abbia ripopolato la cache dopo la prima eviction. Le righe più
+ * vecchie di {@code library.cache.invalidation.retention} vengono cancellate; un'istanza
+ * rimasta ferma più a lungo non può sapere cosa ha perso e svuota cache e modelli in memoria.
+ * Righe pubblicate e applicate sono conteggiate nelle metriche {@value #PUBLISHED_METRIC} e
+ * {@value #APPLIED_METRIC}.
+ * </p>
+ */
+@Slf4j
+@Component
+public class CacheInvalidationLog {
+
+	static final String PUBLISHED_METRIC = "library.cache.invalidations.published";
+	static final String APPLIED_METRIC = "library.cache.invalidations.applied";
+
+	/** id saltati oltre questo numero non vengono attesi (es. valori della sequenza persi) */
+	static final int MAX_GAPS = 1024;
+
+	private static final String INSERT_SQL = "insert into cache_invalidations (node, target, titolo, chiave) values (?, ?, ?, ?)";
+	private static final String MAX_ID_SQL = "select coalesce(max(id), 0) from cache_invalidations";
+	private static final String COLUMNS = "select id, node, target, titolo, chiave from cache_invalidations";
+	private static final String TAIL_SQL = COLUMNS + " where id > ? order by id";
+	private static final String PRUNE_SQL = "delete from cache_invalidations where created_at < dateadd(second, ?, current_timestamp)";
+
+	/**
+	 * Tipo di voce invalidata.
+	 */
+	public enum Target {
+		BOOK, USER
+	}
+
+	/**
+	 * Chiave invalidata: per un libro titolo e ISBN (chiave di {@code bookCache}), per un
+	 * utente l'email.
+	 */
+	public record Invalidation(Target target, String title, String key) {
+
+		public static Invalidation book(String title, String isbnId) {
+			return new Invalidation(Target.BOOK, title, isbnId);
+		}
+
+		public static Invalidation user(String email) {
+			return new Invalidation(Target.USER, null, email);
+		}
+	}
+
+	private record Row(long id, String node, Invalidation invalidation) {
+	}
+
+	private static final RowMapper<Row> ROW = (rs, n) -> new Row(rs.getLong("id"), rs.getString("node"),
+			new Invalidation(Target.valueOf(rs.getString("target")), rs.getString("titolo"), rs.getString("chiave")));
+
+	private final JdbcTemplate jdbc;
+	private final CacheManager cacheManager;
+	private final LibraryReadModel readModel;
+	private final ApplicationEventPublisher events;
+	private final String node;
+	private final long gapTimeoutNanos;
+	private final Duration retention;
+	private final Counter published;
+	private final Counter applied;
+
+	// ReentrantLock e non synchronized: l'interrogazione è una query e non deve bloccare il
+	// carrier di un virtual thread
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/** id più alto letto, -1 finché la prima interrogazione non ha fissato il punto di partenza */
+	private long lastSeen = -1;
+	/** id saltati ancora attesi, con il momento (nanoTime) in cui sono stati rilevati */
+	private final Map<Long, Long> gaps = new HashMap<>();
+	/** invalidazioni applicate all'ultima interrogazione, da ripetere alla successiva */
+	private List<Invalidation> previous = List.of();
+	private long lastPoll;
+
+	public CacheInvalidationLog(JdbcTemplate jdbc, CacheManager cacheManager, LibraryReadModel readModel,
+			ApplicationEventPublisher events, MeterRegistry registry,
+			@Value("${library.cache.invalidation.node-id:}") String nodeId,
+			@Value("${library.cache.invalidation.gap-timeout:PT30S}") Duration gapTimeout,
+			@Value("${library.cache.invalidation.retention:PT1H}") Duration retention) {
+		this.jdbc = jdbc;
+		this.cacheManager = cacheManager;
+		this.readModel = readModel;
+		this.events = events;
+		this.node = nodeId == null || nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+		this.gapTimeoutNanos = gapTimeout.toNanos();
+		this.retention = retention;
+		this.published = registry.counter(PUBLISHED_METRIC);
+		this.applied = registry.counter(APPLIED_METRIC);
+		log.info("Invalidazioni di cache tra istanze: nodo {}", node);
+	}
+
+	/**
+	 * @return identificativo di questa istanza nel registro
+	 */
+	public String node() {
+		return node;
+	}
+
+	/**
+	 * Registra le invalidazioni per le altre istanze, con un solo batch JDBC. Chiamato dentro
+	 * la transazione della modifica, le righe diventano visibili con il commit.
+	 *
+	 * @param invalidations chiavi invalidate
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public void publish(List<Invalidation> invalidations) {
+
+		if (invalidations.isEmpty())
+			return;
+		jdbc.batchUpdate(INSERT_SQL, invalidations, invalidations.size(), (ps, i) -> {
+			ps.setString(1, node);
+			ps.setString(2, i.target().name());
+			ps.setString(3, i.title());
+			ps.setString(4, i.key());
+		});
+		published.increment(invalidations.size());
+	}
+
+	/**
+	 * Legge le invalidazioni registrate dalle altre istanze dopo l'ultima interrogazione e le
+	 * applica: eviction della chiave dalla cache e rimozione dal modello di lettura.
+	 *
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@Scheduled(fixedDelayString = "${library.cache.invalidation.poll-interval:PT1S}")
+	public void poll() {
+
+		lock.lock();
+		try {
+			long now = System.nanoTime();
+			if (lastSeen < 0) {
+				lastSeen = jdbc.queryForObject(MAX_ID_SQL, Long.class);
+				lastPoll = now;
+				return;
+			}
+			if (now - lastPoll > retention.toNanos()) {
+				resync(now);
+				return;
+			}
+
+			// seconda eviction delle chiavi ricevute all'interrogazione precedente
+			previous.forEach(this::evictCache);
+
+			List<Row> rows = new ArrayList<>(jdbc.query(TAIL_SQL, ROW, lastSeen));
+			if (!gaps.isEmpty())
+				rows.addAll(jdbc.query(COLUMNS + " where id in ("
+						+ gaps.keySet().stream().map(String::valueOf).collect(Collectors.joining(",")) + ")", ROW));
+
+			List<Invalidation> received = new ArrayList<>();
+			for (Row r : rows) {
+				if (gaps.remove(r.id()) == null && r.id() > lastSeen) {
+					if (r.id() - lastSeen <= MAX_GAPS)
+						for (long id = lastSeen + 1; id < r.id(); id++)
+							gaps.put(id, now);
+					lastSeen = r.id();
+				}
+				if (!node.equals(r.node())) {
+					apply(r.invalidation());
+					received.add(r.invalidation());
+				}
+			}
+			gaps.values().removeIf(t -> now - t > gapTimeoutNanos);
+
+			if (!received.isEmpty()) {
+				applied.increment(received.size());
+				log.debug("Applicate {} invalidazioni di altre istanze", received.size());
+			}
+			previous = received;
+			lastPoll = now;
+		} catch (DataAccessException e) {
+			log.warn("Lettura delle invalidazioni di cache non riuscita: {}", e.getMessage());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Cancella le righe più vecchie del periodo di conservazione.
+	 *
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@Scheduled(fixedDelayString = "${library.cache.invalidation.retention:PT1H}",
+			initialDelayString = "${library.cache.invalidation.retention:PT1H}")
+	public void prune() {
+
+		int deleted = jdbc.update(PRUNE_SQL, -retention.toSeconds());
+		if (deleted > 0)
+			log.debug("Cancellate {} invalidazioni di cache scadute", deleted);
+	}
+
+	private void apply(Invalidation i) {
+
+		evictCache(i);
+		if (i.target() == Target.BOOK)
+			readModel.forgetBook(i.key());
+		else
+			readModel.forgetUser(i.key());
+	}
+
+	private void evictCache(Invalidation i) {
+
+		boolean book = i.target() == Target.BOOK;
+		Cache cache = cacheManager.getCache(book ? LibraryCache.BOOK_CACHE : LibraryCache.USER_CACHE);
+		if (cache != null)
+			cache.evict(book ? LibraryCache.bookKey(i.title(), i.key()) : i.key());
+	}
+
+	/**
+	 * Le righe successive all'ultima interrogazione potrebbero essere già state cancellate:
+	 * svuota le cache e ricostruisce i modelli in memoria, poi riparte dall'ultima riga.
+	 */
+	private void resync(long now) {
+
+		log.warn("Invalidazioni di cache non lette da oltre {}: svuotamento delle cache", retention);
+		lastSeen = jdbc.queryForObject(MAX_ID_SQL, Long.class);
+		gaps.clear();
+		previous = List.of();
+		lastPoll = now;
+		for (String name : List.of(LibraryCache.BOOK_CACHE, LibraryCache.USER_CACHE)) {
+			Cache cache = cacheManager.getCache(name);
+			if (cache != null)
+				cache.clear();
+		}
+		events.publishEvent(new CatalogReloadEvent("invalidazioni di cache non lette"));
+	}
+
+}
@@ -0,0 +1,133 @@
+package com.library.model.cache;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.library.model.cache.CacheInvalidationLog.Invalidation;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Punto unico di invalidazione delle cache di lettura ({@code bookCache} e {@code userCache}).
+ * <p>
+ * Le eviction sono puntuali sulla chiave e, se è attiva una transazione, vengono eseguite
+ * dopo il commit: così una lettura concorrente non può ripopolare la cache con i dati
+ * precedenti alla modifica.
+ * </p>
+ * <p>
+ * Le stesse chiavi vengono registrate per le altre istanze in {@link CacheInvalidationLog},
+ * con un solo batch prima del commit della transazione (subito, se non è attiva una
+ * transazione); una transazione annullata non registra nulla.
+ * </p>
+ */
+@Slf4j
+@Component
+public class LibraryCache {
+
+	public static final String BOOK_CACHE = "bookCache";
+	public static final String USER_CACHE = "userCache";
+
+	@Autowired
+	private CacheManager cacheManager;
+	@Autowired
+	private CacheInvalidationLog invalidations;
+
+	/**
+	 * Chiave usata da {@code bookCache}, uguale a quella di {@code BookServ.lookupBookVersioned}.
+	 *
+	 * @param title  titolo del libro
+	 * @param isbnId identificativo ISBN del libro
+	 * @return la chiave di cache
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public static String bookKey(String title, String isbnId) {
+		return title + "-" + isbnId;
+	}
+
+	/**
+	 * Invalida la voce di {@code bookCache} del libro indicato.
+	 *
+	 * @param title  titolo del libro
+	 * @param isbnId identificativo ISBN del libro
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public void evictBook(String title, String isbnId) {
+		if (title == null || isbnId == null)
+			return;
+		evict(BOOK_CACHE, bookKey(title, isbnId));
+		broadcast(Invalidation.book(title, isbnId));
+	}
+
+	/**
+	 * Invalida la voce di {@code userCache} dell'utente indicato.
+	 *
+	 * @param email email dell'utente
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public void evictUser(String email) {
+		if (email == null)
+			return;
+		evict(USER_CACHE, email);
+		broadcast(Invalidation.user(email));
+	}
+
+	private void evict(String cacheName, String key) {
+		Cache cache = cacheManager.getCache(cacheName);
+		if (cache == null)
+			return;
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int status) {
+					cache.evict(key);
+				}
+			});
+		} else {
+			cache.evict(key);
+		}
+		log.debug("Eviction da {}: {}", cacheName, key);
+	}
+
+	private void broadcast(Invalidation invalidation) {
+
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			invalidations.publish(List.of(invalidation));
+			return;
+		}
+		for (TransactionSynchronization s : TransactionSynchronizationManager.getSynchronizations()) {
+			if (s instanceof PendingInvalidations p) {
+				p.keys.add(invalidation);
+				return;
+			}
+		}
+		PendingInvalidations p = new PendingInvalidations();
+		p.keys.add(invalidation);
+		TransactionSynchronizationManager.registerSynchronization(p);
+	}
+
+	/**
+	 * Chiavi invalidate dalla transazione corrente, registrate insieme prima del commit.
+	 */
+	private final class PendingInvalidations implements TransactionSynchronization {
+
+		final Set<Invalidation> keys = new LinkedHashSet<>();
+
+		@Override
+		public void beforeCommit(boolean readOnly) {
+			invalidations.publish(List.copyOf(keys));
+		}
+	}
+
+}
@@ -0,0 +1,127 @@
+package com.library.model.concurrency;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import com.library.model.exception.BulkheadFullException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Limita le richieste concorrenti per gruppo di endpoint: letture (GET e metodi annotati con
+ * {@link ReadRequest}) e scritture (acquisti, creazioni e le altre richieste che modificano dati).
+ * <p>
+ * Con i virtual thread il numero di richieste servite in parallelo non è più limitato dal pool
+ * di Tomcat: senza un limite un picco di scritture occuperebbe tutte le connessioni del pool
+ * JDBC lasciando in attesa le ricerche. Ogni gruppo ha un proprio semaforo; se un permesso non
+ * si libera entro {@code library.bulkhead.max-wait} la richiesta viene rifiutata con
+ * {@link BulkheadFullException} (503). Permessi liberi e rifiuti sono pubblicati nelle metriche
+ * {@value #AVAILABLE_METRIC} e {@value #REJECTED_METRIC}, con il tag {@code group}.
+ * </p>
+ */
+@Slf4j
+@Component
+public class BulkheadInterceptor implements AsyncHandlerInterceptor {
+
+	static final String AVAILABLE_METRIC = "library.bulkhead.available";
+	static final String REJECTED_METRIC = "library.bulkhead.rejected";
+
+	private static final String PERMIT = BulkheadInterceptor.class.getName() + ".permit";
+
+	private final Group read;
+	private final Group write;
+	private final long maxWaitNanos;
+
+	/**
+	 * Semaforo di un gruppo di endpoint con il contatore dei rifiuti.
+	 */
+	private static final class Group {
+		final String name;
+		final Semaphore permits;
+		final Counter rejected;
+
+		Group(String name, int maxConcurrent, MeterRegistry registry) {
+			this.name = name;
+			this.permits = new Semaphore(Math.max(1, maxConcurrent), true);
+			this.rejected = registry.counter(REJECTED_METRIC, "group", name);
+			Gauge.builder(AVAILABLE_METRIC, permits, Semaphore::availablePermits).tag("group", name).register(registry);
+		}
+	}
+
+	public BulkheadInterceptor(MeterRegistry registry,
+			@Value("${library.bulkhead.read.max-concurrent:64}") int readMax,
+			@Value("${library.bulkhead.write.max-concurrent:6}") int writeMax,
+			@Value("${library.bulkhead.max-wait:PT0.5S}") Duration maxWait) {
+		this.read = new Group("read", readMax, registry);
+		this.write = new Group("write", writeMax, registry);
+		this.maxWaitNanos = maxWait.toNanos();
+	}
+
+	/**
+	 * Acquisisce un permesso del gruppo della richiesta, attendendo al massimo
+	 * {@code library.bulkhead.max-wait}.
+	 *
+	 * @throws BulkheadFullException se il gruppo resta saturo oltre l'attesa massima
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+			throws InterruptedException {
+
+		// il permesso della richiesta originale copre anche i dispatch successivi
+		if (request.getDispatcherType() != DispatcherType.REQUEST)
+			return true;
+
+		Group g = isRead(request, handler) ? read : write;
+		if (!g.permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+			g.rejected.increment();
+			log.warn("Bulkhead {} saturo: richiesta {} {} rifiutata", g.name, request.getMethod(), request.getRequestURI());
+			throw new BulkheadFullException("Troppe richieste in corso, riprovare");
+		}
+		request.setAttribute(PERMIT, g);
+		return true;
+	}
+
+	private static boolean isRead(HttpServletRequest request, Object handler) {
+		return HttpMethod.GET.matches(request.getMethod())
+				|| handler instanceof HandlerMethod m && m.hasMethodAnnotation(ReadRequest.class);
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+			Exception ex) {
+		release(request);
+	}
+
+	/**
+	 * Le risposte asincrone non occupano la connessione JDBC della richiesta: il permesso viene
+	 * restituito appena il controller termina.
+	 */
+	@Override
+	public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+			Object handler) {
+		release(request);
+	}
+
+	private static void release(HttpServletRequest request) {
+		if (request.getAttribute(PERMIT) instanceof Group g) {
+			request.removeAttribute(PERMIT);
+			g.permits.release();
+		}
+	}
+
+}
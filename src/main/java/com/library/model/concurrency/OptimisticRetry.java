@@ -0,0 +1,85 @@
+package com.library.model.concurrency;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import com.library.model.exception.ConcurrentUpdateException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Esegue un'operazione transazionale ripetendola quando fallisce per un conflitto di
+ * versione ({@code @Version}).
+ * <p>
+ * Ogni tentativo deve aprire una propria transazione, così da rileggere lo stato aggiornato.
+ * Tra un tentativo e l'altro attende un backoff esponenziale con jitter; esauriti i tentativi
+ * lancia {@link ConcurrentUpdateException} (409). I conflitti sono contati nella metrica
+ * {@value #CONFLICTS_METRIC}, i fallimenti definitivi in {@value #FAILURES_METRIC}.
+ * </p>
+ */
+@Slf4j
+@Component
+public class OptimisticRetry {
+
+	static final String CONFLICTS_METRIC = "library.optimistic.conflicts";
+	static final String FAILURES_METRIC = "library.optimistic.failures";
+
+	private final MeterRegistry registry;
+	private final int maxAttempts;
+	private final long backoffMs;
+
+	public OptimisticRetry(MeterRegistry registry,
+			@Value("${library.concurrency.max-attempts:3}") int maxAttempts,
+			@Value("${library.concurrency.backoff-ms:10}") long backoffMs) {
+		this.registry = registry;
+		this.maxAttempts = Math.max(1, maxAttempts);
+		this.backoffMs = backoffMs;
+	}
+
+	/**
+	 * Esegue l'operazione con al massimo {@code library.concurrency.max-attempts} tentativi.
+	 *
+	 * @param operation nome dell'operazione, usato come tag della metrica
+	 * @param attempt   un tentativo completo, transazione inclusa
+	 * @return il risultato del primo tentativo riuscito
+	 * @throws ConcurrentUpdateException se tutti i tentativi falliscono per conflitto
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public <T> T execute(String operation, Supplier<T> attempt) {
+
+		Counter conflicts = registry.counter(CONFLICTS_METRIC, "operation", operation);
+
+		for (int i = 1;; i++) {
+			try {
+				return attempt.get();
+			} catch (OptimisticLockingFailureException e) {
+				conflicts.increment();
+				if (i >= maxAttempts) {
+					registry.counter(FAILURES_METRIC, "operation", operation).increment();
+					log.error("Conflitto di concorrenza su {} dopo {} tentativi", operation, i);
+					throw new ConcurrentUpdateException("Risorsa modificata da un'altra richiesta, riprovare", e);
+				}
+				log.warn("Conflitto di concorrenza su {}, tentativo {} di {}", operation, i, maxAttempts);
+				backoff(i);
+			}
+		}
+	}
+
+	private void backoff(int attempt) {
+		long max = backoffMs << (attempt - 1);
+		try {
+			Thread.sleep(max / 2 + ThreadLocalRandom.current().nextLong(max / 2 + 1));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ConcurrentUpdateException("Operazione interrotta", e);
+		}
+	}
+
+}
@@ -0,0 +1,17 @@
+package com.library.model.concurrency;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Segnala un endpoint che non è una GET ma si limita a leggere (es. una ricerca con i
+ * parametri nel corpo JSON): {@link BulkheadInterceptor} lo assegna al gruppo delle letture.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReadRequest {
+}
@@ -0,0 +1,100 @@
+package com.library.model.concurrency;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Accorpa le letture concorrenti della stessa chiave in un solo caricamento.
+ * <p>
+ * Il primo chiamante di una chiave esegue il caricamento; chi arriva mentre è in corso non
+ * interroga il database ma attende e riceve lo stesso risultato, o la stessa eccezione (es.
+ * libro non trovato). Finito il caricamento la chiave viene liberata: il risultato non viene
+ * conservato, quella è la funzione delle cache. Lo stesso oggetto arriva a tutti i chiamanti:
+ * il caricamento deve restituire un valore immutabile (es. uno snapshot), da cui ognuno
+ * costruisce il proprio DTO. Caricamenti e richieste accorpate sono
+ * pubblicati nelle metriche {@value #LOADS_METRIC} e {@value #COALESCED_METRIC}, con il tag
+ * {@code group}.
+ * </p>
+ */
+@Slf4j
+@Component
+public class SingleFlight {
+
+	static final String LOADS_METRIC = "library.singleflight.loads";
+	static final String COALESCED_METRIC = "library.singleflight.coalesced";
+
+	private final MeterRegistry registry;
+	private final Map<Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+	private record Key(String group, Object key) {
+	}
+
+	public SingleFlight(MeterRegistry registry) {
+		this.registry = registry;
+	}
+
+	/**
+	 * Esegue il caricamento della chiave, oppure attende quello già in corso.
+	 *
+	 * @param group  gruppo di chiavi (es. {@code findBook}), usato anche come tag delle metriche
+	 * @param key    chiave da caricare
+	 * @param loader caricamento, eseguito solo dal primo chiamante
+	 * @return il risultato del caricamento
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T execute(String group, Object key, Supplier<T> loader) {
+
+		Key k = new Key(group, key);
+		CompletableFuture<Object> mine = new CompletableFuture<>();
+		CompletableFuture<Object> running = inFlight.putIfAbsent(k, mine);
+
+		if (running != null) {
+			registry.counter(COALESCED_METRIC, "group", group).increment();
+			log.debug("Lettura accorpata a quella in corso: {} {}", group, key);
+			return (T) await(running);
+		}
+
+		registry.counter(LOADS_METRIC, "group", group).increment();
+		try {
+			T value = loader.get();
+			mine.complete(value);
+			return value;
+		} catch (RuntimeException | Error e) {
+			mine.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(k, mine);
+		}
+	}
+
+	/**
+	 * @return numero di chiavi con un caricamento in corso
+	 */
+	public int inFlight() {
+		return inFlight.size();
+	}
+
+	private static Object await(CompletableFuture<Object> running) {
+		try {
+			return running.join();
+		} catch (CompletionException e) {
+			// stessa eccezione del caricamento, così il chiamante la gestisce come se l'avesse eseguito
+			if (e.getCause() instanceof RuntimeException r)
+				throw r;
+			if (e.getCause() instanceof Error err)
+				throw err;
+			throw e;
+		}
+	}
+
+}
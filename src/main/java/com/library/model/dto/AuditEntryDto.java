@@ -0,0 +1,33 @@
+package com.library.model.dto;
+
+import java.time.Instant;
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class AuditEntryDto {
+
+	private Instant at;
+	/** utente autenticato o indirizzo del client, {@code sistema} fuori da una richiesta */
+	private String actor;
+	/** {@code USER} o {@code BOOK} */
+	private String entity;
+	/** {@code CREATE}, {@code UPDATE} o {@code DELETE} */
+	private String action;
+	private Map<String, Object> before;
+	private Map<String, Object> after;
+
+	@Override
+	public String toString() {
+		return "AuditEntryDto [at=" + at + ", actor=" + actor + ", entity=" + entity + ", action=" + action
+				+ ", before=" + before + ", after=" + after + "]";
+	}
+
+}
@@ -0,0 +1,29 @@
+package com.library.model.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Esito di una lettura multipla di libri per ISBN: contatori e il risultato di ogni voce,
+ * nello stesso ordine dell'input.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class BookBatchReportDto {
+
+	private long requested;
+	private long found;
+	private long missing;
+	private List<BookBatchResultDto> results = new ArrayList<>();
+
+	@Override
+	public String toString() {
+		return "BookBatchReportDto [requested=" + requested + ", found=" + found + ", missing=" + missing + "]";
+	}
+
+}
@@ -0,0 +1,30 @@
+package com.library.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Esito della ricerca di un singolo ISBN in una lettura multipla di libri.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookBatchResultDto {
+
+	private String identificativoIsbn;
+	private boolean found;
+	/** dati del libro, {@code null} se non trovato */
+	private LibroDtoOut book;
+	/** motivo per cui il libro non è stato restituito, {@code null} se trovato */
+	private String reason;
+
+	@Override
+	public String toString() {
+		return "BookBatchResultDto [identificativoIsbn=" + identificativoIsbn + ", found=" + found + ", book=" + book
+				+ ", reason=" + reason + "]";
+	}
+
+}
@@ -0,0 +1,26 @@
+package com.library.model.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookPageDto {
+
+	private List<LibroDtoOut> content;
+	private String nextToken;
+	private boolean hasNext;
+
+	@Override
+	public String toString() {
+		return "BookPageDto [content=" + (content != null ? content.size() + " libri" : "null") + ", nextToken="
+				+ nextToken + ", hasNext=" + hasNext + "]";
+	}
+
+}
@@ -0,0 +1,25 @@
+package com.library.model.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookSearchResultDto {
+
+	private long total;
+	private List<LibroDtoOut> books;
+
+	@Override
+	public String toString() {
+		return "BookSearchResultDto [total=" + total + ", books=" + (books != null ? books.size() + " libri" : "null")
+				+ "]";
+	}
+
+}
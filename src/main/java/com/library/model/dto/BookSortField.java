@@ -0,0 +1,73 @@
+package com.library.model.dto;
+
+import java.util.Locale;
+
+import com.library.model.entity.Book;
+
+/**
+ * Campi ammessi per l'ordinamento dell'elenco libri.
+ * <p>
+ * Ogni campo corrisponde a un attributo di {@link Book}: l'elenco ordina sempre per
+ * campo e poi per {@code id}, così la coppia è univoca e utilizzabile come chiave di seek.
+ * </p>
+ */
+public enum BookSortField {
+
+	TITOLO("titolo"),
+	AUTORE("autore"),
+	COSTO("costo"),
+	TIPOLOGIA("tipologia");
+
+	private final String attribute;
+
+	BookSortField(String attribute) {
+		this.attribute = attribute;
+	}
+
+	public String getAttribute() {
+		return attribute;
+	}
+
+	/**
+	 * Restituisce il valore del campo di ordinamento per il libro indicato.
+	 *
+	 * @param b il libro
+	 * @return il valore del campo
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public Object valueOf(Book b) {
+		return switch (this) {
+		case TITOLO -> b.getTitolo();
+		case AUTORE -> b.getAutore();
+		case COSTO -> b.getCosto();
+		case TIPOLOGIA -> b.getTipologia();
+		};
+	}
+
+	/**
+	 * Converte il valore serializzato nel token nel tipo dell'attributo.
+	 *
+	 * @param raw valore letto dal token
+	 * @return il valore tipizzato
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public Object parse(String raw) {
+		return this == COSTO ? Double.valueOf(raw) : raw;
+	}
+
+	/**
+	 * Cerca il campo a partire dal nome (case insensitive).
+	 *
+	 * @param name nome del campo, es. {@code "titolo"}
+	 * @return il campo corrispondente
+	 * @throws IllegalArgumentException se il campo non è ordinabile
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public static BookSortField from(String name) {
+		return BookSortField.valueOf(name.trim().toUpperCase(Locale.ROOT));
+	}
+
+}
@@ -0,0 +1,28 @@
+package com.library.model.dto;
+
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class CatalogStatsDto {
+
+	private GroupStatsDto totals;
+	private long sold;
+	private long notSold;
+	private Map<String, GroupStatsDto> byAuthor;
+	private Map<String, GroupStatsDto> byType;
+	private Map<String, GroupStatsDto> byLanguage;
+
+	@Override
+	public String toString() {
+		return "CatalogStatsDto [totals=" + totals + ", sold=" + sold + ", notSold=" + notSold + "]";
+	}
+
+}
@@ -0,0 +1,22 @@
+package com.library.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class FuzzyMatchDto {
+
+	private double score;
+	private LibroDtoOut book;
+
+	@Override
+	public String toString() {
+		return "FuzzyMatchDto [score=" + score + ", book=" + book + "]";
+	}
+
+}
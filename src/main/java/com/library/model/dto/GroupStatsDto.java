@@ -0,0 +1,23 @@
+package com.library.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class GroupStatsDto {
+
+	private long count;
+	private double totalPrice;
+	private double averagePrice;
+
+	@Override
+	public String toString() {
+		return "GroupStatsDto [count=" + count + ", totalPrice=" + totalPrice + ", averagePrice=" + averagePrice + "]";
+	}
+
+}
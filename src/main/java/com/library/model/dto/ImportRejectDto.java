@@ -0,0 +1,23 @@
+package com.library.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImportRejectDto {
+
+	private long row;
+	private String key;
+	private String reason;
+
+	@Override
+	public String toString() {
+		return "ImportRejectDto [row=" + row + ", key=" + key + ", reason=" + reason + "]";
+	}
+
+}
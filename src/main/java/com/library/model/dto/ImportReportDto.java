@@ -0,0 +1,46 @@
+package com.library.model.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Esito di un import massivo: contatori, scarti riga per riga e throughput.
+ * <p>
+ * Gli scarti dettagliati sono limitati a {@link #MAX_REJECTS} per mantenere costante la
+ * memoria anche su file molto grandi; il contatore {@code rejected} resta sempre esatto.
+ * </p>
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class ImportReportDto {
+
+	public static final int MAX_REJECTS = 1000;
+
+	private long rowsRead;
+	private long imported;
+	private long rejected;
+	private List<ImportRejectDto> rejects = new ArrayList<>();
+	private boolean rejectsTruncated;
+	private long elapsedMs;
+	private double rowsPerSecond;
+
+	public void reject(long row, String key, String reason) {
+		rejected++;
+		if (rejects.size() < MAX_REJECTS)
+			rejects.add(new ImportRejectDto(row, key, reason));
+		else
+			rejectsTruncated = true;
+	}
+
+	@Override
+	public String toString() {
+		return "ImportReportDto [rowsRead=" + rowsRead + ", imported=" + imported + ", rejected=" + rejected
+				+ ", elapsedMs=" + elapsedMs + ", rowsPerSecond=" + rowsPerSecond + "]";
+	}
+
+}
@@ -0,0 +1,24 @@
+package com.library.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class SuggestionDto {
+
+	private String text;
+	/** {@code titolo} o {@code autore} */
+	private String type;
+	private int books;
+
+	@Override
+	public String toString() {
+		return "SuggestionDto [text=" + text + ", type=" + type + ", books=" + books + "]";
+	}
+
+}
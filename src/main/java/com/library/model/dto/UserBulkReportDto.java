@@ -0,0 +1,32 @@
+package com.library.model.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Esito di una registrazione massiva di utenti: contatori, throughput e il risultato di ogni
+ * voce, nello stesso ordine dell'input.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class UserBulkReportDto {
+
+	private long received;
+	private long created;
+	private long rejected;
+	private long elapsedMs;
+	private double rowsPerSecond;
+	private List<UserBulkResultDto> results = new ArrayList<>();
+
+	@Override
+	public String toString() {
+		return "UserBulkReportDto [received=" + received + ", created=" + created + ", rejected=" + rejected
+				+ ", elapsedMs=" + elapsedMs + ", rowsPerSecond=" + rowsPerSecond + "]";
+	}
+
+}
@@ -0,0 +1,29 @@
+package com.library.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Esito della registrazione di un singolo utente in una registrazione massiva.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserBulkResultDto {
+
+	/** posizione nell'array JSON (da 1) o riga del file CSV */
+	private long row;
+	private String email;
+	private boolean created;
+	private String reason;
+
+	@Override
+	public String toString() {
+		return "UserBulkResultDto [row=" + row + ", email=" + email + ", created=" + created + ", reason=" + reason
+				+ "]";
+	}
+
+}
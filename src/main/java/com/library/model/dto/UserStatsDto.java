@@ -0,0 +1,28 @@
+package com.library.model.dto;
+
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserStatsDto {
+
+	private long totalUsers;
+	private long totalBooks;
+	private long booksInPossession;
+	/** numero di utenti per numero di libri posseduti (0, 1, 2, ...) */
+	private Map<Integer, Long> usersByBookCount;
+
+	@Override
+	public String toString() {
+		return "UserStatsDto [totalUsers=" + totalUsers + ", totalBooks=" + totalBooks + ", booksInPossession="
+				+ booksInPossession + ", usersByBookCount=" + usersByBookCount + "]";
+	}
+
+}
@@ -1,8 +1,14 @@
 package com.library.model.entity;
 
+import java.time.Instant;
+
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -10,6 +16,7 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -37,6 +44,17 @@ public class Book {
 	private String linguaggio;
 	private double costo;
 	
+	// controllo di concorrenza ottimistico: ogni update verifica e incrementa la versione
+	@Version
+	@ColumnDefault("0")
+	@Column(nullable = false)
+	private long version;
+
+	// data dell'ultima modifica, esposta come Last-Modified (impostata a ogni insert e update)
+	@UpdateTimestamp
+	@Column(nullable = false)
+	private Instant lastModified;
+	
 	@JsonBackReference
 	@ManyToOne
 	@JoinColumn(name = "user_id", nullable = true)
@@ -1,16 +1,22 @@
 package com.library.model.entity;
 
+import java.time.Instant;
 import java.util.List;
 
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.UpdateTimestamp;
+
 import jakarta.persistence.CascadeType;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -25,6 +31,9 @@ import lombok.Setter;
 @Getter
 @Setter
 public class User {
+
+    public static final int MAX_BOOKS = 5;
+    
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -32,12 +41,29 @@ public class User {
     private String nome;
     private String cognome;
     private String email;
+    
+    // controllo di concorrenza ottimistico: ogni update verifica e incrementa la versione
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long version;
+
+    // data dell'ultima modifica, aggiornata anche quando cambiano i libri in possesso (contatore loans)
+    @UpdateTimestamp
+    @Column(nullable = false)
+    private Instant lastModified;
+    
+    // libri in possesso, mantenuto con update condizionali (vedi UserRepository.incrementLoans)
+    @ColumnDefault("0")
+    @Column(nullable = false, insertable = false, updatable = false)
+    private int loans;
+    
     @JsonManagedReference
     @OneToMany(mappedBy = "proprietario", cascade = {CascadeType.PERSIST, CascadeType.MERGE})
     private List<Book> booksInPossession;
     
     public boolean canBorrowMoreBooks() {
-        return this.booksInPossession.size() >= 5;
+        return this.loans >= MAX_BOOKS;
     }
     
     @Override
@@ -0,0 +1,20 @@
+package com.library.model.event;
+
+/**
+ * Evento pubblicato da {@code BookServ} a ogni modifica di un libro.
+ * <p>
+ * {@code before} è {@code null} per una creazione, {@code after} è {@code null} per una
+ * cancellazione. I listener lo ricevono dopo il commit della transazione.
+ * </p>
+ */
+public record BookChangedEvent(BookSnapshot before, BookSnapshot after) {
+
+	public boolean isCreate() {
+		return before == null;
+	}
+
+	public boolean isDelete() {
+		return after == null;
+	}
+
+}
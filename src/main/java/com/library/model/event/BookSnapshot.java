@@ -0,0 +1,55 @@
+package com.library.model.event;
+
+import java.time.Instant;
+
+import com.library.model.entity.Book;
+
+/**
+ * Copia immutabile dello stato di un {@link Book} in un dato istante.
+ * <p>
+ * Viene usata negli eventi di modifica e nelle letture massive, dove non serve
+ * (e non conviene) caricare l'entità gestita da JPA.
+ * </p>
+ *
+ * @param proprietario email del proprietario, {@code null} se il libro non è venduto
+ * @param version      versione della riga, incrementata a ogni modifica
+ * @param lastModified data dell'ultima modifica, {@code null} se non ancora nota
+ */
+public record BookSnapshot(Long id, String identificativoIsbn, String titolo, String tipologia, String autore,
+		String linguaggio, double costo, String proprietario, long version, Instant lastModified) {
+
+	public static BookSnapshot of(Book b) {
+		return new BookSnapshot(b.getId(), b.getIdentificativoIsbn(), b.getTitolo(), b.getTipologia(),
+				b.getAutore(), b.getLinguaggio(), b.getCosto(),
+				b.getProprietario() != null ? b.getProprietario().getEmail() : null, b.getVersion(),
+				b.getLastModified());
+	}
+
+	/**
+	 * @param at data del rilascio
+	 * @return lo stesso libro senza proprietario, come dopo l'update di rilascio
+	 */
+	public BookSnapshot withoutOwner(Instant at) {
+		return new BookSnapshot(id, identificativoIsbn, titolo, tipologia, autore, linguaggio, costo, null,
+				version + 1, at);
+	}
+
+	/**
+	 * @param proprietario email del proprietario
+	 * @return lo stesso libro, con la stessa versione, intestato al proprietario indicato
+	 */
+	public BookSnapshot withOwner(String proprietario) {
+		return new BookSnapshot(id, identificativoIsbn, titolo, tipologia, autore, linguaggio, costo, proprietario,
+				version, lastModified);
+	}
+
+	/**
+	 * @param at data della modifica
+	 * @return lo stesso libro, come dopo un update che ne incrementa solo la versione
+	 */
+	public BookSnapshot touched(Instant at) {
+		return new BookSnapshot(id, identificativoIsbn, titolo, tipologia, autore, linguaggio, costo, proprietario,
+				version + 1, at);
+	}
+
+}
@@ -0,0 +1,12 @@
+package com.library.model.event;
+
+/**
+ * Evento pubblicato dopo una modifica massiva del catalogo (es. import CSV), per la quale
+ * non vengono emessi i singoli {@link BookChangedEvent}: chi mantiene dati derivati dai
+ * libri deve ricostruirli dal database.
+ *
+ * @param reason descrizione dell'operazione che ha modificato il catalogo
+ */
+public record CatalogReloadEvent(String reason) {
+
+}
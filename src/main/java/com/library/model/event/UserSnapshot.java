@@ -0,0 +1,22 @@
+package com.library.model.event;
+
+import java.time.Instant;
+
+import com.library.model.entity.User;
+
+/**
+ * Copia immutabile dei dati anagrafici di un {@link User} in un dato istante
+ * (senza i libri in possesso, che viaggiano nei {@link BookChangedEvent}).
+ *
+ * @param id           id dell'utente, {@code null} se inserito senza leggere la chiave generata
+ * @param version      versione della riga, incrementata a ogni modifica dei dati anagrafici
+ * @param lastModified data dell'ultima modifica, {@code null} se non ancora nota
+ */
+public record UserSnapshot(Long id, String nome, String cognome, String email, long version, Instant lastModified) {
+
+	public static UserSnapshot of(User u) {
+		return new UserSnapshot(u.getId(), u.getNome(), u.getCognome(), u.getEmail(), u.getVersion(),
+				u.getLastModified());
+	}
+
+}
@@ -0,0 +1,27 @@
+package com.library.model.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class BookAlreadyOwnedException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public BookAlreadyOwnedException() {
+		super();
+	}
+
+	public BookAlreadyOwnedException(String message) {
+		super(message);
+	}
+
+	public BookAlreadyOwnedException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+	public BookAlreadyOwnedException(Throwable cause) {
+		super(cause);
+	}
+
+}
@@ -0,0 +1,27 @@
+package com.library.model.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class BulkheadFullException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public BulkheadFullException() {
+		super();
+	}
+
+	public BulkheadFullException(String message) {
+		super(message);
+	}
+
+	public BulkheadFullException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+	public BulkheadFullException(Throwable cause) {
+		super(cause);
+	}
+
+}
@@ -0,0 +1,27 @@
+package com.library.model.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class ConcurrentUpdateException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public ConcurrentUpdateException() {
+		super();
+	}
+
+	public ConcurrentUpdateException(String message) {
+		super(message);
+	}
+
+	public ConcurrentUpdateException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+	public ConcurrentUpdateException(Throwable cause) {
+		super(cause);
+	}
+
+}
@@ -0,0 +1,27 @@
+package com.library.model.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidCsvException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public InvalidCsvException() {
+		super();
+	}
+
+	public InvalidCsvException(String message) {
+		super(message);
+	}
+
+	public InvalidCsvException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+	public InvalidCsvException(Throwable cause) {
+		super(cause);
+	}
+
+}
@@ -0,0 +1,27 @@
+package com.library.model.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidPageTokenException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public InvalidPageTokenException() {
+		super();
+	}
+
+	public InvalidPageTokenException(String message) {
+		super(message);
+	}
+
+	public InvalidPageTokenException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+	public InvalidPageTokenException(Throwable cause) {
+		super(cause);
+	}
+
+}
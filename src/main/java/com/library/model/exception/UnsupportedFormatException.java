@@ -0,0 +1,27 @@
+package com.library.model.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class UnsupportedFormatException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public UnsupportedFormatException() {
+		super();
+	}
+
+	public UnsupportedFormatException(String message) {
+		super(message);
+	}
+
+	public UnsupportedFormatException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+	public UnsupportedFormatException(Throwable cause) {
+		super(cause);
+	}
+
+}
@@ -0,0 +1,128 @@
+package com.library.model.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.library.model.exception.InvalidCsvException;
+
+/**
+ * Lettore CSV in streaming (RFC 4180): separatore {@code ,}, campi tra virgolette con
+ * {@code ""} come escape e a capo ammessi all'interno delle virgolette.
+ * <p>
+ * Legge un record alla volta senza mai caricare il file in memoria.
+ * </p>
+ */
+public class CsvReader implements Closeable {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final Reader in;
+	private final char[] buf = new char[BUFFER_SIZE];
+	private int pos;
+	private int len;
+	private long line = 1;
+	private long recordLine;
+
+	public CsvReader(Reader in) {
+		this.in = in;
+	}
+
+	/**
+	 * Legge il record successivo.
+	 *
+	 * @return i campi del record, oppure {@code null} a fine file
+	 * @throws IOException         in caso di errore di lettura
+	 * @throws InvalidCsvException se il record non è un CSV valido
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public List<String> next() throws IOException {
+
+		int c = read();
+		// salta le righe vuote
+		while (c == '\r' || c == '\n') {
+			c = read();
+		}
+		if (c == -1)
+			return null;
+
+		recordLine = line;
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+
+		while (true) {
+			if (quoted) {
+				if (c == -1) {
+					throw new InvalidCsvException("Virgolette non chiuse nel record alla riga " + recordLine);
+				} else if (c == '"') {
+					int n = read();
+					if (n == '"') {
+						field.append('"');
+					} else {
+						quoted = false;
+						c = n;
+						continue;
+					}
+				} else {
+					field.append((char) c);
+				}
+			} else if (c == '"' && field.isEmpty()) {
+				quoted = true;
+			} else if (c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else if (c == '\r' || c == '\n' || c == -1) {
+				if (c == '\r') {
+					int n = read();
+					if (n != '\n')
+						unread();
+				}
+				fields.add(field.toString());
+				return fields;
+			} else {
+				field.append((char) c);
+			}
+			c = read();
+		}
+	}
+
+	/**
+	 * @return numero della riga del file in cui inizia l'ultimo record letto (base 1)
+	 */
+	public long getRecordLine() {
+		return recordLine;
+	}
+
+	private int read() throws IOException {
+		if (pos == len) {
+			len = in.read(buf, 0, buf.length);
+			pos = 0;
+			if (len <= 0) {
+				len = 0;
+				return -1;
+			}
+		}
+		char c = buf[pos++];
+		if (c == '\n')
+			line++;
+		return c;
+	}
+
+	private void unread() {
+		if (pos > 0) {
+			pos--;
+			if (buf[pos] == '\n')
+				line--;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+}
@@ -0,0 +1,63 @@
+package com.library.model.io;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Scrittore CSV (RFC 4180) a record singoli: i campi che contengono separatore,
+ * virgolette o a capo vengono racchiusi tra virgolette.
+ */
+public class CsvWriter implements Closeable, Flushable {
+
+	private final Writer out;
+
+	public CsvWriter(Writer out) {
+		this.out = out;
+	}
+
+	/**
+	 * Scrive un record terminato da {@code \n}. I valori {@code null} diventano campi vuoti.
+	 *
+	 * @param fields campi del record
+	 * @throws IOException in caso di errore di scrittura
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public void writeRecord(Object... fields) throws IOException {
+		for (int i = 0; i < fields.length; i++) {
+			if (i > 0)
+				out.write(',');
+			if (fields[i] != null)
+				writeField(fields[i].toString());
+		}
+		out.write('\n');
+	}
+
+	private void writeField(String v) throws IOException {
+		boolean quote = false;
+		for (int i = 0; i < v.length() && !quote; i++) {
+			char c = v.charAt(i);
+			quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+		if (!quote) {
+			out.write(v);
+			return;
+		}
+		out.write('"');
+		out.write(v.replace("\"", "\"\""));
+		out.write('"');
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+}
@@ -0,0 +1,48 @@
+package com.library.model.io;
+
+import java.util.Locale;
+
+import com.library.model.exception.UnsupportedFormatException;
+
+/**
+ * Formati supportati per l'export del catalogo.
+ */
+public enum ExportFormat {
+
+	CSV("text/csv", "csv"),
+	NDJSON("application/x-ndjson", "ndjson");
+
+	private final String mediaType;
+	private final String extension;
+
+	ExportFormat(String mediaType, String extension) {
+		this.mediaType = mediaType;
+		this.extension = extension;
+	}
+
+	public String getMediaType() {
+		return mediaType;
+	}
+
+	public String getExtension() {
+		return extension;
+	}
+
+	/**
+	 * Cerca il formato a partire dal nome (case insensitive).
+	 *
+	 * @param name nome del formato, es. {@code "csv"}
+	 * @return il formato corrispondente
+	 * @throws UnsupportedFormatException se il formato non è supportato
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public static ExportFormat from(String name) {
+		try {
+			return ExportFormat.valueOf(name.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException | NullPointerException e) {
+			throw new UnsupportedFormatException("Formato non supportato: " + name, e);
+		}
+	}
+
+}
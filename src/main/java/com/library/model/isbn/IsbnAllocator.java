@@ -0,0 +1,107 @@
+package com.library.model.isbn;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Assegna gli identificativi dei nuovi libri.
+ * <p>
+ * I codici hanno la forma di un ISBN-13: prefisso {@value #PREFIX} (intervallo GS1 riservato
+ * alla numerazione interna, mai usato da ISBN reali), 9 cifre progressive e cifra di
+ * controllo. I numeri vengono riservati a blocchi di {@value #BLOCK_SIZE} con la sequenza
+ * {@code isbn_seq} (hi/lo): ogni istanza dell'applicazione distribuisce un blocco dalla memoria
+ * e interroga il database solo quando lo esaurisce. I codici restano unici anche tra riavvii e
+ * tra più istanze; i numeri non usati di un blocco vanno persi allo spegnimento.
+ * </p>
+ */
+@Slf4j
+@Component
+public class IsbnAllocator {
+
+	static final String PREFIX = "200";
+	/** deve coincidere con l'incremento di {@code isbn_seq} (migrazione V4) */
+	public static final int BLOCK_SIZE = 1000;
+	static final long MAX_NUMBER = 999_999_999L;
+
+	private static final String NEXT_BLOCK_SQL = "select next value for isbn_seq";
+
+	private final JdbcTemplate jdbc;
+	// ReentrantLock e non synchronized: la riserva di un blocco è una query e non deve
+	// bloccare il carrier di un virtual thread
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/** prossimo numero da assegnare e fine (esclusa) del blocco corrente */
+	private long next;
+	private long limit;
+
+	public IsbnAllocator(JdbcTemplate jdbc) {
+		this.jdbc = jdbc;
+	}
+
+	/**
+	 * Restituisce un nuovo identificativo, mai assegnato in precedenza.
+	 *
+	 * @return codice di 13 cifre con cifra di controllo ISBN-13
+	 * @throws IllegalStateException se la numerazione interna è esaurita
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public String next() {
+
+		lock.lock();
+		try {
+			if (next >= limit)
+				reserveBlock();
+			return format(next++);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void reserveBlock() {
+
+		long hi = jdbc.queryForObject(NEXT_BLOCK_SQL, Long.class);
+		if (hi + BLOCK_SIZE - 1 > MAX_NUMBER)
+			throw new IllegalStateException("Numerazione interna degli ISBN esaurita");
+		next = hi;
+		limit = hi + BLOCK_SIZE;
+		log.debug("Riservato il blocco di ISBN [{}, {})", next, limit);
+	}
+
+	/**
+	 * Compone il codice del numero indicato: prefisso, numero su 9 cifre e cifra di controllo.
+	 *
+	 * @param number numero progressivo, tra 0 e {@value #MAX_NUMBER}
+	 * @return codice di 13 cifre
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	static String format(long number) {
+		StringBuilder sb = new StringBuilder(13).append(PREFIX);
+		String digits = Long.toString(number);
+		for (int i = digits.length(); i < 9; i++)
+			sb.append('0');
+		sb.append(digits);
+		return sb.append(checkDigit(sb)).toString();
+	}
+
+	/**
+	 * Cifra di controllo ISBN-13: somma delle prime 12 cifre con pesi alternati 1 e 3.
+	 *
+	 * @param digits le prime 12 cifre del codice
+	 * @return la tredicesima cifra
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public static int checkDigit(CharSequence digits) {
+		int sum = 0;
+		for (int i = 0; i < 12; i++)
+			sum += (digits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+		return (10 - sum % 10) % 10;
+	}
+
+}
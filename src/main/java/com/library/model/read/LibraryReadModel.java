@@ -0,0 +1,434 @@
+package com.library.model.read;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.library.model.dto.LibroDtoOut;
+import com.library.model.dto.UserDtoOut;
+import com.library.model.event.BookChangedEvent;
+import com.library.model.event.BookSnapshot;
+import com.library.model.event.CatalogReloadEvent;
+import com.library.model.event.UserChangedEvent;
+import com.library.model.event.UserSnapshot;
+import com.library.model.repo.BookRepository;
+import com.library.model.repo.UserRepository;
+import com.library.model.service.BookServ;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Modello di lettura per la ricerca puntuale di libri e utenti.
+ * <p>
+ * Mantiene in memoria una copia denormalizzata del catalogo: i libri per ISBN (con l'email
+ * del proprietario) e gli utenti per email (con gli ISBN dei libri in possesso). Una lettura
+ * è quindi una ricerca per chiave, senza entità JPA né join; il DTO viene costruito a ogni
+ * richiesta, così il chiamante può modificarlo liberamente.
+ * </p>
+ * <p>
+ * Ogni voce conserva la versione e la data di modifica delle righe, da cui derivano ETag e
+ * Last-Modified delle GET condizionali ({@link Versioned}).
+ * </p>
+ * <p>
+ * Il modello viene aggiornato dagli eventi di {@code BookServ} e {@code UserServ} dopo il
+ * commit, ricostruito per intero dalle tabelle all'avvio, dopo ogni {@link CatalogReloadEvent}
+ * e periodicamente ({@code library.read-model.rebuild-interval}). Finché non è pronto, o se
+ * una chiave manca, i metodi restituiscono {@code null} e il chiamante legge dal database.
+ * </p>
+ * <p>
+ * Le modifiche fatte da altre istanze arrivano come invalidazioni
+ * ({@code CacheInvalidationLog}): la voce viene rimossa e letta dal database fino alla
+ * ricostruzione successiva.
+ * </p>
+ */
+@Slf4j
+@Component
+public class LibraryReadModel {
+
+	static final int REBUILD_BATCH = 10_000;
+
+	@Autowired
+	private BookRepository bookRep;
+	@Autowired
+	private UserRepository userRep;
+
+	/** serializza aggiornamenti e ricostruzioni; le letture non prendono lock */
+	private final ReentrantLock writeLock = new ReentrantLock();
+
+	private volatile Map<String, BookSnapshot> books = new ConcurrentHashMap<>();
+	private volatile Map<String, UserView> users = new ConcurrentHashMap<>();
+	private volatile boolean ready;
+
+	/**
+	 * Dati anagrafici di un utente e ISBN dei libri in possesso (lista immutabile).
+	 * {@code lastModified} tiene conto anche dei libri restituiti o cancellati, che non
+	 * compaiono più nella lista.
+	 */
+	record UserView(UserSnapshot user, Instant lastModified, List<String> isbns) {
+
+		UserView withBook(String isbn, Instant at) {
+			if (isbns.contains(isbn))
+				return this;
+			List<String> l = new ArrayList<>(isbns);
+			l.add(isbn);
+			return new UserView(user, latest(lastModified, at), List.copyOf(l));
+		}
+
+		UserView withoutBook(String isbn, Instant at) {
+			List<String> l = new ArrayList<>(isbns);
+			l.remove(isbn);
+			return new UserView(user, latest(lastModified, at), List.copyOf(l));
+		}
+	}
+
+	/**
+	 * Restituisce il libro con titolo e ISBN indicati.
+	 *
+	 * @param title  titolo del libro
+	 * @param isbnId identificativo ISBN del libro
+	 * @return il DTO del libro, {@code null} se il modello non lo contiene
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public LibroDtoOut book(String title, String isbnId) {
+
+		Versioned<LibroDtoOut> v = versionedBook(title, isbnId);
+		return v != null ? v.get() : null;
+	}
+
+	/**
+	 * Come {@link #book(String, String)}, con i validatori per le GET condizionali; il DTO
+	 * viene costruito solo se richiesto.
+	 *
+	 * @param title  titolo del libro
+	 * @param isbnId identificativo ISBN del libro
+	 * @return il libro con ETag e data di modifica, {@code null} se il modello non lo contiene
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public Versioned<LibroDtoOut> versionedBook(String title, String isbnId) {
+
+		if (!ready || isbnId == null)
+			return null;
+		BookSnapshot b = books.get(isbnId);
+		if (b == null || b.id() == null || !Objects.equals(b.titolo(), title))
+			return null;
+		return versioned(b);
+	}
+
+	/**
+	 * Restituisce l'utente con i libri in possesso, ordinati per id come nel database.
+	 *
+	 * @param email email dell'utente
+	 * @return il DTO dell'utente, {@code null} se il modello non lo contiene
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public UserDtoOut user(String email) {
+
+		UserView u = view(email);
+		List<BookSnapshot> owned = u != null ? owned(u) : null;
+		return owned != null ? versioned(u.user(), u.lastModified(), owned).get() : null;
+	}
+
+	/**
+	 * Come {@link #user(String)}, con i validatori per le GET condizionali; il DTO viene
+	 * costruito solo se richiesto.
+	 * <p>
+	 * Gli utenti registrati in blocco non hanno l'id finché il modello non viene ricostruito:
+	 * in quel caso restituisce {@code null} e il chiamante legge dal database.
+	 * </p>
+	 *
+	 * @param email email dell'utente
+	 * @return l'utente con ETag e data di modifica, {@code null} se il modello non lo contiene
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public Versioned<UserDtoOut> versionedUser(String email) {
+
+		UserView u = view(email);
+		if (u == null || u.user().id() == null)
+			return null;
+		List<BookSnapshot> owned = owned(u);
+		return owned != null ? versioned(u.user(), u.lastModified(), owned) : null;
+	}
+
+	private UserView view(String email) {
+		return ready && email != null ? users.get(email) : null;
+	}
+
+	/**
+	 * @return i libri in possesso dell'utente, {@code null} se uno di essi manca dal modello
+	 */
+	private List<BookSnapshot> owned(UserView u) {
+		Map<String, BookSnapshot> catalog = books;
+		List<BookSnapshot> owned = new ArrayList<>(u.isbns().size());
+		for (String isbn : u.isbns()) {
+			BookSnapshot b = catalog.get(isbn);
+			if (b == null || b.id() == null)
+				return null;
+			owned.add(b);
+		}
+		return owned;
+	}
+
+	/**
+	 * Validatori e DTO di un libro. L'ETag è la coppia (id, versione): ogni update della riga
+	 * incrementa la versione, anche il cambio di email del proprietario, che il DTO riporta
+	 * (vedi {@link BookServ#ownerEmailChanged}).
+	 *
+	 * @param b copia del libro, con id
+	 * @return il libro con ETag e data di modifica
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public static Versioned<LibroDtoOut> versioned(BookSnapshot b) {
+
+		return new Versioned<>("\"b" + b.id() + "." + b.version() + "\"", millis(b.lastModified()),
+				() -> BookServ.toDto(b));
+	}
+
+	/**
+	 * Validatori e DTO di un utente con i libri in possesso. L'ETag combina la versione
+	 * dell'utente con (id, versione) di ogni libro, quindi cambia se cambiano i dati anagrafici,
+	 * l'insieme dei libri o uno di essi; la data di modifica è la più recente tra quelle
+	 * dell'utente e dei libri.
+	 *
+	 * @param user         dati anagrafici, con id
+	 * @param lastModified data di modifica dell'utente
+	 * @param owned        libri in possesso, con id (la lista viene ordinata per id)
+	 * @return l'utente con ETag e data di modifica
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public static Versioned<UserDtoOut> versioned(UserSnapshot user, Instant lastModified, List<BookSnapshot> owned) {
+
+		owned.sort(Comparator.comparing(BookSnapshot::id));
+
+		StringBuilder etag = new StringBuilder(16 + owned.size() * 12).append("\"u").append(user.id()).append('.')
+				.append(user.version());
+		Instant latest = lastModified;
+		for (BookSnapshot b : owned) {
+			etag.append('-').append(b.id()).append('.').append(b.version());
+			latest = latest(latest, b.lastModified());
+		}
+		etag.append('"');
+
+		return new Versioned<>(etag.toString(), millis(latest), () -> new UserDtoOut(user.nome(), user.cognome(),
+				user.email(), owned.stream().map(BookServ::toDto).collect(Collectors.toList())));
+	}
+
+	private static Instant latest(Instant a, Instant b) {
+		if (a == null)
+			return b;
+		return b == null || a.isAfter(b) ? a : b;
+	}
+
+	private static long millis(Instant i) {
+		return i != null ? i.toEpochMilli() : -1;
+	}
+
+	/**
+	 * Aggiorna il modello dopo la modifica di un libro; un evento con una versione precedente
+	 * a quella già presente viene scartato, così l'ETag non torna indietro.
+	 *
+	 * @param e evento di modifica
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onBookChanged(BookChangedEvent e) {
+
+		writeLock.lock();
+		try {
+			BookSnapshot before = e.before();
+			BookSnapshot after = e.after();
+			if (isStale(before, after)) {
+				log.debug("Evento non applicato, il modello ha già una versione successiva: {}",
+						(after != null ? after : before).identificativoIsbn());
+				return;
+			}
+			// per una cancellazione la data di modifica del proprietario è quella dell'evento
+			Instant at = after != null && after.lastModified() != null ? after.lastModified() : Instant.now();
+			if (before != null) {
+				books.remove(before.identificativoIsbn());
+				if (before.proprietario() != null)
+					users.computeIfPresent(before.proprietario(),
+							(k, u) -> u.withoutBook(before.identificativoIsbn(), at));
+			}
+			if (after != null) {
+				books.put(after.identificativoIsbn(), after);
+				if (after.proprietario() != null)
+					users.computeIfPresent(after.proprietario(), (k, u) -> u.withBook(after.identificativoIsbn(), at));
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Un evento è superato se il modello contiene già la stessa riga (stesso id) con una
+	 * versione uguale o successiva: i listener di transazioni concorrenti possono essere
+	 * eseguiti in ordine diverso dai commit. Una cancellazione è superata se la voce appartiene
+	 * a un'altra riga (es. libro ricreato con lo stesso ISBN).
+	 */
+	private boolean isStale(BookSnapshot before, BookSnapshot after) {
+
+		if (after == null) {
+			BookSnapshot current = books.get(before.identificativoIsbn());
+			return current != null && !sameRow(current.id(), before.id());
+		}
+		BookSnapshot current = books.get(after.identificativoIsbn());
+		return current != null && sameRow(current.id(), after.id()) && current.version() >= after.version();
+	}
+
+	private boolean isStale(UserSnapshot before, UserSnapshot after) {
+
+		if (after == null) {
+			UserView current = users.get(before.email());
+			return current != null && !sameRow(current.user().id(), before.id());
+		}
+		UserView current = users.get(after.email());
+		return current != null && sameRow(current.user().id(), after.id())
+				&& current.user().version() >= after.version();
+	}
+
+	/**
+	 * @return {@code true} se gli id coincidono o uno dei due non è noto (righe inserite in
+	 *         blocco senza leggere la chiave generata)
+	 */
+	private static boolean sameRow(Long a, Long b) {
+		return a == null || b == null || a.equals(b);
+	}
+
+	/**
+	 * Aggiorna il modello dopo la creazione, modifica o cancellazione di un utente.
+	 *
+	 * @param e evento di modifica
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onUserChanged(UserChangedEvent e) {
+
+		writeLock.lock();
+		try {
+			if (isStale(e.before(), e.after())) {
+				log.debug("Evento non applicato, il modello ha già una versione successiva: {}",
+						(e.after() != null ? e.after() : e.before()).email());
+				return;
+			}
+			if (e.isCreate()) {
+				UserSnapshot a = e.after();
+				users.put(a.email(), new UserView(a, a.lastModified(), List.of()));
+			} else if (e.isDelete()) {
+				users.remove(e.before().email());
+			} else {
+				UserView old = users.remove(e.before().email());
+				UserSnapshot a = e.after();
+				if (old != null)
+					users.put(a.email(), new UserView(a, latest(old.lastModified(), a.lastModified()), old.isbns()));
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Rimuove il libro indicato, modificato da un'altra istanza: fino alla ricostruzione
+	 * successiva viene letto dal database, così come gli utenti che lo hanno in possesso.
+	 *
+	 * @param isbnId identificativo ISBN del libro
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public void forgetBook(String isbnId) {
+
+		writeLock.lock();
+		try {
+			books.remove(isbnId);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Rimuove l'utente indicato, modificato da un'altra istanza: fino alla ricostruzione
+	 * successiva viene letto dal database.
+	 *
+	 * @param email email dell'utente
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public void forgetUser(String email) {
+
+		writeLock.lock();
+		try {
+			users.remove(email);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Ricostruisce il modello dalle tabelle {@code books} e {@code users}, a blocchi ordinati
+	 * per id, e lo sostituisce a quello corrente.
+	 *
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@EventListener({ ApplicationReadyEvent.class, CatalogReloadEvent.class })
+	@Scheduled(fixedDelayString = "${library.read-model.rebuild-interval:PT10M}",
+			initialDelayString = "${library.read-model.rebuild-interval:PT10M}")
+	public void rebuild() {
+
+		writeLock.lock();
+		try {
+			Map<String, UserView> freshUsers = new ConcurrentHashMap<>();
+			long last = 0;
+			List<UserSnapshot> userBatch;
+			do {
+				userBatch = userRep.findSnapshotsAfter(last, PageRequest.of(0, REBUILD_BATCH));
+				for (UserSnapshot u : userBatch) {
+					freshUsers.put(u.email(), new UserView(u, u.lastModified(), List.of()));
+					last = u.id();
+				}
+			} while (userBatch.size() == REBUILD_BATCH);
+
+			Map<String, BookSnapshot> freshBooks = new ConcurrentHashMap<>();
+			last = 0;
+			List<BookSnapshot> bookBatch;
+			do {
+				bookBatch = bookRep.findSnapshotsAfter(last, PageRequest.of(0, REBUILD_BATCH));
+				for (BookSnapshot b : bookBatch) {
+					freshBooks.put(b.identificativoIsbn(), b);
+					if (b.proprietario() != null)
+						freshUsers.computeIfPresent(b.proprietario(), (k, u) -> u.withBook(b.identificativoIsbn(), null));
+					last = b.id();
+				}
+			} while (bookBatch.size() == REBUILD_BATCH);
+
+			books = freshBooks;
+			users = freshUsers;
+			ready = true;
+			log.info("Modello di lettura ricostruito: {} libri, {} utenti", freshBooks.size(), freshUsers.size());
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+}
@@ -0,0 +1,26 @@
+package com.library.model.read;
+
+import java.util.function.Supplier;
+
+/**
+ * Risorsa di lettura accompagnata dai validatori HTTP per le GET condizionali.
+ * <p>
+ * ETag e data di modifica derivano dalla versione delle righe, quindi il confronto con
+ * {@code If-None-Match} / {@code If-Modified-Since} non richiede il DTO: il corpo viene
+ * costruito solo se {@link #get()} è invocato, cioè se la risposta non è un 304.
+ * </p>
+ *
+ * @param etag         ETag forte, già tra virgolette
+ * @param lastModified data dell'ultima modifica in millisecondi, {@code -1} se non nota
+ * @param body         costruzione del DTO
+ */
+public record Versioned<T>(String etag, long lastModified, Supplier<T> body) {
+
+	/**
+	 * @return il DTO della risorsa, costruito a ogni invocazione
+	 */
+	public T get() {
+		return body.get();
+	}
+
+}
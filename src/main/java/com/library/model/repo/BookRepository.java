@@ -1,13 +1,97 @@
 package com.library.model.repo;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.hibernate.jpa.HibernateHints;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.library.model.entity.Book;
+import com.library.model.event.BookSnapshot;
+
+import jakarta.persistence.QueryHint;
 
 @Repository
-public interface BookRepository extends JpaRepository<Book, Long> {
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom {
 
 	public Book findByTitoloAndIdentificativoIsbn (String name, String isbnId);
 	public Book findByIdentificativoIsbn (String isbnId);
+
+	@Query("select b from Book b left join fetch b.proprietario where b.id in :ids")
+	public List<Book> findAllWithOwnerByIdIn(@Param("ids") Collection<Long> ids);
+
+	@Query("select new com.library.model.event.BookSnapshot(b.id, b.identificativoIsbn, b.titolo, b.tipologia, "
+			+ "b.autore, b.linguaggio, b.costo, p.email, b.version, b.lastModified) "
+			+ "from Book b left join b.proprietario p "
+			+ "where b.id > :id order by b.id")
+	public List<BookSnapshot> findSnapshotsAfter(@Param("id") Long id, Pageable page);
+
+	/**
+	 * Legge i libri con gli ISBN indicati in una sola query (indice univoco su ISBN); gli ISBN
+	 * inesistenti vengono semplicemente omessi dal risultato.
+	 */
+	@Query("select new com.library.model.event.BookSnapshot(b.id, b.identificativoIsbn, b.titolo, b.tipologia, "
+			+ "b.autore, b.linguaggio, b.costo, p.email, b.version, b.lastModified) "
+			+ "from Book b left join b.proprietario p "
+			+ "where b.identificativoIsbn in :isbns")
+	public List<BookSnapshot> findSnapshotsByIsbnIn(@Param("isbns") Collection<String> isbns);
+
+	@Query("select new com.library.model.event.BookSnapshot(b.id, b.identificativoIsbn, b.titolo, b.tipologia, "
+			+ "b.autore, b.linguaggio, b.costo, p.email, b.version, b.lastModified) "
+			+ "from Book b join b.proprietario p where p.id = :userId")
+	public List<BookSnapshot> findSnapshotsByOwner(@Param("userId") Long userId);
+
+	@Query("select new com.library.model.event.BookSnapshot(b.id, b.identificativoIsbn, b.titolo, b.tipologia, "
+			+ "b.autore, b.linguaggio, b.costo, p.email, b.version, b.lastModified) "
+			+ "from Book b join b.proprietario p "
+			+ "where p.id = :userId and b.identificativoIsbn in :isbns")
+	public List<BookSnapshot> findSnapshotsByOwnerAndIsbnIn(@Param("userId") Long userId,
+			@Param("isbns") Collection<String> isbns);
+
+	/**
+	 * Toglie il proprietario a tutti i libri dell'utente con un solo update; la versione viene
+	 * incrementata perché le modifiche concorrenti agli stessi libri rilevino il conflitto.
+	 *
+	 * @param at data della modifica, registrata in {@code lastModified}
+	 * @return numero di libri rilasciati
+	 */
+	@Modifying(flushAutomatically = true)
+	@Query("update Book b set b.proprietario = null, b.version = b.version + 1, b.lastModified = :at "
+			+ "where b.proprietario.id = :userId")
+	public int releaseAllByOwner(@Param("userId") Long userId, @Param("at") Instant at);
+
+	/**
+	 * Incrementa la versione di tutti i libri dell'utente senza modificarli: il DTO del libro
+	 * riporta l'email del proprietario, quindi un cambio di email deve cambiarne l'ETag.
+	 *
+	 * @param at data della modifica, registrata in {@code lastModified}
+	 * @return numero di libri aggiornati
+	 */
+	@Modifying(flushAutomatically = true)
+	@Query("update Book b set b.version = b.version + 1, b.lastModified = :at where b.proprietario.id = :userId")
+	public int touchAllByOwner(@Param("userId") Long userId, @Param("at") Instant at);
+
+	/**
+	 * Come {@link #releaseAllByOwner(Long, Instant)}, limitato ai libri con gli ISBN indicati.
+	 */
+	@Modifying(flushAutomatically = true)
+	@Query("update Book b set b.proprietario = null, b.version = b.version + 1, b.lastModified = :at "
+			+ "where b.proprietario.id = :userId and b.identificativoIsbn in :isbns")
+	public int releaseByOwnerAndIsbnIn(@Param("userId") Long userId, @Param("isbns") Collection<String> isbns,
+			@Param("at") Instant at);
+
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+	@Query("select new com.library.model.event.BookSnapshot(b.id, b.identificativoIsbn, b.titolo, b.tipologia, "
+			+ "b.autore, b.linguaggio, b.costo, p.email, b.version, b.lastModified) "
+			+ "from Book b left join b.proprietario p order by b.id")
+	public Stream<BookSnapshot> streamAllSnapshots();
 }
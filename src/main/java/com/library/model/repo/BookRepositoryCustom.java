@@ -0,0 +1,12 @@
+package com.library.model.repo;
+
+import java.util.List;
+
+import com.library.model.dto.BookSortField;
+import com.library.model.entity.Book;
+
+public interface BookRepositoryCustom {
+
+	public List<Book> findPageAfter(BookSortField sort, boolean ascending, Object lastValue, Long lastId, int limit);
+
+}
@@ -0,0 +1,82 @@
+package com.library.model.repo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.library.model.dto.BookSortField;
+import com.library.model.entity.Book;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+public class BookRepositoryCustomImpl implements BookRepositoryCustom {
+
+	@PersistenceContext
+	private EntityManager em;
+
+	/**
+	 * Legge una pagina di libri con paginazione keyset (seek su campo di ordinamento + id).
+	 * <p>
+	 * Al posto di OFFSET la query riparte dall'ultima coppia (valore, id) letta, quindi il
+	 * costo di una pagina non dipende dalla sua posizione nel catalogo. Il proprietario
+	 * viene caricato nella stessa query per evitare una select per libro. I valori nulli del
+	 * campo sono trattati come i più piccoli: primi in ordine crescente, ultimi in ordine
+	 * decrescente. Quando la pagina attraversa il confine tra nulli e valori servono due query,
+	 * ognuna letta in ordine dall'indice (campo, id).
+	 * </p>
+	 *
+	 * @param sort      campo di ordinamento
+	 * @param ascending {@code true} per ordine crescente
+	 * @param lastValue valore del campo dell'ultimo libro letto, {@code null} per la prima pagina
+	 *                  o se il campo dell'ultimo libro era nullo
+	 * @param lastId    id dell'ultimo libro letto, {@code null} per la prima pagina
+	 * @param limit     numero massimo di libri da restituire
+	 * @return i libri della pagina, in ordine
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@Override
+	public List<Book> findPageAfter(BookSortField sort, boolean ascending, Object lastValue, Long lastId, int limit) {
+
+		// il nome dell'attributo arriva da un enum, non dall'input dell'utente
+		String f = "b." + sort.getAttribute();
+		String cmp = ascending ? ">" : "<";
+
+		if (lastId == null)
+			return page(sort, ascending, null, null, null, limit);
+		if (lastValue == null) {
+			// ultimo libro con campo nullo: prima gli altri nulli, poi (in ordine crescente) i valori
+			List<Book> books = page(sort, ascending, f + " is null and b.id " + cmp + " :id", null, lastId, limit);
+			if (ascending && books.size() < limit)
+				books.addAll(page(sort, true, f + " is not null", null, null, limit - books.size()));
+			return books;
+		}
+		// la condizione "campo >= :v" permette al database di posizionarsi sull'indice (campo, id)
+		// invece di scorrerlo dall'inizio filtrando la OR; i nulli, ultimi in ordine decrescente,
+		// sono letti a parte per non perdere il posizionamento
+		List<Book> books = page(sort, ascending,
+				f + ' ' + cmp + "= :v and (" + f + ' ' + cmp + " :v or b.id " + cmp + " :id)", lastValue, lastId, limit);
+		if (!ascending && books.size() < limit)
+			books.addAll(page(sort, false, f + " is null", null, null, limit - books.size()));
+		return books;
+	}
+
+	private List<Book> page(BookSortField sort, boolean ascending, String where, Object value, Long id, int limit) {
+
+		String f = "b." + sort.getAttribute();
+		StringBuilder jpql = new StringBuilder("select b from Book b left join fetch b.proprietario");
+		if (where != null)
+			jpql.append(" where ").append(where);
+		jpql.append(" order by ").append(f).append(ascending ? " asc nulls first" : " desc nulls last")
+				.append(", b.id ").append(ascending ? "asc" : "desc");
+
+		TypedQuery<Book> q = em.createQuery(jpql.toString(), Book.class);
+		if (value != null)
+			q.setParameter("v", value);
+		if (id != null)
+			q.setParameter("id", id);
+		return new ArrayList<>(q.setMaxResults(limit).getResultList());
+	}
+
+}
@@ -1,14 +1,67 @@
 package com.library.model.repo;
 
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.library.model.entity.User;
+import com.library.model.event.UserSnapshot;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
 	
 	public User findByEmail(String email);
+
+	@Query("select new com.library.model.event.UserSnapshot(u.id, u.nome, u.cognome, u.email, u.version, u.lastModified) from User u "
+			+ "where u.id > :id order by u.id")
+	List<UserSnapshot> findSnapshotsAfter(@Param("id") Long id, Pageable page);
+
+	/**
+	 * Come {@link #findByEmail(String)}, ma carica anche i libri in possesso nella stessa query
+	 * (left join), evitando una select per la collezione.
+	 */
+	@EntityGraph(attributePaths = "booksInPossession")
+	User findWithBooksByEmail(String email);
+
+	/**
+	 * Incrementa il contatore dei libri in possesso solo se è sotto il limite: controllo e
+	 * incremento sono un unico update atomico, che blocca la riga fino al commit.
+	 *
+	 * Come gli altri update del contatore, aggiorna anche {@code lastModified}: i libri in
+	 * possesso fanno parte della rappresentazione dell'utente.
+	 *
+	 * @return 1 se il prestito è consentito, 0 se l'utente non esiste o ha raggiunto il limite
+	 */
+	@Modifying(flushAutomatically = true)
+	@Query("update User u set u.loans = u.loans + 1, u.lastModified = instant where u.email = :email and u.loans < :max")
+	int incrementLoans(@Param("email") String email, @Param("max") int max);
+
+	@Modifying(flushAutomatically = true)
+	@Query("update User u set u.loans = u.loans - 1, u.lastModified = instant where u.email = :email and u.loans > 0")
+	int decrementLoans(@Param("email") String email);
+
+	/**
+	 * Riduce il contatore dei libri in possesso dopo un rilascio in blocco.
+	 */
+	@Modifying(flushAutomatically = true)
+	@Query("update User u set u.loans = u.loans - :n, u.lastModified = instant where u.email = :email and u.loans >= :n")
+	int releaseLoans(@Param("email") String email, @Param("n") int n);
+
+	/**
+	 * Riallinea il contatore dei libri in possesso con i libri effettivamente assegnati.
+	 *
+	 * @return numero di utenti corretti
+	 */
+	@Modifying
+	@Query("update User u set u.loans = (select count(b) from Book b where b.proprietario = u) "
+			+ "where u.loans <> (select count(b) from Book b where b.proprietario = u)")
+	int syncLoans();
 	
 	boolean existsByEmail(String email);
 }
@@ -0,0 +1,13 @@
+package com.library.model.search;
+
+/**
+ * Filtri della ricerca avanzata. I campi {@code null} non vengono applicati.
+ */
+public record BookSearchCriteria(String autore, String tipologia, String linguaggio, Double minCosto,
+		Double maxCosto) {
+
+	public boolean isEmpty() {
+		return autore == null && tipologia == null && linguaggio == null && minCosto == null && maxCosto == null;
+	}
+
+}
@@ -0,0 +1,248 @@
+package com.library.model.search;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.library.model.event.BookChangedEvent;
+import com.library.model.event.BookSnapshot;
+import com.library.model.event.CatalogReloadEvent;
+import com.library.model.repo.BookRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Indice in memoria per la ricerca avanzata dei libri.
+ * <p>
+ * Per {@code autore}, {@code tipologia} e {@code linguaggio} mantiene una posting list
+ * (bitmap compressa Roaring) degli id dei libri per ogni valore; per {@code costo} un indice
+ * ordinato prezzo → bitmap. Una ricerca combinata è quindi un'intersezione di bitmap, senza
+ * accessi al database.
+ * </p>
+ * <p>
+ * L'indice viene ricostruito all'avvio e dopo ogni {@link CatalogReloadEvent}, e aggiornato
+ * a ogni {@link BookChangedEvent} dopo il commit della transazione.
+ * </p>
+ */
+@Slf4j
+@Component
+public class BookSearchIndex {
+
+	static final int REBUILD_BATCH = 10_000;
+
+	@Autowired
+	private BookRepository bookRep;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private Map<String, Posting> byAutore = new HashMap<>();
+	private Map<String, Posting> byTipologia = new HashMap<>();
+	private Map<String, Posting> byLinguaggio = new HashMap<>();
+	private NavigableMap<Double, RoaringBitmap> byCosto = new TreeMap<>();
+	private RoaringBitmap all = new RoaringBitmap();
+	private Map<Integer, IndexedDoc> docs = new HashMap<>();
+
+	/**
+	 * Posting list di un valore: la chiave normalizzata e gli id dei libri che la contengono.
+	 */
+	private static final class Posting {
+		final String key;
+		final RoaringBitmap ids = new RoaringBitmap();
+
+		Posting(String key) {
+			this.key = key;
+		}
+	}
+
+	/**
+	 * Posting list a cui appartiene un libro, necessarie per toglierlo dall'indice
+	 * senza conoscerne lo stato precedente.
+	 */
+	private record IndexedDoc(Posting autore, Posting tipologia, Posting linguaggio, double costo) {
+	}
+
+	/**
+	 * Ricostruisce l'indice leggendo tutti i libri dal database a blocchi ordinati per id.
+	 *
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@EventListener({ ApplicationReadyEvent.class, CatalogReloadEvent.class })
+	public void rebuild() {
+
+		lock.writeLock().lock();
+		try {
+			byAutore = new HashMap<>();
+			byTipologia = new HashMap<>();
+			byLinguaggio = new HashMap<>();
+			byCosto = new TreeMap<>();
+			all = new RoaringBitmap();
+			docs = new HashMap<>();
+
+			long last = 0;
+			List<BookSnapshot> batch;
+			do {
+				batch = bookRep.findSnapshotsAfter(last, PageRequest.of(0, REBUILD_BATCH));
+				for (BookSnapshot b : batch) {
+					add(b);
+					last = b.id();
+				}
+			} while (batch.size() == REBUILD_BATCH);
+
+			all.runOptimize();
+			log.info("Indice di ricerca ricostruito: {} libri, {} byte", all.getCardinality(), sizeInBytes());
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Aggiorna l'indice dopo la modifica di un libro.
+	 *
+	 * @param e evento di modifica
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onBookChanged(BookChangedEvent e) {
+
+		lock.writeLock().lock();
+		try {
+			if (e.before() != null && e.before().id() != null)
+				remove(Math.toIntExact(e.before().id()));
+			if (e.after() != null && e.after().id() != null) {
+				remove(Math.toIntExact(e.after().id()));
+				add(e.after());
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Restituisce gli id dei libri che soddisfano tutti i filtri indicati.
+	 *
+	 * @param c filtri di ricerca
+	 * @return bitmap (copia) degli id trovati
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public RoaringBitmap search(BookSearchCriteria c) {
+
+		lock.readLock().lock();
+		try {
+			RoaringBitmap result = all.clone();
+
+			if (c.autore() != null)
+				result.and(posting(byAutore, c.autore()));
+			if (c.tipologia() != null)
+				result.and(posting(byTipologia, c.tipologia()));
+			if (c.linguaggio() != null)
+				result.and(posting(byLinguaggio, c.linguaggio()));
+
+			if (c.minCosto() != null || c.maxCosto() != null) {
+				double min = c.minCosto() != null ? c.minCosto() : Double.NEGATIVE_INFINITY;
+				double max = c.maxCosto() != null ? c.maxCosto() : Double.POSITIVE_INFINITY;
+				if (min > max)
+					return new RoaringBitmap();
+				result.and(RoaringBitmap.or(byCosto.subMap(min, true, max, true).values().iterator()));
+			}
+			return result;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return numero di libri indicizzati
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return all.getCardinality();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return occupazione stimata delle posting list, in byte
+	 */
+	public long sizeInBytes() {
+		lock.readLock().lock();
+		try {
+			long bytes = all.getLongSizeInBytes();
+			for (Map<String, Posting> m : List.of(byAutore, byTipologia, byLinguaggio))
+				bytes += m.values().stream().mapToLong(p -> p.ids.getLongSizeInBytes()).sum();
+			bytes += byCosto.values().stream().mapToLong(RoaringBitmap::getLongSizeInBytes).sum();
+			return bytes;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	static String normalize(String value) {
+		return value == null ? null : value.trim().toLowerCase(Locale.ROOT);
+	}
+
+	private static RoaringBitmap posting(Map<String, Posting> index, String value) {
+		Posting p = index.get(normalize(value));
+		return p != null ? p.ids : new RoaringBitmap();
+	}
+
+	private void add(BookSnapshot b) {
+		int id = Math.toIntExact(b.id());
+		Posting autore = addPosting(byAutore, b.autore(), id);
+		Posting tipologia = addPosting(byTipologia, b.tipologia(), id);
+		Posting linguaggio = addPosting(byLinguaggio, b.linguaggio(), id);
+		byCosto.computeIfAbsent(b.costo(), k -> new RoaringBitmap()).add(id);
+		all.add(id);
+		docs.put(id, new IndexedDoc(autore, tipologia, linguaggio, b.costo()));
+	}
+
+	private void remove(int id) {
+		IndexedDoc d = docs.remove(id);
+		if (d == null)
+			return;
+		removePosting(byAutore, d.autore(), id);
+		removePosting(byTipologia, d.tipologia(), id);
+		removePosting(byLinguaggio, d.linguaggio(), id);
+		RoaringBitmap bm = byCosto.get(d.costo());
+		if (bm != null) {
+			bm.remove(id);
+			if (bm.isEmpty())
+				byCosto.remove(d.costo());
+		}
+		all.remove(id);
+	}
+
+	private static Posting addPosting(Map<String, Posting> index, String value, int id) {
+		String key = normalize(value);
+		if (key == null)
+			return null;
+		Posting p = index.computeIfAbsent(key, Posting::new);
+		p.ids.add(id);
+		return p;
+	}
+
+	private static void removePosting(Map<String, Posting> index, Posting p, int id) {
+		if (p == null)
+			return;
+		p.ids.remove(id);
+		if (p.ids.isEmpty())
+			index.remove(p.key);
+	}
+
+}
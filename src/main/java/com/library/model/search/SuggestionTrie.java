@@ -0,0 +1,507 @@
+package com.library.model.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.library.model.event.BookChangedEvent;
+import com.library.model.event.BookSnapshot;
+import com.library.model.event.CatalogReloadEvent;
+import com.library.model.repo.BookRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Trie compresso (radix) di titoli e autori per l'autocompletamento.
+ * <p>
+ * Le chiavi sono il testo normalizzato come in {@link TrigramIndex}, seguito dal tipo
+ * (titolo o autore), così lo stesso testo può comparire con entrambi i tipi. Il peso di un
+ * suggerimento è il numero di libri con quel titolo o di quell'autore. I nodi con più di
+ * {@value #SMALL_SUBTREE} suggerimenti nel sottoalbero conservano i {@value #TOP_K} più
+ * pesanti, aggiornati lungo il percorso a ogni modifica; per gli altri si visita il
+ * sottoalbero, che è piccolo. Una ricerca costa quindi la lunghezza del prefisso più una
+ * visita limitata, senza interrogare il database.
+ * </p>
+ * <p>
+ * L'occupazione stimata è pubblicata nelle metriche {@value #BYTES_METRIC} e
+ * {@value #ENTRIES_METRIC}. Come {@link BookSearchIndex}, il trie viene ricostruito all'avvio
+ * e dopo ogni {@link CatalogReloadEvent}, e aggiornato a ogni {@link BookChangedEvent} dopo il
+ * commit.
+ * </p>
+ */
+@Slf4j
+@Component
+public class SuggestionTrie {
+
+	static final String BYTES_METRIC = "library.suggest.bytes";
+	static final String ENTRIES_METRIC = "library.suggest.entries";
+	static final int REBUILD_BATCH = 10_000;
+	/** suggerimenti conservati per nodo, anche il massimo restituito da una ricerca */
+	public static final int TOP_K = 10;
+	/** sottoalberi con al più questi suggerimenti vengono visitati invece di conservarne i migliori */
+	static final int SMALL_SUBTREE = 32;
+
+	/** occupazione stimata di nodo, array dei figli, etichetta e suggerimento (intestazioni e riferimenti) */
+	private static final int NODE_BYTES = 40 + 20 + 40;
+	private static final int SUGGESTION_BYTES = 24 + 40;
+	private static final int TOP_BYTES = 16 + 4 * TOP_K;
+
+	private static final char TITLE = 't';
+	private static final char AUTHOR = 'a';
+	private static final Node[] NO_CHILDREN = new Node[0];
+	private static final Comparator<Entry> BY_WEIGHT = Comparator.<Entry>comparingInt(e -> -e.weight)
+			.thenComparing(e -> e.text, String.CASE_INSENSITIVE_ORDER);
+
+	@Autowired
+	private BookRepository bookRep;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private Node root = new Node("");
+	private long nodes = 1;
+	private long labelChars;
+	private long tops;
+	private long suggestions;
+	private long textChars;
+
+	/**
+	 * Suggerimento restituito dalla ricerca.
+	 *
+	 * @param text   titolo o autore, come scritto nel primo libro indicizzato
+	 * @param author {@code true} se è un autore, {@code false} se è un titolo
+	 * @param weight numero di libri con questo titolo o di questo autore
+	 */
+	public record Suggestion(String text, boolean author, int weight) {
+	}
+
+	private static final class Node {
+		String label;
+		Node[] children = NO_CHILDREN;
+		/** suggerimento che termina in questo nodo */
+		Entry terminal;
+		/** suggerimenti nel sottoalbero */
+		int count;
+		/** i più pesanti del sottoalbero, solo se {@code count > SMALL_SUBTREE} */
+		Entry[] top;
+
+		Node(String label) {
+			this.label = label;
+		}
+
+		int indexOf(char c) {
+			int lo = 0;
+			int hi = children.length - 1;
+			while (lo <= hi) {
+				int mid = (lo + hi) >>> 1;
+				char m = children[mid].label.charAt(0);
+				if (m < c)
+					lo = mid + 1;
+				else if (m > c)
+					hi = mid - 1;
+				else
+					return mid;
+			}
+			return -(lo + 1);
+		}
+	}
+
+	private static final class Entry {
+		final String text;
+		final boolean author;
+		int weight;
+
+		Entry(String text, boolean author) {
+			this.text = text;
+			this.author = author;
+		}
+
+		Suggestion suggestion() {
+			return new Suggestion(text, author, weight);
+		}
+	}
+
+	public SuggestionTrie(MeterRegistry registry) {
+		Gauge.builder(BYTES_METRIC, this, SuggestionTrie::sizeInBytes).baseUnit("bytes")
+				.description("Occupazione stimata del trie dei suggerimenti").register(registry);
+		Gauge.builder(ENTRIES_METRIC, this, SuggestionTrie::size)
+				.description("Titoli e autori distinti nel trie dei suggerimenti").register(registry);
+	}
+
+	/**
+	 * Ricostruisce il trie leggendo tutti i libri dal database a blocchi ordinati per id; i
+	 * migliori di ogni nodo vengono calcolati una sola volta alla fine.
+	 *
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@EventListener({ ApplicationReadyEvent.class, CatalogReloadEvent.class })
+	public void rebuild() {
+
+		lock.writeLock().lock();
+		try {
+			root = new Node("");
+			nodes = 1;
+			labelChars = tops = suggestions = textChars = 0;
+
+			long last = 0;
+			List<BookSnapshot> batch;
+			do {
+				batch = bookRep.findSnapshotsAfter(last, PageRequest.of(0, REBUILD_BATCH));
+				for (BookSnapshot b : batch) {
+					insert(b.titolo(), false, false);
+					insert(b.autore(), true, false);
+					last = b.id();
+				}
+			} while (batch.size() == REBUILD_BATCH);
+
+			refreshAll(root);
+			log.info("Trie dei suggerimenti ricostruito: {} suggerimenti, {} nodi, {} byte", suggestions, nodes,
+					sizeInBytes());
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Aggiorna i pesi dopo la modifica di un libro; le modifiche che non toccano titolo e
+	 * autore (es. acquisti) non cambiano nulla.
+	 *
+	 * @param e evento di modifica
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onBookChanged(BookChangedEvent e) {
+
+		BookSnapshot before = e.before();
+		BookSnapshot after = e.after();
+		if (before != null && after != null && Objects.equals(before.titolo(), after.titolo())
+				&& Objects.equals(before.autore(), after.autore()))
+			return;
+
+		lock.writeLock().lock();
+		try {
+			if (before != null) {
+				delete(before.titolo(), false);
+				delete(before.autore(), true);
+			}
+			if (after != null) {
+				insert(after.titolo(), false, true);
+				insert(after.autore(), true, true);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Titoli e autori che iniziano con il prefisso, dal più diffuso.
+	 *
+	 * @param prefix inizio del titolo o dell'autore, senza distinzione di maiuscole e accenti
+	 * @param limit  numero massimo di suggerimenti (al più {@value #TOP_K})
+	 * @return i suggerimenti, dal più pesante
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public List<Suggestion> suggest(String prefix, int limit) {
+
+		String p = TrigramIndex.normalize(prefix);
+		int max = Math.min(limit, TOP_K);
+		if (p.isEmpty() || max <= 0)
+			return List.of();
+
+		lock.readLock().lock();
+		try {
+			Node node = root;
+			int i = 0;
+			while (i < p.length()) {
+				int at = node.indexOf(p.charAt(i));
+				if (at < 0)
+					return List.of();
+				node = node.children[at];
+				int common = commonPrefix(node.label, p, i);
+				// il prefisso può finire a metà di un'etichetta: il sottoalbero è comunque quello giusto
+				if (common < node.label.length() && i + common < p.length())
+					return List.of();
+				i += common;
+			}
+
+			Entry[] best = node.top != null ? node.top : best(node);
+			List<Suggestion> result = new ArrayList<>(Math.min(max, best.length));
+			for (int j = 0; j < best.length && j < max; j++)
+				result.add(best[j].suggestion());
+			return result;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return numero di titoli e autori distinti
+	 */
+	public long size() {
+		lock.readLock().lock();
+		try {
+			return suggestions;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return occupazione stimata di nodi, etichette, suggerimenti e liste dei migliori, in byte
+	 */
+	public long sizeInBytes() {
+		lock.readLock().lock();
+		try {
+			return nodes * NODE_BYTES + labelChars + suggestions * SUGGESTION_BYTES + textChars + tops * TOP_BYTES;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private static String key(String text, boolean author) {
+		String normalized = TrigramIndex.normalize(text);
+		return normalized.isEmpty() ? null : normalized + '\0' + (author ? AUTHOR : TITLE);
+	}
+
+	private void insert(String text, boolean author, boolean refresh) {
+
+		String key = key(text, author);
+		if (key == null)
+			return;
+
+		List<Node> path = new ArrayList<>();
+		Node node = root;
+		path.add(node);
+		int i = 0;
+		while (i < key.length()) {
+			int at = node.indexOf(key.charAt(i));
+			if (at < 0) {
+				Node leaf = new Node(key.substring(i));
+				node.children = insertAt(node.children, -at - 1, leaf);
+				nodes++;
+				labelChars += leaf.label.length();
+				path.add(leaf);
+				node = leaf;
+				break;
+			}
+			Node child = node.children[at];
+			int common = commonPrefix(child.label, key, i);
+			if (common < child.label.length()) {
+				// la chiave si separa a metà dell'etichetta: nuovo nodo intermedio
+				Node mid = new Node(child.label.substring(0, common));
+				child.label = child.label.substring(common);
+				mid.children = new Node[] { child };
+				mid.count = child.count;
+				node.children[at] = mid;
+				nodes++;
+				child = mid;
+			}
+			path.add(child);
+			node = child;
+			i += common;
+		}
+
+		if (node.terminal == null) {
+			node.terminal = new Entry(text, author);
+			suggestions++;
+			textChars += text.length();
+			for (Node n : path)
+				n.count++;
+		}
+		node.terminal.weight++;
+		if (refresh)
+			refreshPath(path, node.terminal, true);
+	}
+
+	private void delete(String text, boolean author) {
+
+		String key = key(text, author);
+		if (key == null)
+			return;
+
+		List<Node> path = new ArrayList<>();
+		Node node = root;
+		path.add(node);
+		int i = 0;
+		while (i < key.length()) {
+			int at = node.indexOf(key.charAt(i));
+			if (at < 0)
+				return;
+			node = node.children[at];
+			if (!key.startsWith(node.label, i))
+				return;
+			path.add(node);
+			i += node.label.length();
+		}
+		Entry entry = node.terminal;
+		if (entry == null)
+			return;
+
+		if (--entry.weight == 0) {
+			suggestions--;
+			textChars -= entry.text.length();
+			node.terminal = null;
+			for (Node n : path)
+				n.count--;
+			prune(path);
+		}
+		refreshPath(path, entry, false);
+	}
+
+	/**
+	 * Dopo la rimozione di un suggerimento toglie il nodo rimasto vuoto e riunisce al figlio i
+	 * nodi rimasti con un solo figlio, così il trie resta compresso.
+	 */
+	private void prune(List<Node> path) {
+		int last = path.size() - 1;
+		Node node = path.get(last);
+		if (last > 0 && node.terminal == null && node.children.length == 0) {
+			Node parent = path.get(last - 1);
+			parent.children = removeAt(parent.children, parent.indexOf(node.label.charAt(0)));
+			nodes--;
+			labelChars -= node.label.length();
+			dropTop(node);
+			path.remove(last);
+			node = parent;
+			last--;
+		}
+		if (last > 0 && node.terminal == null && node.children.length == 1) {
+			Node child = node.children[0];
+			node.label = node.label + child.label;
+			node.children = child.children;
+			node.terminal = child.terminal;
+			dropTop(child);
+			dropTop(node);
+			nodes--;
+		}
+	}
+
+	/**
+	 * Aggiorna i migliori dei nodi del percorso, dal basso, dopo il cambio di peso di
+	 * {@code changed}: se è salito basta spostarlo o inserirlo nella lista, se è sceso va
+	 * ricalcolata solo la lista dei nodi che lo contenevano.
+	 */
+	private void refreshPath(List<Node> path, Entry changed, boolean increased) {
+		for (int j = path.size() - 1; j >= 0; j--) {
+			Node node = path.get(j);
+			if (node.count <= SMALL_SUBTREE || node.top == null)
+				refresh(node);
+			else if (increased)
+				promote(node, changed);
+			else if (Arrays.asList(node.top).contains(changed))
+				refresh(node);
+		}
+	}
+
+	private static void promote(Node node, Entry changed) {
+		Entry[] top = node.top;
+		int at = Arrays.asList(top).indexOf(changed);
+		if (at < 0) {
+			if (top.length == TOP_K && BY_WEIGHT.compare(changed, top[TOP_K - 1]) >= 0)
+				return;
+			top = Arrays.copyOf(top, Math.min(top.length + 1, TOP_K));
+			at = top.length - 1;
+			top[at] = changed;
+		}
+		// risale finché è più pesante del precedente
+		while (at > 0 && BY_WEIGHT.compare(top[at], top[at - 1]) < 0) {
+			Entry tmp = top[at - 1];
+			top[at - 1] = top[at];
+			top[at] = tmp;
+			at--;
+		}
+		node.top = top;
+	}
+
+	private void refreshAll(Node node) {
+		for (Node child : node.children)
+			refreshAll(child);
+		refresh(node);
+	}
+
+	private void refresh(Node node) {
+		if (node.count <= SMALL_SUBTREE) {
+			dropTop(node);
+			return;
+		}
+		if (node.top == null)
+			tops++;
+		List<Entry> candidates = new ArrayList<>();
+		if (node.terminal != null)
+			candidates.add(node.terminal);
+		for (Node child : node.children)
+			candidates.addAll(Arrays.asList(child.top != null ? child.top : best(child)));
+		node.top = top(candidates);
+	}
+
+	private void dropTop(Node node) {
+		if (node.top != null) {
+			node.top = null;
+			tops--;
+		}
+	}
+
+	/**
+	 * I migliori di un sottoalbero piccolo, visitandolo tutto.
+	 */
+	private static Entry[] best(Node node) {
+		List<Entry> all = new ArrayList<>(node.count);
+		collect(node, all);
+		return top(all);
+	}
+
+	private static void collect(Node node, List<Entry> out) {
+		if (node.terminal != null)
+			out.add(node.terminal);
+		for (Node child : node.children) {
+			if (child.top != null)
+				out.addAll(Arrays.asList(child.top));
+			else
+				collect(child, out);
+		}
+	}
+
+	private static Entry[] top(List<Entry> entries) {
+		return entries.stream().sorted(BY_WEIGHT).limit(TOP_K).toArray(Entry[]::new);
+	}
+
+	private static int commonPrefix(String label, String key, int from) {
+		int n = Math.min(label.length(), key.length() - from);
+		int i = 0;
+		while (i < n && label.charAt(i) == key.charAt(from + i))
+			i++;
+		return i;
+	}
+
+	private static Node[] insertAt(Node[] nodes, int at, Node node) {
+		Node[] out = new Node[nodes.length + 1];
+		System.arraycopy(nodes, 0, out, 0, at);
+		out[at] = node;
+		System.arraycopy(nodes, at, out, at + 1, nodes.length - at);
+		return out;
+	}
+
+	private static Node[] removeAt(Node[] nodes, int at) {
+		if (nodes.length == 1)
+			return NO_CHILDREN;
+		Node[] out = new Node[nodes.length - 1];
+		System.arraycopy(nodes, 0, out, 0, at);
+		System.arraycopy(nodes, at + 1, out, at, nodes.length - at - 1);
+		return out;
+	}
+
+}
@@ -0,0 +1,486 @@
+package com.library.model.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.library.model.event.BookChangedEvent;
+import com.library.model.event.BookSnapshot;
+import com.library.model.event.CatalogReloadEvent;
+import com.library.model.repo.BookRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Indice per la ricerca su titolo e autore dei libri tollerante agli errori di battitura.
+ * <p>
+ * Il testo viene normalizzato (minuscole, senza accenti né punteggiatura) e diviso in parole;
+ * per ogni parola distinta l'indice conserva i libri che la contengono e, per ogni trigramma
+ * ({@code "  ha", " ha", "har", ...}), le parole che lo contengono. Una ricerca:
+ * </p>
+ * <ol>
+ * <li>trova per ogni parola della query le parole indicizzate entro uno o due errori: le
+ * candidate sono quelle con abbastanza trigrammi in comune, perché un errore cambia al massimo
+ * quattro trigrammi, e la distanza di edit le conferma;</li>
+ * <li>sceglie i libri che contengono più parole della query, a parità quelli che le contengono
+ * senza errori, con operazioni sulle bitmap dei libri;</li>
+ * <li>riordina i migliori per trigrammi in comune e distanza di edit tra la query e la porzione
+ * più simile di titolo o autore.</li>
+ * </ol>
+ * <p>
+ * Le parole distinte sono molte meno dei libri, quindi le posting list dei trigrammi restano
+ * corte anche con milioni di libri. Come {@link BookSearchIndex}, l'indice viene ricostruito
+ * all'avvio e dopo ogni {@link CatalogReloadEvent}, e aggiornato a ogni
+ * {@link BookChangedEvent} dopo il commit.
+ * </p>
+ */
+@Slf4j
+@Component
+public class TrigramIndex {
+
+	static final int REBUILD_BATCH = 10_000;
+	/** parole della query considerate, le successive vengono ignorate */
+	static final int MAX_QUERY_WORDS = 8;
+	/** libri, per ogni risultato richiesto, riordinati con la distanza di edit */
+	static final int RERANK_FACTOR = 5;
+
+	private static final RoaringBitmap EMPTY = new RoaringBitmap();
+
+	@Autowired
+	private BookRepository bookRep;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private Map<String, Word> words = new HashMap<>();
+	/** parole per id, {@code null} se non più presenti in nessun libro */
+	private List<Word> wordsById = new ArrayList<>();
+	/** id delle parole per trigramma */
+	private Map<Long, RoaringBitmap> postings = new HashMap<>();
+	/** testo normalizzato (titolo e autore) per id del libro */
+	private Map<Integer, Doc> docs = new HashMap<>();
+
+	private record Word(int id, String text, RoaringBitmap books) {
+	}
+
+	private record Doc(String titolo, String autore) {
+	}
+
+	/**
+	 * Libro trovato dalla ricerca.
+	 *
+	 * @param id    id del libro
+	 * @param score somiglianza con la query, da 0 a 1
+	 */
+	public record Match(int id, double score) {
+	}
+
+	/**
+	 * Ricostruisce l'indice leggendo tutti i libri dal database a blocchi ordinati per id.
+	 *
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@EventListener({ ApplicationReadyEvent.class, CatalogReloadEvent.class })
+	public void rebuild() {
+
+		lock.writeLock().lock();
+		try {
+			words = new HashMap<>();
+			wordsById = new ArrayList<>();
+			postings = new HashMap<>();
+			docs = new HashMap<>();
+
+			long last = 0;
+			List<BookSnapshot> batch;
+			do {
+				batch = bookRep.findSnapshotsAfter(last, PageRequest.of(0, REBUILD_BATCH));
+				for (BookSnapshot b : batch) {
+					add(b);
+					last = b.id();
+				}
+			} while (batch.size() == REBUILD_BATCH);
+
+			postings.values().forEach(RoaringBitmap::runOptimize);
+			words.values().forEach(w -> w.books().runOptimize());
+			log.info("Indice a trigrammi ricostruito: {} libri, {} parole, {} trigrammi, {} byte", docs.size(),
+					words.size(), postings.size(), sizeInBytes());
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Aggiorna l'indice dopo la modifica di un libro; le modifiche che non toccano titolo e
+	 * autore (es. acquisti) non cambiano nulla.
+	 *
+	 * @param e evento di modifica
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onBookChanged(BookChangedEvent e) {
+
+		BookSnapshot before = e.before();
+		BookSnapshot after = e.after();
+		if (before != null && after != null && Objects.equals(before.id(), after.id())
+				&& Objects.equals(before.titolo(), after.titolo()) && Objects.equals(before.autore(), after.autore()))
+			return;
+
+		lock.writeLock().lock();
+		try {
+			if (before != null && before.id() != null)
+				remove(Math.toIntExact(before.id()));
+			if (after != null && after.id() != null) {
+				remove(Math.toIntExact(after.id()));
+				add(after);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Cerca i libri con titolo o autore simili alla query.
+	 *
+	 * @param query testo cercato, anche con errori di battitura
+	 * @param limit numero massimo di risultati
+	 * @return i libri trovati, dal più simile
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public List<Match> search(String query, int limit) {
+
+		String q = normalize(query);
+		List<String> terms = tokens(q).stream().limit(MAX_QUERY_WORDS).toList();
+		if (terms.isEmpty() || limit <= 0)
+			return List.of();
+
+		lock.readLock().lock();
+		try {
+			int n = terms.size();
+			RoaringBitmap[] fuzzy = new RoaringBitmap[n];
+			RoaringBitmap[] exact = new RoaringBitmap[n];
+			byte[] counts = new byte[wordsById.size()];
+			for (int i = 0; i < n; i++) {
+				Word w = words.get(terms.get(i));
+				exact[i] = w == null ? EMPTY : w.books();
+				fuzzy[i] = FastAggregation.or(similar(terms.get(i), counts).stream().map(Word::books).iterator());
+			}
+
+			int[] ids = candidates(fuzzy, exact, limit * RERANK_FACTOR);
+			return ids.length == 0 ? List.of() : rank(q, ids, limit);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Parole indicizzate entro {@link #maxEdits(int)} errori dalla parola cercata, compresa
+	 * la parola stessa.
+	 * <p>
+	 * La distanza di edit viene calcolata solo per le parole che condividono abbastanza
+	 * trigrammi: quelli in comune sono contati in {@code counts}, un contatore per parola del
+	 * vocabolario, rimesso a zero prima di uscire.
+	 * </p>
+	 */
+	private List<Word> similar(String term, byte[] counts) {
+
+		int k = maxEdits(term.length());
+		Word same = words.get(term);
+		if (k == 0)
+			return same == null ? List.of() : List.of(same);
+
+		// un errore cambia al massimo quattro trigrammi; per le parole brevi, dove il limite non
+		// filtra, ne serve comunque un terzo
+		long[] grams = trigrams(term);
+		int threshold = Math.min(Byte.MAX_VALUE, Math.max(grams.length - 4 * k, (grams.length + 2) / 3));
+		RoaringBitmap[] lists = new RoaringBitmap[grams.length];
+		List<Word> similar = new ArrayList<>();
+		for (int i = 0; i < grams.length; i++) {
+			lists[i] = postings.getOrDefault(grams[i], EMPTY);
+			IntIterator it = lists[i].getIntIterator();
+			while (it.hasNext()) {
+				int id = it.next();
+				if (counts[id] < threshold && ++counts[id] == threshold) {
+					Word w = wordsById.get(id);
+					if (Math.abs(w.text().length() - term.length()) <= k && distance(term, w.text(), k) <= k)
+						similar.add(w);
+				}
+			}
+		}
+		for (RoaringBitmap list : lists)
+			list.forEach((int id) -> counts[id] = 0);
+		return similar;
+	}
+
+	/**
+	 * Fino a {@code keep} libri, prima quelli che contengono più parole della query e a parità
+	 * quelli che ne contengono di più senza errori; servono almeno metà delle parole.
+	 */
+	private static int[] candidates(RoaringBitmap[] fuzzy, RoaringBitmap[] exact, int keep) {
+
+		int n = fuzzy.length;
+		RoaringBitmap[] byWords = atLeast(fuzzy);
+		RoaringBitmap taken = new RoaringBitmap();
+		int[] ids = new int[keep];
+		int size = 0;
+
+		for (int f = n; f >= (n + 1) / 2 && size < keep; f--) {
+			RoaringBitmap level = RoaringBitmap.andNot(byWords[f], taken);
+			if (level.isEmpty())
+				continue;
+			RoaringBitmap[] restricted = new RoaringBitmap[n];
+			for (int i = 0; i < n; i++)
+				restricted[i] = RoaringBitmap.and(exact[i], level);
+			RoaringBitmap[] byExact = atLeast(restricted);
+			byExact[0] = level;
+
+			for (int e = n; e >= 0 && size < keep; e--) {
+				IntIterator it = byExact[e].getIntIterator();
+				while (it.hasNext() && size < keep) {
+					int id = it.next();
+					if (taken.checkedAdd(id))
+						ids[size++] = id;
+				}
+			}
+		}
+		return Arrays.copyOf(ids, size);
+	}
+
+	/**
+	 * @return {@code level[j]} contiene i libri presenti in almeno {@code j} degli insiemi
+	 */
+	private static RoaringBitmap[] atLeast(RoaringBitmap[] sets) {
+		RoaringBitmap[] level = new RoaringBitmap[sets.length + 1];
+		for (int j = 0; j < level.length; j++)
+			level[j] = new RoaringBitmap();
+		for (int i = 0; i < sets.length; i++) {
+			for (int j = i + 1; j >= 2; j--)
+				level[j].or(RoaringBitmap.and(level[j - 1], sets[i]));
+			level[1].or(sets[i]);
+		}
+		return level;
+	}
+
+	private List<Match> rank(String q, int[] ids, int limit) {
+
+		long[] grams = trigrams(q);
+		List<Match> matches = new ArrayList<>(ids.length);
+		for (int id : ids) {
+			Doc d = docs.get(id);
+			Set<Long> docGrams = new HashSet<>();
+			for (long g : trigrams(d.titolo() + " " + d.autore()))
+				docGrams.add(g);
+			int overlap = 0;
+			for (long g : grams)
+				if (docGrams.contains(g))
+					overlap++;
+			int distance = Math.min(substringDistance(q, d.titolo()), substringDistance(q, d.autore()));
+			double edit = Math.max(0, 1 - (double) distance / q.length());
+			double score = ((double) overlap / grams.length + edit) / 2;
+			matches.add(new Match(id, Math.round(score * 1000) / 1000.0));
+		}
+		matches.sort(Comparator.comparingDouble(Match::score).reversed().thenComparingInt(Match::id));
+		return matches.size() > limit ? matches.subList(0, limit) : matches;
+	}
+
+	/**
+	 * @return numero di libri indicizzati
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return docs.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return occupazione stimata di posting list, parole e testi normalizzati, in byte
+	 */
+	public long sizeInBytes() {
+		lock.readLock().lock();
+		try {
+			long bytes = postings.values().stream().mapToLong(RoaringBitmap::getLongSizeInBytes).sum();
+			for (Word w : words.values())
+				bytes += 40 + w.text().length() + w.books().getLongSizeInBytes();
+			for (Doc d : docs.values())
+				bytes += 2 * 40 + d.titolo().length() + d.autore().length();
+			return bytes;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Errori tollerati in una parola: nessuno fino a due lettere, uno fino a cinque, poi due.
+	 */
+	static int maxEdits(int length) {
+		return length <= 2 ? 0 : length <= 5 ? 1 : 2;
+	}
+
+	/**
+	 * Minuscole, senza accenti; i caratteri diversi da lettere e cifre diventano spazi singoli.
+	 */
+	static String normalize(String value) {
+		if (value == null)
+			return "";
+		String s = Normalizer.normalize(value.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+		StringBuilder out = new StringBuilder(s.length());
+		boolean space = true;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (Character.getType(c) == Character.NON_SPACING_MARK)
+				continue;
+			if (Character.isLetterOrDigit(c)) {
+				out.append(c);
+				space = false;
+			} else if (!space) {
+				out.append(' ');
+				space = true;
+			}
+		}
+		int len = out.length();
+		return len > 0 && out.charAt(len - 1) == ' ' ? out.substring(0, len - 1) : out.toString();
+	}
+
+	/**
+	 * Parole distinte di un testo normalizzato, nell'ordine in cui compaiono.
+	 */
+	static Set<String> tokens(String normalized) {
+		Set<String> tokens = new LinkedHashSet<>();
+		for (String word : normalized.split(" "))
+			if (!word.isEmpty())
+				tokens.add(word);
+		return tokens;
+	}
+
+	/**
+	 * Trigrammi distinti di un testo normalizzato: ogni parola è preceduta da due spazi e
+	 * seguita da uno, così anche le parole brevi e gli inizi di parola hanno i loro trigrammi.
+	 */
+	static long[] trigrams(String normalized) {
+		Set<Long> grams = new LinkedHashSet<>();
+		for (String word : tokens(normalized)) {
+			String w = "  " + word + " ";
+			for (int i = 0; i + 3 <= w.length(); i++)
+				grams.add(((long) w.charAt(i) << 32) | ((long) w.charAt(i + 1) << 16) | w.charAt(i + 2));
+		}
+		return grams.stream().mapToLong(Long::longValue).toArray();
+	}
+
+	/**
+	 * Distanza di edit tra due parole, contando come un solo errore anche lo scambio di due
+	 * lettere vicine; si ferma appena supera {@code max}.
+	 */
+	static int distance(String a, String b, int max) {
+		int[] prev2 = new int[b.length() + 1];
+		int[] prev = new int[b.length() + 1];
+		int[] cur = new int[b.length() + 1];
+		for (int j = 0; j <= b.length(); j++)
+			prev[j] = j;
+		for (int i = 1; i <= a.length(); i++) {
+			cur[0] = i;
+			int rowMin = i;
+			for (int j = 1; j <= b.length(); j++) {
+				int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+				cur[j] = Math.min(Math.min(cur[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+				if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1))
+					cur[j] = Math.min(cur[j], prev2[j - 2] + 1);
+				rowMin = Math.min(rowMin, cur[j]);
+			}
+			if (rowMin > max)
+				return max + 1;
+			int[] tmp = prev2;
+			prev2 = prev;
+			prev = cur;
+			cur = tmp;
+		}
+		return prev[b.length()];
+	}
+
+	/**
+	 * Distanza di edit tra la query e la sottostringa del testo più simile (inizio e fine
+	 * liberi nel testo).
+	 */
+	static int substringDistance(String query, String text) {
+		int n = query.length();
+		int[] prev = new int[n + 1];
+		int[] cur = new int[n + 1];
+		for (int i = 0; i <= n; i++)
+			prev[i] = i;
+		int best = n;
+		for (int j = 1; j <= text.length(); j++) {
+			cur[0] = 0;
+			char t = text.charAt(j - 1);
+			for (int i = 1; i <= n; i++) {
+				int cost = query.charAt(i - 1) == t ? 0 : 1;
+				cur[i] = Math.min(Math.min(cur[i - 1] + 1, prev[i] + 1), prev[i - 1] + cost);
+			}
+			best = Math.min(best, cur[n]);
+			int[] tmp = prev;
+			prev = cur;
+			cur = tmp;
+		}
+		return best;
+	}
+
+	private void add(BookSnapshot b) {
+		int id = Math.toIntExact(b.id());
+		Doc d = new Doc(normalize(b.titolo()), normalize(b.autore()));
+		docs.put(id, d);
+		for (String text : tokens(d.titolo() + " " + d.autore()))
+			words.computeIfAbsent(text, this::newWord).books().add(id);
+	}
+
+	private Word newWord(String text) {
+		Word w = new Word(wordsById.size(), text, new RoaringBitmap());
+		wordsById.add(w);
+		for (long g : trigrams(text))
+			postings.computeIfAbsent(g, k -> new RoaringBitmap()).add(w.id());
+		return w;
+	}
+
+	private void remove(int id) {
+		Doc d = docs.remove(id);
+		if (d == null)
+			return;
+		for (String text : tokens(d.titolo() + " " + d.autore())) {
+			Word w = words.get(text);
+			w.books().remove(id);
+			if (!w.books().isEmpty())
+				continue;
+			// parola non più usata: esce dal vocabolario e dalle posting list dei trigrammi
+			words.remove(text);
+			wordsById.set(w.id(), null);
+			for (long g : trigrams(text)) {
+				RoaringBitmap bm = postings.get(g);
+				bm.remove(w.id());
+				if (bm.isEmpty())
+					postings.remove(g);
+			}
+		}
+	}
+
+}
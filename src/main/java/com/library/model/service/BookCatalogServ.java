@@ -0,0 +1,222 @@
+package com.library.model.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.config.MetricsConfig;
+import com.library.model.activity.ActivityLog;
+import com.library.model.dto.BookBatchReportDto;
+import com.library.model.dto.BookBatchResultDto;
+import com.library.model.dto.BookPageDto;
+import com.library.model.dto.BookSortField;
+import com.library.model.dto.LibroDtoOut;
+import com.library.model.entity.Book;
+import com.library.model.event.BookSnapshot;
+import com.library.model.exception.InvalidPageTokenException;
+import com.library.model.repo.BookRepository;
+
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+@Timed(value = MetricsConfig.SERVICE_TIMER, histogram = true)
+public class BookCatalogServ implements BookCatalogServImpl {
+
+	static final int DEFAULT_PAGE_SIZE = 20;
+	static final int MAX_PAGE_SIZE = 100;
+	/** ISBN per query nella lettura multipla, per contenere la dimensione della lista IN */
+	static final int BATCH_CHUNK = 1000;
+	static final String NOT_FOUND = "Libro non trovato";
+
+	@Autowired
+	private BookRepository bookRep;
+	@Autowired
+	private ObjectMapper mapper;
+	@Autowired
+	private ActivityLog activity;
+
+	/**
+	 * Contenuto del token di continuazione: campo e verso di ordinamento, più la chiave
+	 * (valore, id) dell'ultimo libro restituito. Un valore nullo è indicato da {@code n}, così
+	 * non si confonde con la stringa {@code "null"}.
+	 */
+	record PageToken(String s, String d, String v, boolean n, Long i) {
+	}
+
+	/**
+	 * Restituisce una pagina del catalogo ordinata per il campo richiesto.
+	 * <p>
+	 * La paginazione è keyset: il token restituito codifica l'ultimo libro della pagina e la
+	 * pagina successiva riparte da lì, con lo stesso costo della prima. I libri senza valore
+	 * nel campo di ordinamento vengono prima degli altri in ordine crescente e dopo in ordine
+	 * decrescente.
+	 * </p>
+	 *
+	 * @param sort      campo di ordinamento: titolo, autore, costo o tipologia
+	 * @param direction verso di ordinamento: asc o desc
+	 * @param size      numero di libri per pagina (massimo {@value #MAX_PAGE_SIZE})
+	 * @param token     token di continuazione della pagina precedente, {@code null} per la prima
+	 * @return la pagina richiesta con il token per la successiva
+	 * @throws InvalidPageTokenException se il token o i parametri di ordinamento non sono validi
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@Override
+	public BookPageDto listBooks(String sort, String direction, int size, String token) {
+
+		BookSortField field = parseSort(sort);
+		boolean ascending = parseDirection(direction);
+		int limit = size <= 0 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+
+		Object lastValue = null;
+		Long lastId = null;
+		if (token != null && !token.isBlank()) {
+			PageToken t = decode(token);
+			if (!field.name().equals(t.s()) || ascending != "asc".equals(t.d())) {
+				log.error("Token di pagina non coerente con l'ordinamento richiesto: {} {}", sort, direction);
+				throw new InvalidPageTokenException("Il token non corrisponde all'ordinamento richiesto");
+			}
+			try {
+				lastValue = t.n() ? null : field.parse(t.v());
+			} catch (NumberFormatException e) {
+				throw new InvalidPageTokenException("Token di pagina non valido", e);
+			}
+			lastId = t.i();
+		}
+
+		// un elemento in più per sapere se esiste una pagina successiva
+		List<Book> books = bookRep.findPageAfter(field, ascending, lastValue, lastId, limit + 1);
+		boolean hasNext = books.size() > limit;
+		if (hasNext)
+			books = books.subList(0, limit);
+
+		String next = null;
+		if (hasNext) {
+			Book last = books.get(books.size() - 1);
+			Object value = field.valueOf(last);
+			next = encode(new PageToken(field.name(), ascending ? "asc" : "desc",
+					value != null ? String.valueOf(value) : null, value == null, last.getId()));
+		}
+
+		// proprietario già caricato dalla join fetch; conversione diretta, senza il proxy di BookServ
+		List<LibroDtoOut> content = books.stream()
+				.map(b -> BookServ.toDto(b, b.getProprietario() != null ? b.getProprietario().getEmail() : null))
+				.collect(Collectors.toList());
+		activity.record("listBooks", "sort", field.name(), "size", content.size());
+		return new BookPageDto(content, next, hasNext);
+	}
+
+	/**
+	 * Legge più libri per ISBN in una sola chiamata.
+	 * <p>
+	 * Gli ISBN distinti vengono cercati con una query {@code IN} ogni {@value #BATCH_CHUNK}
+	 * codici, invece di una ricerca per libro; i risultati sono poi associati alle voci della
+	 * richiesta in un solo passaggio. Un ISBN inesistente non interrompe la lettura: la sua
+	 * voce riporta {@code found=false} e il motivo.
+	 * </p>
+	 *
+	 * @param isbns gli ISBN da leggere, anche ripetuti
+	 * @return il risultato di ogni ISBN, nello stesso ordine della richiesta
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@Override
+	public BookBatchReportDto findBooks(List<String> isbns) {
+
+		BookBatchReportDto report = new BookBatchReportDto();
+		if (isbns == null || isbns.isEmpty())
+			return report;
+
+		Set<String> distinct = new LinkedHashSet<>();
+		for (String isbn : isbns) {
+			if (isbn != null && !isbn.isBlank())
+				distinct.add(isbn);
+		}
+
+		Map<String, LibroDtoOut> byIsbn = new HashMap<>(distinct.size() * 4 / 3 + 1);
+		List<String> chunk = new ArrayList<>(Math.min(distinct.size(), BATCH_CHUNK));
+		for (String isbn : distinct) {
+			chunk.add(isbn);
+			if (chunk.size() == BATCH_CHUNK) {
+				load(chunk, byIsbn);
+				chunk.clear();
+			}
+		}
+		if (!chunk.isEmpty())
+			load(chunk, byIsbn);
+
+		List<BookBatchResultDto> results = new ArrayList<>(isbns.size());
+		for (String isbn : isbns) {
+			LibroDtoOut book = isbn != null ? byIsbn.get(isbn) : null;
+			results.add(new BookBatchResultDto(isbn, book != null, book, book != null ? null : NOT_FOUND));
+			if (book != null)
+				report.setFound(report.getFound() + 1);
+		}
+		report.setRequested(isbns.size());
+		report.setMissing(report.getRequested() - report.getFound());
+		report.setResults(results);
+
+		activity.record("findBooks", "requested", report.getRequested(), "found", report.getFound());
+		return report;
+	}
+
+	private void load(List<String> isbns, Map<String, LibroDtoOut> target) {
+		for (BookSnapshot b : bookRep.findSnapshotsByIsbnIn(isbns))
+			target.put(b.identificativoIsbn(), BookServ.toDto(b));
+		log.debug("Lettura multipla: {} ISBN cercati", isbns.size());
+	}
+
+	private BookSortField parseSort(String sort) {
+		try {
+			return BookSortField.from(sort);
+		} catch (IllegalArgumentException | NullPointerException e) {
+			log.error("Campo di ordinamento non valido: {}", sort);
+			throw new InvalidPageTokenException("Campo di ordinamento non valido: " + sort, e);
+		}
+	}
+
+	private boolean parseDirection(String direction) {
+		if (direction == null || direction.equalsIgnoreCase("asc"))
+			return true;
+		if (direction.equalsIgnoreCase("desc"))
+			return false;
+		log.error("Verso di ordinamento non valido: {}", direction);
+		throw new InvalidPageTokenException("Verso di ordinamento non valido: " + direction);
+	}
+
+	private String encode(PageToken t) {
+		try {
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(mapper.writeValueAsBytes(t));
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("Impossibile serializzare il token di pagina", e);
+		}
+	}
+
+	private PageToken decode(String token) {
+		try {
+			byte[] json = Base64.getUrlDecoder().decode(token.getBytes(StandardCharsets.US_ASCII));
+			PageToken t = mapper.readValue(json, PageToken.class);
+			if (t.s() == null || t.i() == null || (t.v() == null) != t.n())
+				throw new InvalidPageTokenException("Token di pagina incompleto");
+			return t;
+		} catch (IllegalArgumentException | IOException e) {
+			log.error("Token di pagina non valido: {}", token);
+			throw new InvalidPageTokenException("Token di pagina non valido", e);
+		}
+	}
+
+}
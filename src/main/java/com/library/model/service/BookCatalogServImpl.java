@@ -0,0 +1,14 @@
+package com.library.model.service;
+
+import java.util.List;
+
+import com.library.model.dto.BookBatchReportDto;
+import com.library.model.dto.BookPageDto;
+
+public interface BookCatalogServImpl {
+
+	public BookPageDto listBooks(String sort, String direction, int size, String token);
+
+	public BookBatchReportDto findBooks(List<String> isbns);
+
+}
@@ -0,0 +1,120 @@
+package com.library.model.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.config.MetricsConfig;
+import com.library.model.activity.ActivityLog;
+import com.library.model.event.BookSnapshot;
+import com.library.model.io.CsvWriter;
+import com.library.model.io.ExportFormat;
+import com.library.model.repo.BookRepository;
+
+import io.micrometer.core.annotation.Timed;
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+@Timed(value = MetricsConfig.SERVICE_TIMER, histogram = true)
+public class BookExportServ implements BookExportServImpl {
+
+	static final String[] CSV_HEADER = { "identificativoIsbn", "titolo", "tipologia", "autore", "linguaggio", "costo",
+			"proprietario" };
+
+	static final int FLUSH_EVERY = 10_000;
+
+	@Autowired
+	private BookRepository bookRep;
+	@Autowired
+	private ObjectMapper mapper;
+	@Autowired
+	private ActivityLog activity;
+
+	/**
+	 * Esporta l'intero catalogo in streaming sul flusso indicato.
+	 * <p>
+	 * Le righe sono lette con un cursore (fetch size limitato) e scritte una alla volta:
+	 * non vengono mai accumulate liste di libri o DTO, quindi la memoria usata non dipende
+	 * dalla dimensione del catalogo. Il proprietario segue la stessa regola di
+	 * {@link BookServ#libroDtoOut}.
+	 * </p>
+	 *
+	 * @param format formato di output (CSV o NDJSON)
+	 * @param out    flusso su cui scrivere, non viene chiuso
+	 * @return numero di libri esportati
+	 * @throws IOException in caso di errore di scrittura
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@Override
+	@Transactional
+	public long exportBooks(ExportFormat format, OutputStream out) throws IOException {
+
+		long count;
+		try (Stream<BookSnapshot> books = bookRep.streamAllSnapshots()) {
+			Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+			count = switch (format) {
+			case CSV -> writeCsv(books.iterator(), new CsvWriter(w));
+			case NDJSON -> writeNdjson(books.iterator(), w);
+			};
+			w.flush();
+		}
+
+		activity.record("exportBooks", "format", format.name(), "count", count);
+		return count;
+	}
+
+	private long writeCsv(Iterator<BookSnapshot> books, CsvWriter csv) throws IOException {
+
+		csv.writeRecord((Object[]) CSV_HEADER);
+		long count = 0;
+		while (books.hasNext()) {
+			BookSnapshot b = books.next();
+			csv.writeRecord(b.identificativoIsbn(), b.titolo(), b.tipologia(), b.autore(), b.linguaggio(), b.costo(),
+					BookServ.ownerLabel(b.proprietario()));
+			if (++count % FLUSH_EVERY == 0)
+				csv.flush();
+		}
+		return count;
+	}
+
+	private long writeNdjson(Iterator<BookSnapshot> books, Writer w) throws IOException {
+
+		JsonGenerator json = mapper.getFactory().createGenerator(w);
+		json.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+		// un oggetto per riga, senza il separatore di default tra valori radice
+		json.setRootValueSeparator(null);
+
+		long count = 0;
+		while (books.hasNext()) {
+			BookSnapshot b = books.next();
+			json.writeStartObject();
+			json.writeStringField("identificativoIsbn", b.identificativoIsbn());
+			json.writeStringField("titolo", b.titolo());
+			json.writeStringField("tipologia", b.tipologia());
+			json.writeStringField("autore", b.autore());
+			json.writeStringField("linguaggio", b.linguaggio());
+			json.writeNumberField("costo", b.costo());
+			json.writeStringField("proprietario", BookServ.ownerLabel(b.proprietario()));
+			json.writeEndObject();
+			json.writeRaw('\n');
+			if (++count % FLUSH_EVERY == 0)
+				json.flush();
+		}
+		json.flush();
+		return count;
+	}
+
+}
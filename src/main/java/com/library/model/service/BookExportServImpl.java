@@ -0,0 +1,12 @@
+package com.library.model.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.library.model.io.ExportFormat;
+
+public interface BookExportServImpl {
+
+	public long exportBooks(ExportFormat format, OutputStream out) throws IOException;
+
+}
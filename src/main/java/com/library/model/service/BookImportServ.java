@@ -0,0 +1,275 @@
+package com.library.model.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.library.config.MetricsConfig;
+import com.library.model.activity.ActivityLog;
+import com.library.model.dto.ImportReportDto;
+import com.library.model.event.BookChangedEvent;
+import com.library.model.event.BookSnapshot;
+import com.library.model.exception.InvalidCsvException;
+import com.library.model.exception.InvalidPriceException;
+import com.library.model.io.CsvReader;
+import com.library.model.isbn.IsbnAllocator;
+import com.library.model.repo.BookRepository;
+
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+@Timed(value = MetricsConfig.SERVICE_TIMER, histogram = true)
+public class BookImportServ implements BookImportServImpl {
+
+	static final List<String> REQUIRED_COLUMNS = List.of("titolo", "tipologia", "autore", "linguaggio", "costo");
+	static final String ISBN_COLUMN = "identificativoisbn";
+
+	private static final String INSERT_SQL = "insert into books (identificativo_isbn, titolo, tipologia, autore, linguaggio, costo) "
+			+ "values (?, ?, ?, ?, ?, ?)";
+	public static final String EXISTING_SQL = "select identificativo_isbn from books where identificativo_isbn in (:isbns)";
+
+	@Autowired
+	private BookServ bs;
+	@Autowired
+	private NamedParameterJdbcTemplate jdbc;
+	@Autowired
+	private TransactionTemplate tx;
+	@Autowired
+	private ApplicationEventPublisher events;
+	@Autowired
+	private ActivityLog activity;
+	@Autowired
+	private IsbnAllocator isbnAllocator;
+	@Autowired
+	private BookRepository bookRep;
+
+	@Value("${library.import.chunk-size:5000}")
+	private int chunkSize;
+
+	/**
+	 * Riga del file già validata, pronta per l'inserimento.
+	 */
+	private record Row(long line, String isbn, String titolo, String tipologia, String autore, String linguaggio,
+			double costo) {
+	}
+
+	/**
+	 * Importa in streaming un file CSV di libri di dimensione arbitraria.
+	 * <p>
+	 * La prima riga deve contenere l'intestazione con le colonne {@code titolo, tipologia,
+	 * autore, linguaggio, costo} e, facoltativa, {@code identificativoIsbn} (se assente o vuota
+	 * l'ISBN viene assegnato come in {@code createDtoInParam}). Le righe vengono elaborate a
+	 * blocchi: per ogni blocco una sola query verifica gli ISBN già presenti e gli inserimenti
+	 * sono eseguiti come batch JDBC in una transazione. La memoria usata dipende solo dalla
+	 * dimensione del blocco.
+	 * </p>
+	 * <p>
+	 * Per ogni libro inserito viene pubblicato un {@link BookChangedEvent} di creazione, come
+	 * per {@code createDtoInParam}: indici, modello di lettura, statistiche e audit vengono
+	 * aggiornati blocco per blocco, senza ricostruzioni complete.
+	 * </p>
+	 *
+	 * @param in contenuto CSV codificato in UTF-8
+	 * @return il report con righe importate, scarti e throughput
+	 * @throws IOException          in caso di errore di lettura
+	 * @throws InvalidCsvException  se l'intestazione o la struttura del file non sono valide
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@Override
+	public ImportReportDto importCsv(InputStream in) throws IOException {
+
+		long start = System.nanoTime();
+		ImportReportDto report = new ImportReportDto();
+
+		try (CsvReader csv = new CsvReader(
+				new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024))) {
+
+			Map<String, Integer> columns = readHeader(csv.next());
+			Integer isbnCol = columns.get(ISBN_COLUMN);
+
+			List<Row> chunk = new ArrayList<>(chunkSize);
+			List<String> fields;
+			while ((fields = csv.next()) != null) {
+				report.setRowsRead(report.getRowsRead() + 1);
+				Row row = parse(csv.getRecordLine(), fields, columns, isbnCol, report);
+				if (row == null)
+					continue;
+
+				chunk.add(row);
+				if (chunk.size() >= chunkSize) {
+					flush(chunk, report);
+					chunk.clear();
+				}
+			}
+			if (!chunk.isEmpty())
+				flush(chunk, report);
+		} finally {
+			long elapsed = System.nanoTime() - start;
+			report.setElapsedMs(elapsed / 1_000_000);
+			report.setRowsPerSecond(elapsed > 0 ? report.getRowsRead() * 1_000_000_000.0 / elapsed : 0);
+		}
+
+		activity.record("importCsv", "rowsRead", report.getRowsRead(), "imported", report.getImported(),
+				"rejected", report.getRejected(), "elapsedMs", report.getElapsedMs());
+		return report;
+	}
+
+	private static Map<String, Integer> readHeader(List<String> header) {
+
+		if (header == null)
+			throw new InvalidCsvException("File CSV vuoto");
+
+		Map<String, Integer> columns = new HashMap<>();
+		for (int i = 0; i < header.size(); i++) {
+			String name = header.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT).replace("_", "");
+			columns.put(name, i);
+		}
+		for (String required : REQUIRED_COLUMNS) {
+			if (!columns.containsKey(required)) {
+				log.error("Colonna obbligatoria mancante nell'intestazione CSV: {}", required);
+				throw new InvalidCsvException("Colonna obbligatoria mancante: " + required);
+			}
+		}
+		return columns;
+	}
+
+	/**
+	 * Valida una riga del file; se non è valida la registra tra gli scarti e restituisce
+	 * {@code null}.
+	 */
+	private Row parse(long line, List<String> fields, Map<String, Integer> columns, Integer isbnCol,
+			ImportReportDto report) {
+
+		String titolo = field(fields, columns.get("titolo"));
+		String tipologia = field(fields, columns.get("tipologia"));
+		String autore = field(fields, columns.get("autore"));
+		String linguaggio = field(fields, columns.get("linguaggio"));
+		String costoRaw = field(fields, columns.get("costo"));
+		String isbn = isbnCol != null ? field(fields, isbnCol) : null;
+
+		for (String required : REQUIRED_COLUMNS) {
+			if (field(fields, columns.get(required)) == null) {
+				report.reject(line, isbn, "Campo obbligatorio mancante: " + required);
+				return null;
+			}
+		}
+
+		double costo;
+		try {
+			costo = Double.parseDouble(costoRaw);
+			bs.validatePrice(costo);
+		} catch (NumberFormatException e) {
+			report.reject(line, isbn, "Prezzo non numerico: " + costoRaw);
+			return null;
+		} catch (InvalidPriceException e) {
+			report.reject(line, isbn, e.getMessage());
+			return null;
+		}
+
+		if (isbn == null)
+			isbn = isbnAllocator.next();
+
+		return new Row(line, isbn, titolo, tipologia, autore, linguaggio, costo);
+	}
+
+	private static String field(List<String> fields, Integer index) {
+		if (index == null || index >= fields.size())
+			return null;
+		String v = fields.get(index).trim();
+		return v.isEmpty() ? null : v;
+	}
+
+	/**
+	 * Scarta i duplicati del blocco e quelli già presenti a sistema (una query), poi inserisce
+	 * le righe rimanenti con un batch JDBC e pubblica la creazione dei libri inseriti.
+	 */
+	private void flush(List<Row> chunk, ImportReportDto report) {
+
+		Map<String, Row> unique = new LinkedHashMap<>();
+		for (Row r : chunk) {
+			if (unique.putIfAbsent(r.isbn(), r) != null)
+				report.reject(r.line(), r.isbn(), "ISBN duplicato nel file");
+		}
+
+		Set<String> existing = new HashSet<>(
+				jdbc.queryForList(EXISTING_SQL, Map.of("isbns", unique.keySet()), String.class));
+
+		List<Row> toInsert = new ArrayList<>(unique.size());
+		for (Row r : unique.values()) {
+			if (existing.contains(r.isbn()))
+				report.reject(r.line(), r.isbn(), "Libro già presente nel sistema");
+			else
+				toInsert.add(r);
+		}
+
+		if (toInsert.isEmpty())
+			return;
+
+		try {
+			tx.executeWithoutResult(status -> {
+				jdbc.getJdbcTemplate().batchUpdate(INSERT_SQL, toInsert, toInsert.size(), (ps, r) -> {
+					ps.setString(1, r.isbn());
+					ps.setString(2, r.titolo());
+					ps.setString(3, r.tipologia());
+					ps.setString(4, r.autore());
+					ps.setString(5, r.linguaggio());
+					ps.setDouble(6, r.costo());
+				});
+				// gli eventi vengono consegnati dopo il commit del blocco
+				publishCreated(toInsert.stream().map(Row::isbn).toList());
+			});
+			report.setImported(report.getImported() + toInsert.size());
+		} catch (DuplicateKeyException e) {
+			// un'altra richiesta ha inserito uno degli ISBN dopo la verifica: il batch è
+			// annullato e il blocco viene inserito una riga alla volta
+			log.warn("ISBN inserito in concorrenza, inserimento singolo di {} libri", toInsert.size());
+			List<String> inserted = new ArrayList<>(toInsert.size());
+			for (Row r : toInsert) {
+				try {
+					jdbc.getJdbcTemplate().update(INSERT_SQL, r.isbn(), r.titolo(), r.tipologia(), r.autore(),
+							r.linguaggio(), r.costo());
+					inserted.add(r.isbn());
+					report.setImported(report.getImported() + 1);
+				} catch (DuplicateKeyException dup) {
+					report.reject(r.line(), r.isbn(), "Libro già presente nel sistema");
+				}
+			}
+			publishCreated(inserted);
+		}
+		log.debug("Blocco importato: {} libri", toInsert.size());
+	}
+
+	/**
+	 * Rilegge i libri appena inseriti (id, versione e data di modifica sono assegnati dal
+	 * database) e ne pubblica la creazione.
+	 */
+	private void publishCreated(List<String> isbns) {
+
+		if (isbns.isEmpty())
+			return;
+		for (BookSnapshot b : bookRep.findSnapshotsByIsbnIn(isbns))
+			events.publishEvent(new BookChangedEvent(null, b));
+	}
+
+}
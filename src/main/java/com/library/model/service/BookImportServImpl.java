@@ -0,0 +1,12 @@
+package com.library.model.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.library.model.dto.ImportReportDto;
+
+public interface BookImportServImpl {
+
+	public ImportReportDto importCsv(InputStream in) throws IOException;
+
+}
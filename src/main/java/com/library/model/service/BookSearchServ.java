@@ -0,0 +1,155 @@
+package com.library.model.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.library.config.MetricsConfig;
+import com.library.model.activity.ActivityLog;
+import com.library.model.dto.BookSearchResultDto;
+import com.library.model.dto.FuzzyMatchDto;
+import com.library.model.dto.LibroDtoOut;
+import com.library.model.dto.SuggestionDto;
+import com.library.model.entity.Book;
+import com.library.model.repo.BookRepository;
+import com.library.model.search.BookSearchCriteria;
+import com.library.model.search.BookSearchIndex;
+import com.library.model.search.SuggestionTrie;
+import com.library.model.search.TrigramIndex;
+
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+@Timed(value = MetricsConfig.SERVICE_TIMER, histogram = true)
+public class BookSearchServ implements BookSearchServImpl {
+
+	static final int DEFAULT_LIMIT = 20;
+	static final int MAX_LIMIT = 100;
+
+	@Autowired
+	private BookSearchIndex index;
+	@Autowired
+	private TrigramIndex trigrams;
+	@Autowired
+	private SuggestionTrie suggestions;
+	@Autowired
+	private BookRepository bookRep;
+	@Autowired
+	private BookServ bs;
+	@Autowired
+	private ActivityLog activity;
+
+	/**
+	 * Ricerca avanzata per autore, tipologia, lingua e intervallo di prezzo.
+	 * <p>
+	 * I filtri vengono risolti sull'indice in memoria; dal database vengono letti solo
+	 * i libri restituiti, con una singola query per id.
+	 * </p>
+	 *
+	 * @param author   autore (opzionale, senza distinzione maiuscole/minuscole)
+	 * @param type     tipologia (opzionale)
+	 * @param language lingua (opzionale)
+	 * @param minPrice prezzo minimo incluso (opzionale)
+	 * @param maxPrice prezzo massimo incluso (opzionale)
+	 * @param limit    numero massimo di libri restituiti (massimo {@value #MAX_LIMIT})
+	 * @return il numero totale di risultati e i primi {@code limit} libri in ordine di id
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@Override
+	public BookSearchResultDto search(String author, String type, String language, Double minPrice, Double maxPrice,
+			int limit) {
+
+		BookSearchCriteria criteria = new BookSearchCriteria(blankToNull(author), blankToNull(type),
+				blankToNull(language), minPrice, maxPrice);
+		int max = limit <= 0 ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+
+		RoaringBitmap ids = index.search(criteria);
+
+		List<Long> page = new ArrayList<>(max);
+		IntIterator it = ids.getIntIterator();
+		while (it.hasNext() && page.size() < max)
+			page.add((long) it.next());
+
+		List<LibroDtoOut> books = page.isEmpty() ? List.of()
+				: bookRep.findAllWithOwnerByIdIn(page).stream()
+						.sorted(Comparator.comparing(Book::getId))
+						.map(bs::libroDtoOut)
+						.collect(Collectors.toList());
+
+		activity.record("searchBooks", "criteria", criteria.toString(), "results", ids.getLongCardinality());
+		return new BookSearchResultDto(ids.getLongCardinality(), books);
+	}
+
+	/**
+	 * Ricerca per titolo o autore tollerante agli errori di battitura.
+	 * <p>
+	 * I candidati vengono scelti e ordinati sull'indice a trigrammi; dal database vengono
+	 * letti solo i libri restituiti, con una singola query per id.
+	 * </p>
+	 *
+	 * @param query testo cercato
+	 * @param limit numero massimo di libri restituiti (massimo {@value #MAX_LIMIT})
+	 * @return i libri trovati con la loro somiglianza, dal più simile
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@Override
+	public List<FuzzyMatchDto> fuzzySearch(String query, int limit) {
+
+		int max = limit <= 0 ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+		List<TrigramIndex.Match> matches = trigrams.search(query, max);
+		activity.record("fuzzySearchBooks", "query", query, "results", matches.size());
+		if (matches.isEmpty())
+			return List.of();
+
+		Map<Long, Book> books = bookRep
+				.findAllWithOwnerByIdIn(matches.stream().map(m -> (long) m.id()).collect(Collectors.toList()))
+				.stream().collect(Collectors.toMap(Book::getId, Function.identity()));
+
+		// stesso ordine dell'indice; un libro cancellato nel frattempo viene saltato
+		List<FuzzyMatchDto> result = new ArrayList<>(matches.size());
+		for (TrigramIndex.Match m : matches) {
+			Book b = books.get((long) m.id());
+			if (b != null)
+				result.add(new FuzzyMatchDto(m.score(), bs.libroDtoOut(b)));
+		}
+		return result;
+	}
+
+	/**
+	 * Autocompletamento di titoli e autori, servito interamente dal trie in memoria.
+	 * <p>
+	 * Viene chiamato a ogni tasto premuto, quindi non registra nel log attività.
+	 * </p>
+	 *
+	 * @param prefix inizio del titolo o dell'autore
+	 * @param limit  numero massimo di suggerimenti (massimo {@value SuggestionTrie#TOP_K})
+	 * @return i suggerimenti, prima quelli con più libri
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@Override
+	public List<SuggestionDto> suggest(String prefix, int limit) {
+
+		int max = limit <= 0 ? SuggestionTrie.TOP_K : limit;
+		return suggestions.suggest(prefix, max).stream()
+				.map(s -> new SuggestionDto(s.text(), s.author() ? "autore" : "titolo", s.weight()))
+				.collect(Collectors.toList());
+	}
+
+	private static String blankToNull(String s) {
+		return s == null || s.isBlank() ? null : s;
+	}
+
+}
@@ -0,0 +1,18 @@
+package com.library.model.service;
+
+import java.util.List;
+
+import com.library.model.dto.BookSearchResultDto;
+import com.library.model.dto.FuzzyMatchDto;
+import com.library.model.dto.SuggestionDto;
+
+public interface BookSearchServImpl {
+
+	public BookSearchResultDto search(String author, String type, String language, Double minPrice, Double maxPrice,
+			int limit);
+
+	public List<FuzzyMatchDto> fuzzySearch(String query, int limit);
+
+	public List<SuggestionDto> suggest(String prefix, int limit);
+
+}
@@ -1,39 +1,84 @@
 package com.library.model.service;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
+import com.library.config.MetricsConfig;
+import com.library.model.activity.ActivityLog;
+import com.library.model.cache.LibraryCache;
+import com.library.model.concurrency.SingleFlight;
 import com.library.model.dto.LibroDtoIn;
 import com.library.model.dto.LibroDtoOut;
 import com.library.model.entity.Book;
 import com.library.model.entity.User;
+import com.library.model.event.BookChangedEvent;
+import com.library.model.event.BookSnapshot;
 import com.library.model.exception.BookAlreadyExistsException;
+import com.library.model.exception.BookAlreadyOwnedException;
 import com.library.model.exception.BookNotFoundException;
+import com.library.model.exception.BookNotInPossessionException;
 import com.library.model.exception.InvalidPriceException;
+import com.library.model.isbn.IsbnAllocator;
+import com.library.model.read.LibraryReadModel;
+import com.library.model.read.Versioned;
 import com.library.model.repo.BookRepository;
+import com.library.model.repo.UserRepository;
 
+import io.micrometer.core.annotation.Timed;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 @EnableCaching
 @Service
+@Timed(value = MetricsConfig.SERVICE_TIMER, histogram = true)
 public class BookServ implements BookServImpl{
 
+	static final String NOT_SOLD = "Non venduto";
+
 	@Autowired
 	private BookRepository bookRep;
+	@Autowired
+	private UserRepository userRep;
+	@Autowired
+	private LibraryCache cache;
+	@Autowired
+	private ApplicationEventPublisher events;
+	@Autowired
+	private ActivityLog activity;
+	@Autowired
+	private IsbnAllocator isbnAllocator;
+	@Autowired
+	private LibraryReadModel readModel;
+	@Autowired
+	private SingleFlight singleFlight;
+	// proxy del servizio: le chiamate interne a metodi @Cacheable devono passare dal proxy
+	@Lazy
+	@Autowired
+	private BookServ self;
 
 // ----------------------------------------------------- BOOK -------------------------------------------------------------
 
 	/**
-	 * Crea un nuovo libro e lo salva nel sistema, se non esiste già.
+	 * Crea un nuovo libro e lo salva nel sistema.
 	 * <p>
-	 * Il libro viene creato solo se il prezzo è maggiore di zero e non esiste già un libro con lo stesso ISBN.
-	 * In caso contrario, viene sollevata un'eccezione.
+	 * Il libro viene creato solo se il prezzo è maggiore di zero. L'ISBN assegnato da
+	 * {@link IsbnAllocator} è già unico, quindi non viene verificato prima dell'inserimento: un
+	 * eventuale duplicato (es. codice inserito a mano sul database) viene rilevato dall'indice
+	 * univoco.
 	 * </p>
 	 *
 	 * @param title     il titolo del libro
@@ -54,14 +99,14 @@ public class BookServ implements BookServImpl{
 
 		validatePrice(price);
 
-		if (finderType1(isbnId) != null) {
-			
-			log.error("il codice: " + isbnId + " risulta già presente nel sistema");
-			throw new BookAlreadyExistsException("Libro già presente nel sistema con ISBN: " + isbnId);
-		} else {
-			log.info("il libro è stato correttamente creato: " + book.toString());
+		try {
 			bookRep.save(book);
+		} catch (DataIntegrityViolationException e) {
+			log.error("il codice: {} risulta già presente nel sistema", isbnId);
+			throw new BookAlreadyExistsException("Libro già presente nel sistema con ISBN: " + isbnId, e);
 		}
+		events.publishEvent(new BookChangedEvent(null, BookSnapshot.of(book)));
+		activity.record("createBook", "isbn", isbnId, "titolo", title);
 
 	}
 
@@ -74,12 +119,11 @@ public class BookServ implements BookServImpl{
 	 * @author Nicholas
 	 * @version 1.0.0
 	 */
-	@Cacheable("bookFinderCache")
 	private Book finderType1(String isbnId) {
 
 		Book b = null;
 		b = bookRep.findByIdentificativoIsbn(isbnId);
-		log.info("libro trovato con codice: " + isbnId);
+		log.debug("libro trovato con codice: {}", isbnId);
 		return b;
 	}
 
@@ -93,38 +137,52 @@ public class BookServ implements BookServImpl{
 	 * @author Nicholas
 	 * @version 1.0.0
 	 */
-	@Cacheable(value = "bookFinderByTitleCache", key = "#title + '-' + #isbnId")
 	private Book finderType2(String title, String isbnId) {
 
 		Book b = null;
 
 		b = bookRep.findByTitoloAndIdentificativoIsbn(title, isbnId);
 		if (b == null) {
-			log.error("Il libro " + title + " non è stato trovato con codice: " + isbnId);
+			log.error("Il libro {} non è stato trovato con codice: {}", title, isbnId);
 			throw new BookNotFoundException("Libro non trovato");
 		}
 		
-		log.info(title + " con codice: " + isbnId + " è stato trovato");
+		log.debug("{} con codice: {} è stato trovato", title, isbnId);
 		return b;
 	}
 	
 	/**
 	 * Assegna un utente come proprietario di un libro identificato da titolo e ISBN.
 	 * Il libro viene aggiornato e salvato nel repository.
+	 * <p>
+	 * L'update è condizionato alla versione letta: se un'altra transazione ha assegnato il
+	 * libro nel frattempo, il commit fallisce con un conflitto di versione.
+	 * </p>
 	 *
 	 * @param user   l'utente da assegnare come proprietario
 	 * @param title  il titolo del libro
 	 * @param isbnId l'ISBN del libro
 	 * @return l'oggetto {@link Book} aggiornato con il nuovo proprietario
+	 * @throws BookAlreadyOwnedException se il libro ha già un proprietario
 	 * @author Nicholas
 	 * @version 1.0.0
 	 */
 	@Transactional
 	private Book setUser(User user, String title, String isbnId) {
 		Book b = finderType2(title, isbnId);
+		if (b.getProprietario() != null) {
+			log.error("Il libro {} è già in possesso di {}", title, b.getProprietario().getEmail());
+			throw new BookAlreadyOwnedException("Il libro è già in possesso di un altro utente");
+		}
+		BookSnapshot before = BookSnapshot.of(b);
+		evictOwner(b);
 		b.setProprietario(user);
-		log.info(title + " correttamente aggiunto: " + b.getProprietario());
-		bookRep.save(b);
+		log.debug("{} correttamente aggiunto a {}", title, user.getEmail());
+		// flush: l'evento porta la versione e la data di modifica dopo l'update
+		bookRep.saveAndFlush(b);
+		cache.evictBook(title, isbnId);
+		cache.evictUser(user.getEmail());
+		events.publishEvent(new BookChangedEvent(before, BookSnapshot.of(b)));
 		return b;
 	}
 	
@@ -141,34 +199,119 @@ public class BookServ implements BookServImpl{
 	@Transactional
 	private Book removeBook(String title, String isbnId) {
 		Book b = finderType2(title, isbnId);
+		BookSnapshot before = BookSnapshot.of(b);
+		evictOwner(b);
 		b.setProprietario(null);
-		log.info(title + " correttamente rimosso");
-		bookRep.save(b);
+		log.debug("{} correttamente rimosso", title);
+		bookRep.saveAndFlush(b);
+		cache.evictBook(title, isbnId);
+		events.publishEvent(new BookChangedEvent(before, BookSnapshot.of(b)));
 		return b;
 	}
 
 	/**
-	 * Genera un identificativo ISBN personalizzato in base ai dati del libro.
+	 * Rilascia in blocco i libri in possesso di un utente.
+	 * <p>
+	 * Una select legge i libri interessati (per invalidare le rispettive voci in cache e
+	 * pubblicare gli eventi) e un solo update toglie il proprietario a tutti, invece di
+	 * caricare e salvare un libro alla volta. Il contatore dei libri in possesso non viene
+	 * modificato: è compito del chiamante.
+	 * </p>
+	 *
+	 * @param owner utente proprietario dei libri
+	 * @param isbns ISBN dei libri da rilasciare, {@code null} per rilasciarli tutti
+	 * @return i libri rilasciati, con lo stato precedente al rilascio
+	 * @throws BookNotInPossessionException se uno degli ISBN indicati non è in possesso
+	 *                                      dell'utente (nessun libro viene rilasciato)
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@Override
+	@Transactional
+	public List<BookSnapshot> releaseBooks(User owner, Collection<String> isbns) {
+
+		if (isbns != null && isbns.isEmpty())
+			return List.of();
+
+		List<BookSnapshot> owned = isbns == null ? bookRep.findSnapshotsByOwner(owner.getId())
+				: bookRep.findSnapshotsByOwnerAndIsbnIn(owner.getId(), isbns);
+
+		if (isbns != null) {
+			Set<String> found = owned.stream().map(BookSnapshot::identificativoIsbn).collect(Collectors.toSet());
+			List<String> missing = isbns.stream().filter(i -> !found.contains(i)).distinct().toList();
+			if (!missing.isEmpty()) {
+				log.error("Libri {} non in possesso a {}", missing, owner.getEmail());
+				throw new BookNotInPossessionException("Libri non in possesso dell'utente: " + missing);
+			}
+		}
+		if (owned.isEmpty())
+			return owned;
+
+		Instant now = Instant.now();
+		if (isbns == null)
+			bookRep.releaseAllByOwner(owner.getId(), now);
+		else
+			bookRep.releaseByOwnerAndIsbnIn(owner.getId(), isbns, now);
+
+		cache.evictUser(owner.getEmail());
+		for (BookSnapshot b : owned) {
+			cache.evictBook(b.titolo(), b.identificativoIsbn());
+			events.publishEvent(new BookChangedEvent(b, b.withoutOwner(now)));
+		}
+		log.debug("{} libri rilasciati da {}", owned.size(), owner.getEmail());
+		return owned;
+	}
+
+	/**
+	 * Aggiorna i libri dell'utente dopo il cambio di email: il DTO riporta l'email del
+	 * proprietario, quindi la versione di ogni libro viene incrementata nella stessa
+	 * transazione e per ognuno viene pubblicato un {@link BookChangedEvent}, così modello di
+	 * lettura, cache ed ETag non restano sull'email precedente.
+	 * <p>
+	 * Va chiamato dopo il flush dell'utente e dopo il suo {@code UserChangedEvent}.
+	 * </p>
+	 *
+	 * @param owner         utente proprietario, con la nuova email già salvata
+	 * @param previousEmail email precedente dell'utente
+	 * @return i libri aggiornati, con lo stato successivo alla modifica
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@Override
+	@Transactional
+	public List<BookSnapshot> ownerEmailChanged(User owner, String previousEmail) {
+
+		List<BookSnapshot> owned = bookRep.findSnapshotsByOwner(owner.getId());
+		if (owned.isEmpty())
+			return owned;
+
+		Instant now = Instant.now();
+		bookRep.touchAllByOwner(owner.getId(), now);
+
+		List<BookSnapshot> touched = new ArrayList<>(owned.size());
+		for (BookSnapshot b : owned) {
+			cache.evictBook(b.titolo(), b.identificativoIsbn());
+			BookSnapshot after = b.touched(now);
+			events.publishEvent(new BookChangedEvent(b.withOwner(previousEmail), after));
+			touched.add(after);
+		}
+		log.debug("{} libri aggiornati per il cambio di email da {} a {}", owned.size(), previousEmail,
+				owner.getEmail());
+		return touched;
+	}
+
+	/**
+	 * Assegna l'identificativo ISBN di un nuovo libro.
 	 *
-	 * @param title    titolo del libro
-	 * @param type     tipologia del libro
-	 * @param author   autore del libro
-	 * @param language lingua del libro
-	 * @return una stringa ISBN generata
+	 * @return un codice ISBN-13 interno, unico
 	 * @author Nicholas
 	 * @version 1.0.0
 	 */
-	@Cacheable("isbnCache")
-	private String createIsbn(String title, String type, String author, String language) {
+	private String createIsbn() {
 
-		String isbn = "";
-		isbn += title.substring(0, 2);
-		isbn += "-";
-		isbn += type.substring(0, 1);
-		isbn += author.substring(0, 1);
-		isbn += language.substring(0, 1);
+		String isbn = isbnAllocator.next();
 
-		log.info("Codice isbn creato: " + isbn);
+		log.debug("Codice isbn creato: {}", isbn);
 		return isbn;
 	}
 	
@@ -186,11 +329,16 @@ public class BookServ implements BookServImpl{
 
 		Book b = finderType1(isbn);
 		if (b == null) {
-			log.error("Libro non presente: " + isbn);
+			log.error("Libro non presente: {}", isbn);
 			throw new BookNotFoundException("Libro non presente nel sistema");
 		}
-		log.info("Libro con codice: " + isbn + " Rimosso");
 		bookRep.delete(b);
+		if (b.getProprietario() != null)
+			userRep.decrementLoans(b.getProprietario().getEmail());
+		cache.evictBook(b.getTitolo(), isbn);
+		evictOwner(b);
+		events.publishEvent(new BookChangedEvent(BookSnapshot.of(b), null));
+		activity.record("deleteBook", "isbn", isbn);
 
 	}
 
@@ -202,20 +350,49 @@ public class BookServ implements BookServImpl{
 	 * @author Nicholas
 	 * @version 1.0.0
 	 */
-	private void validatePrice(double p) {
+	void validatePrice(double p) {
 
 		boolean valid = p > 0;
 		if (!valid) {
-			log.error("Il prezzo inserito non è valido: " + p);
+			log.error("Il prezzo inserito non è valido: {}", p);
 			throw new InvalidPriceException("Il prezzo non è valido");
 		}
 		
 	}
 
+	/**
+	 * Invalida la voce in cache del proprietario del libro, se presente:
+	 * il suo {@code UserDtoOut} contiene i dati del libro.
+	 *
+	 * @param b libro di cui invalidare il proprietario
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	private void evictOwner(Book b) {
+		if (b.getProprietario() != null)
+			cache.evictUser(b.getProprietario().getEmail());
+	}
+
+	/**
+	 * Restituisce il valore del campo proprietario esposto nei DTO.
+	 *
+	 * @param email email del proprietario, {@code null} se il libro non è venduto
+	 * @return l'email, oppure {@value #NOT_SOLD}
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	static String ownerLabel(String email) {
+		return email == null ? NOT_SOLD : email;
+	}
+
 // ----------------------------------------------------- DTO OUT ----------------------------------------------------------
 
 	/**
-	 * Cerca un libro e lo restituisce in formato DTO, utilizzando caching.
+	 * Cerca un libro e lo restituisce in formato DTO.
+	 * <p>
+	 * Costruisce un nuovo DTO dai validatori di {@link #findBookVersioned(String, String)},
+	 * quindi ogni chiamante riceve la propria copia.
+	 * </p>
 	 *
 	 * @param title  titolo del libro
 	 * @param isbnId identificativo ISBN del libro
@@ -225,11 +402,60 @@ public class BookServ implements BookServImpl{
 	 * @version 1.0.0
 	 */
 	@Override
-	@Cacheable(value = "bookCache", key = "#title + '-' + #isbnId")
 	public LibroDtoOut findBook(String title, String isbnId) {
 
-		log.info("Ricerca con campi: " + title + " " + isbnId);
-		return libroDtoOut(finderType2(title, isbnId));
+		return findBookVersioned(title, isbnId).get();
+	}
+
+	/**
+	 * Cerca un libro per una GET condizionale: restituisce ETag e data di modifica e costruisce
+	 * il DTO solo se richiesto, così un 304 non assembla né serializza la risposta.
+	 * <p>
+	 * La ricerca viene registrata a ogni chiamata, anche quando il risultato viene da
+	 * {@code bookCache} ({@link #lookupBookVersioned(String, String)}).
+	 * </p>
+	 *
+	 * @param title  titolo del libro
+	 * @param isbnId identificativo ISBN del libro
+	 * @return il libro con ETag e data di modifica
+	 * @throws BookNotFoundException se il libro non viene trovato
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@Override
+	public Versioned<LibroDtoOut> findBookVersioned(String title, String isbnId) {
+
+		activity.record("findBook", "titolo", title, "isbn", isbnId);
+		return self.lookupBookVersioned(title, isbnId);
+	}
+
+	/**
+	 * Lettura di {@link #findBookVersioned(String, String)}, da chiamare tramite il proxy.
+	 * <p>
+	 * I validatori vengono dal modello di lettura; solo se il libro non è presente si passa
+	 * dal database, con gli stessi validatori calcolati dall'entità. Le richieste concorrenti
+	 * della stessa chiave condividono una sola lettura ({@link SingleFlight}), anche quando
+	 * termina con {@link BookNotFoundException}. Il risultato resta in {@code bookCache}: è
+	 * immutabile (il DTO viene costruito a ogni {@link Versioned#get()}) e può essere condiviso
+	 * tra le richieste.
+	 * </p>
+	 *
+	 * @param title  titolo del libro
+	 * @param isbnId identificativo ISBN del libro
+	 * @return il libro con ETag e data di modifica
+	 * @throws BookNotFoundException se il libro non viene trovato
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@Override
+	@Cacheable(value = "bookCache", key = "#title + '-' + #isbnId")
+	public Versioned<LibroDtoOut> lookupBookVersioned(String title, String isbnId) {
+
+		Versioned<LibroDtoOut> v = readModel.versionedBook(title, isbnId);
+		if (v != null)
+			return v;
+		return singleFlight.execute("findBook", LibraryCache.bookKey(title, isbnId),
+				() -> LibraryReadModel.versioned(BookSnapshot.of(finderType2(title, isbnId))));
 	}
 
 	/**
@@ -248,6 +474,8 @@ public class BookServ implements BookServImpl{
 	public LibroDtoOut modifyBookJson(String isbnId, LibroDtoIn updatedBook) {
 
 		Book existingBook = finderType1(isbnId);
+		BookSnapshot before = BookSnapshot.of(existingBook);
+		cache.evictBook(existingBook.getTitolo(), existingBook.getIdentificativoIsbn());
 
 		Optional.ofNullable(updatedBook.getTitolo()).ifPresent(existingBook::setTitolo);
 		Optional.ofNullable(updatedBook.getTipologia()).ifPresent(existingBook::setTipologia);
@@ -258,8 +486,11 @@ public class BookServ implements BookServImpl{
 		validatePrice(updatedBook.getCosto());
 		existingBook.setCosto(updatedBook.getCosto());
 
-		log.info("dto modificato per intero:\n" + existingBook.toString());
-		bookRep.save(existingBook);
+		activity.record("modifyBook", "isbn", isbnId);
+		bookRep.saveAndFlush(existingBook);
+		cache.evictBook(existingBook.getTitolo(), existingBook.getIdentificativoIsbn());
+		evictOwner(existingBook);
+		events.publishEvent(new BookChangedEvent(before, BookSnapshot.of(existingBook)));
 		return libroDtoOut(existingBook);
 	}
 
@@ -284,6 +515,8 @@ public class BookServ implements BookServImpl{
 			double price) {
 
 		Book existingBook = finderType1(isbnId);
+		BookSnapshot before = BookSnapshot.of(existingBook);
+		cache.evictBook(existingBook.getTitolo(), existingBook.getIdentificativoIsbn());
 
 		Optional.ofNullable(title).ifPresent(existingBook::setTitolo);
 		Optional.ofNullable(type).ifPresent(existingBook::setTipologia);
@@ -292,8 +525,11 @@ public class BookServ implements BookServImpl{
 
 		validatePrice(price);
 		existingBook.setCosto(price);
-		log.info("dto parametri modificati:\n" + existingBook.toString());
-		bookRep.save(existingBook);
+		activity.record("modifyBook", "isbn", isbnId);
+		bookRep.saveAndFlush(existingBook);
+		cache.evictBook(existingBook.getTitolo(), existingBook.getIdentificativoIsbn());
+		evictOwner(existingBook);
+		events.publishEvent(new BookChangedEvent(before, BookSnapshot.of(existingBook)));
 		return libroDtoOut(existingBook);
 	}
 
@@ -306,9 +542,26 @@ public class BookServ implements BookServImpl{
 	 * @version 1.0.0
 	 */
 	@Override
-	@Cacheable("dtoOutCache")
 	public LibroDtoOut libroDtoOut(Book b) {
 
+		LibroDtoOut dto = toDto(b, b.getProprietario() != null ? b.getProprietario().getEmail() : null);
+
+		log.debug("dto Output creato: {}", dto);
+		return dto;
+	}
+
+	/**
+	 * Converte un'entità {@code Book} in un DTO con il proprietario già noto, senza
+	 * accedere all'associazione {@code proprietario}.
+	 *
+	 * @param b     libro da convertire
+	 * @param owner email del proprietario, {@code null} se non venduto
+	 * @return DTO contenente i dati del libro
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	static LibroDtoOut toDto(Book b, String owner) {
+
 		LibroDtoOut dto = new LibroDtoOut();
 
 		Optional.ofNullable(b.getTitolo()).ifPresent(dto::setTitolo);
@@ -317,16 +570,36 @@ public class BookServ implements BookServImpl{
 		Optional.ofNullable(b.getLinguaggio()).ifPresent(dto::setLinguaggio);
 		Optional.ofNullable(b.getIdentificativoIsbn()).ifPresent(dto::setIdentificativoIsbn);
 
-		if (b.getProprietario() == null) {
-			dto.setProprietario("Non venduto");
-		} else {
-			dto.setProprietario(b.getProprietario().getEmail());
-		}
+		dto.setProprietario(ownerLabel(owner));
 
 		if (b.getCosto() > 0)
 			dto.setCosto(b.getCosto());
 
-		log.info("dto Output creato: " + dto.toString());
+		return dto;
+	}
+
+	/**
+	 * Converte la copia immutabile di un libro in DTO, senza log: usato dal modello di lettura.
+	 *
+	 * @param b copia del libro
+	 * @return il DTO del libro
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public static LibroDtoOut toDto(BookSnapshot b) {
+
+		LibroDtoOut dto = new LibroDtoOut();
+
+		dto.setTitolo(b.titolo());
+		dto.setTipologia(b.tipologia());
+		dto.setAutore(b.autore());
+		dto.setLinguaggio(b.linguaggio());
+		dto.setIdentificativoIsbn(b.identificativoIsbn());
+		dto.setProprietario(ownerLabel(b.proprietario()));
+
+		if (b.costo() > 0)
+			dto.setCosto(b.costo());
+
 		return dto;
 	}
 	
@@ -342,10 +615,10 @@ public class BookServ implements BookServImpl{
 	@Override
 	public LibroDtoOut removeBookDto (String title, String isbnId) {
 		
-		LibroDtoOut dto = findBook(title, isbnId);
-		removeBook(title, isbnId).getProprietario();
+		// DTO dall'entità appena modificata, non dalle letture condivise di findBook
+		LibroDtoOut dto = libroDtoOut(removeBook(title, isbnId));
 		dto.setProprietario(null);
-		log.info("Proprietario rimosso: " + dto.getTitolo());
+		log.debug("Proprietario rimosso: {}", dto.getTitolo());
 		return dto;
 	}
 	
@@ -363,11 +636,10 @@ public class BookServ implements BookServImpl{
 	@Override
 	public LibroDtoOut setUserDto (User user, String title, String isbnId) {
 		
-		setUser(user, title, isbnId);
-		LibroDtoOut dto = findBook(title, isbnId);
-		dto.setProprietario(user.getEmail());
+		// DTO dall'entità appena modificata, non dalle letture condivise di findBook
+		LibroDtoOut dto = libroDtoOut(setUser(user, title, isbnId));
 		
-		log.info("Proprietario: " + dto.getProprietario());
+		log.debug("Proprietario: {}", dto.getProprietario());
 		return dto;
 	}
 
@@ -391,7 +663,7 @@ public class BookServ implements BookServImpl{
 	public LibroDtoIn createDtoInParam(String title, String type, String author, String language, double price) {
 
 		LibroDtoIn lDto = new LibroDtoIn();
-		String isbn = createIsbn(title, type, author, language);
+		String isbn = createIsbn();
 		lDto.setTitolo(title);
 		lDto.setTipologia(type);
 		lDto.setAutore(author);
@@ -399,7 +671,7 @@ public class BookServ implements BookServImpl{
 		lDto.setIdentificativoIsbn(isbn);
 		lDto.setCosto(price);
 		
-		log.info("libro dto creato:\n" + lDto.toString());
+		log.debug("libro dto creato: {}", lDto);
 
 		createBook(title, type, author, language, isbn, price);
 
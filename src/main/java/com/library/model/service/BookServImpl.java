@@ -1,20 +1,33 @@
 package com.library.model.service;
 
+import java.util.Collection;
+import java.util.List;
+
 import com.library.model.dto.LibroDtoIn;
 import com.library.model.dto.LibroDtoOut;
 import com.library.model.entity.Book;
 import com.library.model.entity.User;
+import com.library.model.event.BookSnapshot;
+import com.library.model.read.Versioned;
 
 public interface BookServImpl {
 
 	public void deleteBook(String isbn);
 	
 	public LibroDtoOut removeBookDto (String title, String isbnId);
+
+	public List<BookSnapshot> releaseBooks(User owner, Collection<String> isbns);
+
+	public List<BookSnapshot> ownerEmailChanged(User owner, String previousEmail);
 	
 	public LibroDtoOut setUserDto (User user, String title, String isbnId);
 
 	public LibroDtoOut findBook(String title, String isbnId);
 
+	public Versioned<LibroDtoOut> findBookVersioned(String title, String isbnId);
+
+	public Versioned<LibroDtoOut> lookupBookVersioned(String title, String isbnId);
+
 	public LibroDtoOut modifyBookJson(String isbnId, LibroDtoIn updatedBook);
 
 	public LibroDtoOut modifyBookParam(String isbnId, String title, String type, String author, String language, double price);
@@ -0,0 +1,264 @@
+package com.library.model.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.library.config.MetricsConfig;
+import com.library.model.activity.ActivityLog;
+import com.library.model.dto.UserBulkReportDto;
+import com.library.model.dto.UserBulkResultDto;
+import com.library.model.dto.UserDtoIn;
+import com.library.model.event.UserChangedEvent;
+import com.library.model.event.UserSnapshot;
+import com.library.model.exception.InvalidCsvException;
+import com.library.model.io.CsvReader;
+
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+@Timed(value = MetricsConfig.SERVICE_TIMER, histogram = true)
+public class UserBulkServ implements UserBulkServImpl {
+
+	static final List<String> REQUIRED_COLUMNS = List.of("nome", "cognome", "email");
+
+	private static final String INSERT_SQL = "insert into users (nome, cognome, email) values (?, ?, ?)";
+	private static final String EXISTING_SQL = "select email from users where email in (:emails)";
+
+	@Autowired
+	private NamedParameterJdbcTemplate jdbc;
+	@Autowired
+	private TransactionTemplate tx;
+	@Autowired
+	private ApplicationEventPublisher events;
+	@Autowired
+	private ActivityLog activity;
+
+	@Value("${library.import.chunk-size:5000}")
+	private int chunkSize;
+
+	/**
+	 * Voce già validata, con il risultato da completare dopo l'inserimento.
+	 */
+	private record Row(String nome, String cognome, String email, UserBulkResultDto result) {
+	}
+
+	/**
+	 * Registra in blocco una lista di utenti.
+	 * <p>
+	 * Le voci vengono elaborate a blocchi: per ogni blocco una sola query verifica le email
+	 * già registrate e gli inserimenti sono eseguiti come batch JDBC in una transazione. Le
+	 * voci non valide o duplicate vengono scartate senza interrompere la registrazione.
+	 * </p>
+	 *
+	 * @param users gli utenti da registrare
+	 * @return il report con il risultato di ogni voce, nello stesso ordine della lista
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@Override
+	public UserBulkReportDto registerAll(List<UserDtoIn> users) {
+
+		long start = System.nanoTime();
+		UserBulkReportDto report = new UserBulkReportDto();
+
+		List<Row> chunk = new ArrayList<>(chunkSize);
+		long row = 0;
+		for (UserDtoIn u : users) {
+			row++;
+			Row r = u == null ? parse(row, null, null, null, report)
+					: parse(row, u.getName(), u.getSurname(), u.getEmail(), report);
+			if (r != null && add(chunk, r, report))
+				chunk.clear();
+		}
+		if (!chunk.isEmpty())
+			flush(chunk, report);
+
+		return complete(report, start);
+	}
+
+	/**
+	 * Registra in blocco gli utenti di un file CSV con intestazione {@code nome,cognome,email},
+	 * letto in streaming. Vedi {@link #registerAll(List)}.
+	 *
+	 * @param in contenuto CSV codificato in UTF-8
+	 * @return il report con il risultato di ogni riga
+	 * @throws IOException         in caso di errore di lettura
+	 * @throws InvalidCsvException se l'intestazione o la struttura del file non sono valide
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@Override
+	public UserBulkReportDto registerCsv(InputStream in) throws IOException {
+
+		long start = System.nanoTime();
+		UserBulkReportDto report = new UserBulkReportDto();
+
+		try (CsvReader csv = new CsvReader(
+				new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024))) {
+
+			Map<String, Integer> columns = readHeader(csv.next());
+
+			List<Row> chunk = new ArrayList<>(chunkSize);
+			List<String> fields;
+			while ((fields = csv.next()) != null) {
+				Row r = parse(csv.getRecordLine(), field(fields, columns.get("nome")),
+						field(fields, columns.get("cognome")), field(fields, columns.get("email")), report);
+				if (r != null && add(chunk, r, report))
+					chunk.clear();
+			}
+			if (!chunk.isEmpty())
+				flush(chunk, report);
+		}
+
+		return complete(report, start);
+	}
+
+	private static Map<String, Integer> readHeader(List<String> header) {
+
+		if (header == null)
+			throw new InvalidCsvException("File CSV vuoto");
+
+		Map<String, Integer> columns = new HashMap<>();
+		for (int i = 0; i < header.size(); i++)
+			columns.put(header.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT), i);
+		for (String required : REQUIRED_COLUMNS) {
+			if (!columns.containsKey(required)) {
+				log.error("Colonna obbligatoria mancante nell'intestazione CSV: {}", required);
+				throw new InvalidCsvException("Colonna obbligatoria mancante: " + required);
+			}
+		}
+		return columns;
+	}
+
+	private static String field(List<String> fields, Integer index) {
+		if (index == null || index >= fields.size())
+			return null;
+		return fields.get(index);
+	}
+
+	/**
+	 * Aggiunge la voce al report e, se è valida, la restituisce per l'inserimento.
+	 */
+	private static Row parse(long row, String nome, String cognome, String email, UserBulkReportDto report) {
+
+		report.setReceived(report.getReceived() + 1);
+		UserBulkResultDto result = new UserBulkResultDto(row, email, false, null);
+		report.getResults().add(result);
+
+		if (isBlank(nome) || isBlank(cognome) || isBlank(email)) {
+			reject(report, result, "Nome, cognome ed email sono obbligatori");
+			return null;
+		}
+		result.setEmail(email.trim());
+		return new Row(nome.trim(), cognome.trim(), email.trim(), result);
+	}
+
+	private static boolean isBlank(String value) {
+		return value == null || value.isBlank();
+	}
+
+	private static void reject(UserBulkReportDto report, UserBulkResultDto result, String reason) {
+		result.setReason(reason);
+		report.setRejected(report.getRejected() + 1);
+	}
+
+	/**
+	 * @return {@code true} se il blocco era pieno ed è stato inserito
+	 */
+	private boolean add(List<Row> chunk, Row r, UserBulkReportDto report) {
+		chunk.add(r);
+		if (chunk.size() < chunkSize)
+			return false;
+		flush(chunk, report);
+		return true;
+	}
+
+	/**
+	 * Scarta i duplicati del blocco e le email già registrate (una query), poi inserisce le
+	 * voci rimanenti con un batch JDBC.
+	 */
+	private void flush(List<Row> chunk, UserBulkReportDto report) {
+
+		Map<String, Row> unique = new LinkedHashMap<>();
+		for (Row r : chunk) {
+			if (unique.putIfAbsent(r.email(), r) != null)
+				reject(report, r.result(), "Email duplicata nell'input");
+		}
+
+		Set<String> existing = new HashSet<>(
+				jdbc.queryForList(EXISTING_SQL, Map.of("emails", unique.keySet()), String.class));
+
+		List<Row> toInsert = new ArrayList<>(unique.size());
+		for (Row r : unique.values()) {
+			if (existing.contains(r.email()))
+				reject(report, r.result(), "Email già registrata");
+			else
+				toInsert.add(r);
+		}
+
+		if (toInsert.isEmpty())
+			return;
+
+		try {
+			tx.executeWithoutResult(status -> jdbc.getJdbcTemplate().batchUpdate(INSERT_SQL, toInsert,
+					toInsert.size(), (ps, r) -> {
+						ps.setString(1, r.nome());
+						ps.setString(2, r.cognome());
+						ps.setString(3, r.email());
+					}));
+			toInsert.forEach(r -> created(report, r));
+		} catch (DuplicateKeyException e) {
+			// un'altra richiesta ha registrato una delle email dopo la verifica: il batch è
+			// annullato e il blocco viene inserito una voce alla volta
+			log.warn("Email registrata in concorrenza, inserimento singolo di {} utenti", toInsert.size());
+			for (Row r : toInsert) {
+				try {
+					jdbc.getJdbcTemplate().update(INSERT_SQL, r.nome(), r.cognome(), r.email());
+					created(report, r);
+				} catch (DuplicateKeyException dup) {
+					reject(report, r.result(), "Email già registrata");
+				}
+			}
+		}
+		log.debug("Blocco registrato: {} utenti", toInsert.size());
+	}
+
+	private void created(UserBulkReportDto report, Row r) {
+		r.result().setCreated(true);
+		report.setCreated(report.getCreated() + 1);
+		events.publishEvent(new UserChangedEvent(null, new UserSnapshot(null, r.nome(), r.cognome(), r.email(), 0, null)));
+	}
+
+	private UserBulkReportDto complete(UserBulkReportDto report, long start) {
+
+		long elapsed = System.nanoTime() - start;
+		report.setElapsedMs(elapsed / 1_000_000);
+		report.setRowsPerSecond(elapsed > 0 ? report.getReceived() * 1_000_000_000.0 / elapsed : 0);
+
+		activity.record("registerUsers", "received", report.getReceived(), "created", report.getCreated(),
+				"rejected", report.getRejected(), "elapsedMs", report.getElapsedMs());
+		return report;
+	}
+
+}
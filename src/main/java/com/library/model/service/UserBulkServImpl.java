@@ -0,0 +1,16 @@
+package com.library.model.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import com.library.model.dto.UserBulkReportDto;
+import com.library.model.dto.UserDtoIn;
+
+public interface UserBulkServImpl {
+
+	public UserBulkReportDto registerAll(List<UserDtoIn> users);
+
+	public UserBulkReportDto registerCsv(InputStream in) throws IOException;
+
+}
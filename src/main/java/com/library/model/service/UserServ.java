@@ -1,35 +1,73 @@
 package com.library.model.service;
 
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.library.config.MetricsConfig;
+import com.library.model.activity.ActivityLog;
+import com.library.model.cache.LibraryCache;
+import com.library.model.concurrency.OptimisticRetry;
+import com.library.model.concurrency.SingleFlight;
 import com.library.model.dto.UserDtoIn;
 import com.library.model.dto.UserDtoOut;
 import com.library.model.entity.User;
+import com.library.model.event.BookSnapshot;
+import com.library.model.event.UserChangedEvent;
+import com.library.model.event.UserSnapshot;
+import com.library.model.exception.BookAlreadyOwnedException;
 import com.library.model.exception.BookNotInPossessionException;
+import com.library.model.exception.ConcurrentUpdateException;
 import com.library.model.exception.MaxBooksException;
 import com.library.model.exception.UserAlreadyExistException;
 import com.library.model.exception.UserNotFoundException;
+import com.library.model.read.LibraryReadModel;
+import com.library.model.read.Versioned;
 import com.library.model.repo.UserRepository;
 
+import io.micrometer.core.annotation.Timed;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 @EnableCaching
 @Service
+@Timed(value = MetricsConfig.SERVICE_TIMER, histogram = true)
 public class UserServ implements UserServImpl {
 
 	@Autowired
 	UserRepository userRep;
 	@Autowired
 	BookServ bs;
+	@Autowired
+	LibraryCache cache;
+	@Autowired
+	ApplicationEventPublisher events;
+	@Autowired
+	OptimisticRetry retry;
+	@Autowired
+	TransactionTemplate tx;
+	@Autowired
+	ActivityLog activity;
+	@Autowired
+	LibraryReadModel readModel;
+	@Autowired
+	SingleFlight singleFlight;
+	// proxy del servizio: le chiamate interne a metodi @Cacheable devono passare dal proxy
+	@Lazy
+	@Autowired
+	UserServ self;
 
 // ----------------------------------------------------- USER -------------------------------------------------------------
 
@@ -49,15 +87,17 @@ public class UserServ implements UserServImpl {
 		User p = User.builder().nome(name).cognome(surname).email(email).build();
 
 		if (userRep.existsByEmail(email)) {
-			log.error("Email " + email + " già registrata nel sistema");
+			log.error("Email {} già registrata nel sistema", email);
 			throw new UserAlreadyExistException("Email Gia registrata.");
 		}
-		log.info("Utente creato: " + p.toString());
 		userRep.save(p);
+		events.publishEvent(new UserChangedEvent(null, UserSnapshot.of(p)));
+		activity.record("createUser", "email", email);
 	}
 
 	/**
-	 * Recupera un oggetto {@code User} dal database tramite email.
+	 * Recupera un oggetto {@code User} dal database tramite email, insieme ai libri in
+	 * possesso (una sola query).
 	 *
 	 * @param email l'email dell'utente da cercare
 	 * @return l'oggetto {@code User} corrispondente
@@ -68,21 +108,25 @@ public class UserServ implements UserServImpl {
 	 */
 	private User finder(String email) {
 
-		User user = userRep.findByEmail(email);
+		return found(userRep.findWithBooksByEmail(email), email);
+	}
+
+	private User found(User user, String email) {
+
 		if (user == null) {
 			
-			log.error("Utente con email: " + email + " non risulta registrato");
+			log.error("Utente con email: {} non risulta registrato", email);
 			throw new UserNotFoundException("Utente non registato con la email: " + email);
 		}
-		log.info("Utente trovato con email. " + email);
+		log.debug("Utente trovato con email: {}", email);
 		return user;
 	}
 
 	/**
 	 * Rimuove un utente dal sistema e tutti i libri attualmente in suo possesso.
 	 * <p>
-	 * Se l'utente possiede libri, questi verranno rimossi prima di cancellare
-	 * l'utente.
+	 * Se l'utente possiede libri, questi vengono rilasciati in blocco (un solo update) prima
+	 * di cancellare l'utente: il numero di query non dipende dal numero di libri.
 	 * </p>
 	 *
 	 * @param email l'email dell'utente da rimuovere
@@ -92,74 +136,110 @@ public class UserServ implements UserServImpl {
 	 * @version 1.0.0
 	 */
 	@Transactional
-	@CacheEvict(value = "userCache", key = "#email")
 	@Override
 	public String removeUser(String email) {
 
-		User u = finder(email);
+		User u = found(userRep.findByEmail(email), email);
 
-		for (int i = 0; i < u.getBooksInPossession().size(); i++) {
-			bs.removeBookDto(u.getBooksInPossession().get(i).getTitolo(),
-					u.getBooksInPossession().get(i).getIdentificativoIsbn());
-		}
-
-		u.getBooksInPossession().clear();
+		cache.evictUser(email);
+		bs.releaseBooks(u, null);
 		userRep.delete(u);
-		log.info("Utente con email: " + email + " rimosso");
+		events.publishEvent(new UserChangedEvent(UserSnapshot.of(u), null));
+		activity.record("removeUser", "email", email);
 		return "Utente con email: " + email + " rimosso";
 	}
 
+	/**
+	 * All'avvio riallinea il contatore dei libri in possesso di ogni utente con i libri
+	 * effettivamente assegnati (es. dati precedenti all'introduzione del contatore).
+	 *
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@Transactional
+	@EventListener(ApplicationReadyEvent.class)
+	public void syncLoans() {
+
+		int fixed = userRep.syncLoans();
+		if (fixed > 0)
+			log.warn("Contatore libri in possesso riallineato per {} utenti", fixed);
+	}
+
 // ----------------------------------------------------- USERDTOOUT -------------------------------------------------------
 
 	/**
 	 * Assegna un libro a un utente se non ha superato il limite massimo consentito.
 	 * <p>
-	 * Un utente non può avere più di 5 libri contemporaneamente.
+	 * Un utente non può avere più di 5 libri contemporaneamente: il limite è verificato
+	 * sul contatore {@code loans} con un update condizionale, senza caricare i libri, e gli
+	 * acquisti concorrenti dello stesso utente si serializzano sulla sua riga. Il libro è
+	 * versionato: in caso di acquisti concorrenti l'operazione viene ripetuta e, se il libro
+	 * è stato nel frattempo assegnato ad altri, termina con un conflitto (409).
 	 * </p>
 	 *
 	 * @param email l'email dell'utente
 	 * @param title il titolo del libro
 	 * @param isbn  il codice ISBN del libro
 	 * @return l'oggetto {@code UserDtoOut} aggiornato dopo l'assegnazione
-	 * @throws MaxBooksException se l'utente ha già raggiunto il limite massimo
+	 * @throws MaxBooksException         se l'utente ha già raggiunto il limite massimo
+	 * @throws BookAlreadyOwnedException se il libro ha già un proprietario
+	 * @throws ConcurrentUpdateException se i conflitti persistono dopo i tentativi previsti
 	 * @author Nicholas
 	 * @version 1.0.0
 	 */
-	@Transactional
 	@Override
 	public UserDtoOut bookAssignment(String email, String title, String isbn) {
 
-		User u = finder(email);
+		UserDtoOut dto = retry.execute("bookAssignment", () -> tx.execute(status -> assignBook(email, title, isbn)));
+		activity.record("bookAssignment", "email", email, "titolo", title, "isbn", isbn);
+		return dto;
+	}
 
-		if (u.canBorrowMoreBooks()) {
-			
-			log.error("Utente con email: " + email + " ha superato il massimo numero di libri in possesso");
-			throw new MaxBooksException("Un utente non può avere più di 5 libri.");
+	private UserDtoOut assignBook(String email, String title, String isbn) {
+
+		// controllo del limite e incremento del contatore in un solo update condizionale
+		if (userRep.incrementLoans(email, User.MAX_BOOKS) == 0) {
+			if (!userRep.existsByEmail(email)) {
+				log.error("Utente con email: {} non risulta registrato", email);
+				throw new UserNotFoundException("Utente non registato con la email: " + email);
+			}
+			log.error("Utente con email: {} ha superato il massimo numero di libri in possesso", email);
+			throw new MaxBooksException("Un utente non può avere più di " + User.MAX_BOOKS + " libri.");
 		}
+		User u = finder(email);
+		cache.evictUser(email);
 		UserDtoOut dto = userDtoOut(u);
 		dto.getBooksInPossession().add(bs.setUserDto(u, title, isbn));
 		userRep.save(u);
-		
-		log.info("Dto con email: " + email + " ha prelevato con successo: " + title);
 		return dto;
 	}
 
 	/**
 	 * Rimuove un libro in possesso dell'utente in base al titolo fornito.
+	 * <p>
+	 * Come per l'assegnazione, i conflitti di versione vengono risolti ripetendo l'operazione.
+	 * </p>
 	 *
 	 * @param email    l'email dell'utente
 	 * @param bookName il titolo del libro da rimuovere
 	 * @return l'oggetto {@code UserDtoOut} aggiornato
 	 * @throws BookNotInPossessionException se il libro non è tra quelli in possesso
 	 *                                      dell'utente
+	 * @throws ConcurrentUpdateException    se i conflitti persistono dopo i tentativi previsti
 	 * @author Nicholas
 	 * @version 1.0.0
 	 */
-	@Transactional
 	@Override
 	public UserDtoOut removeBook(String email, String bookName) {
 
-		UserDtoOut u = findUser(email);
+		UserDtoOut dto = retry.execute("removeBook", () -> tx.execute(status -> releaseBook(email, bookName)));
+		activity.record("removeBook", "email", email, "titolo", bookName);
+		return dto;
+	}
+
+	private UserDtoOut releaseBook(String email, String bookName) {
+
+		UserDtoOut u = userDtoOut(finder(email));
 
 		for (int i = 0; i < u.getBooksInPossession().size(); i++) {
 
@@ -167,16 +247,48 @@ public class UserServ implements UserServImpl {
 				bs.removeBookDto(u.getBooksInPossession().get(i).getTitolo(),
 						u.getBooksInPossession().get(i).getIdentificativoIsbn());
 				u.getBooksInPossession().remove(i);
-				
-				log.info("libro: " + bookName + " rimosso da: " + email);
+				userRep.decrementLoans(email);
+				cache.evictUser(email);
 				return u;
 			}
 
 		}
-		log.error("Il libro " + bookName + " non è in possesso a " + email);
+		log.error("Il libro {} non è in possesso a {}", bookName, email);
 		throw new BookNotInPossessionException("Errore: il libro non è in possesso dell'utente");
 	}
 
+	/**
+	 * Restituisce in blocco i libri indicati, in possesso dell'utente.
+	 * <p>
+	 * I libri vengono rilasciati con un solo update e il contatore dei libri in possesso
+	 * ridotto di conseguenza. L'operazione è atomica: se anche un solo ISBN non è in possesso
+	 * dell'utente non viene restituito nessun libro.
+	 * </p>
+	 *
+	 * @param email l'email dell'utente
+	 * @param isbns gli ISBN dei libri da restituire
+	 * @return l'oggetto {@code UserDtoOut} aggiornato
+	 * @throws UserNotFoundException        se l'utente non è registrato
+	 * @throws BookNotInPossessionException se uno dei libri non è in possesso dell'utente
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@Transactional
+	@Override
+	public UserDtoOut returnBooks(String email, List<String> isbns) {
+
+		User u = found(userRep.findByEmail(email), email);
+
+		List<BookSnapshot> released = bs.releaseBooks(u, new LinkedHashSet<>(isbns));
+		if (!released.isEmpty())
+			userRep.releaseLoans(email, released.size());
+		cache.evictUser(email);
+
+		UserDtoOut dto = userDtoOut(finder(email));
+		activity.record("returnBooks", "email", email, "count", released.size());
+		return dto;
+	}
+
 	/**
 	 * Modifica i dati dell'utente specificato tramite parametri testuali.
 	 *
@@ -190,17 +302,20 @@ public class UserServ implements UserServImpl {
 	 * @version 1.0.0
 	 */
 	@Transactional
-	@CacheEvict(value = "userCache", key = "#email")
 	@Override
 	public UserDtoOut modifyUserParams(String name, String surname, String email) {
 
 		User user = finder(email);
+		UserSnapshot before = UserSnapshot.of(user);
 
+		cache.evictUser(email);
 		modifyUser(user, name, surname, email);
 
-		userRep.save(user);
+		// flush: l'evento porta la versione e la data di modifica dopo l'update
+		userRep.saveAndFlush(user);
+		publishUserChanged(before, user);
 		
-		log.info("Utente correttamente modidiciato:" + user.toString());
+		activity.record("modifyUser", "email", email);
 		return userDtoOut(user);
 	}
 
@@ -217,15 +332,17 @@ public class UserServ implements UserServImpl {
 	 * @version 1.0.0
 	 */
 	@Transactional
-	@CacheEvict(value = "userCache", key = "#email")
 	@Override
 	public UserDtoOut modifyUserJson(String email, UserDtoIn uDtoIn) {
 
 		User user = finder(email);
+		UserSnapshot before = UserSnapshot.of(user);
+		cache.evictUser(email);
 		modifyUser(user, uDtoIn.getName(), uDtoIn.getSurname(), uDtoIn.getEmail());
 
-		userRep.save(user);
-		log.info("Utente dto correttamente modificato");
+		userRep.saveAndFlush(user);
+		publishUserChanged(before, user);
+		activity.record("modifyUser", "email", email);
 		return userDtoOut(user);
 	}
 
@@ -244,13 +361,37 @@ public class UserServ implements UserServImpl {
 
 		Optional.ofNullable(name).ifPresent(user::setNome);
 		Optional.ofNullable(surname).ifPresent(user::setCognome);
-		Optional.ofNullable(email).ifPresent(user::setEmail);
 
+		if (email != null && !email.equals(user.getEmail())) {
+			cache.evictUser(email);
+			user.setEmail(email);
+		}
+
+	}
+
+	/**
+	 * Pubblica la modifica dell'utente e, se è cambiata l'email, quella dei libri in possesso,
+	 * che la riportano come proprietario. L'evento dell'utente precede quelli dei libri: il
+	 * modello di lettura sposta prima la voce dell'utente sulla nuova email.
+	 *
+	 * @param before stato dell'utente prima della modifica
+	 * @param user   utente modificato, già salvato
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	private void publishUserChanged(UserSnapshot before, User user) {
+
+		events.publishEvent(new UserChangedEvent(before, UserSnapshot.of(user)));
+		if (!before.email().equals(user.getEmail()))
+			bs.ownerEmailChanged(user, before.email());
 	}
 
 	/**
 	 * Converte un oggetto {@code User} in un oggetto {@code UserDtoOut}, includendo
 	 * i libri in possesso.
+	 * <p>
+	 * Il proprietario dei libri è l'utente stesso, quindi non viene letto dal singolo libro.
+	 * </p>
 	 *
 	 * @param u l'oggetto {@code User} da convertire
 	 * @return l'oggetto {@code UserDtoOut} risultante
@@ -265,16 +406,20 @@ public class UserServ implements UserServImpl {
 		Optional.ofNullable(u.getCognome()).ifPresent(dto::setSurname);
 		Optional.ofNullable(u.getEmail()).ifPresent(dto::setEmail);
 		Optional.ofNullable(u.getBooksInPossession())
-				.map(list -> list.stream().map(bs::libroDtoOut).collect(Collectors.toList()))
+				.map(list -> list.stream().map(b -> BookServ.toDto(b, u.getEmail())).collect(Collectors.toList()))
 				.ifPresent(dto::setBooksInPossession);
 
-		log.info("Utente dto: " + dto.toString());
+		log.debug("Utente dto: {}", dto);
 		return dto;
 	}
 
 	/**
 	 * Recupera un utente dal sistema e restituisce un oggetto {@code UserDtoOut}
 	 * contenente le sue informazioni.
+	 * <p>
+	 * Costruisce un nuovo DTO dai validatori di {@link #findUserVersioned(String)}, quindi
+	 * ogni chiamante riceve la propria copia.
+	 * </p>
 	 *
 	 * @param email l'email dell'utente da cercare
 	 * @return l'oggetto {@code UserDtoOut} corrispondente all'utente
@@ -284,13 +429,68 @@ public class UserServ implements UserServImpl {
 	 * @version 1.0.0
 	 */
 	@Override
-	@Cacheable(value = "userCache", key = "#email")
 	public UserDtoOut findUser(String email) {
 
-		User user = finder(email);
+		return findUserVersioned(email).get();
+	}
 
-		log.info("Utente con email: " + email + " trovato");
-		return userDtoOut(user);
+	/**
+	 * Cerca un utente per una GET condizionale: restituisce ETag e data di modifica e
+	 * costruisce il DTO solo se richiesto, così un 304 non assembla né serializza la risposta.
+	 * <p>
+	 * La ricerca viene registrata a ogni chiamata, anche quando il risultato viene da
+	 * {@code userCache} ({@link #lookupUserVersioned(String)}).
+	 * </p>
+	 *
+	 * @param email l'email dell'utente da cercare
+	 * @return l'utente con ETag e data di modifica
+	 * @throws UserNotFoundException se l'utente non è registrato con l'email fornita
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@Override
+	public Versioned<UserDtoOut> findUserVersioned(String email) {
+
+		activity.record("findUser", "email", email);
+		return self.lookupUserVersioned(email);
+	}
+
+	/**
+	 * Lettura di {@link #findUserVersioned(String)}, da chiamare tramite il proxy.
+	 * <p>
+	 * I validatori vengono dal modello di lettura; solo se l'utente non è presente si passa
+	 * dal database, con una sola lettura per le richieste concorrenti della stessa email
+	 * ({@link SingleFlight}). Il risultato resta in {@code userCache}: è immutabile e può
+	 * essere condiviso tra le richieste.
+	 * </p>
+	 *
+	 * @param email l'email dell'utente da cercare
+	 * @return l'utente con ETag e data di modifica
+	 * @throws UserNotFoundException se l'utente non è registrato con l'email fornita
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@Override
+	@Cacheable(value = "userCache", key = "#email")
+	public Versioned<UserDtoOut> lookupUserVersioned(String email) {
+
+		Versioned<UserDtoOut> v = readModel.versionedUser(email);
+		if (v != null)
+			return v;
+
+		return singleFlight.execute("findUser", email, () -> loadVersioned(email));
+	}
+
+	/**
+	 * Lettura dal database condivisa dalle richieste accorpate: copie immutabili di utente e
+	 * libri, da cui ogni chiamante costruisce il proprio DTO con {@link Versioned#get()}.
+	 */
+	private Versioned<UserDtoOut> loadVersioned(String email) {
+
+		User u = finder(email);
+		List<BookSnapshot> owned = Optional.ofNullable(u.getBooksInPossession()).orElse(List.of()).stream()
+				.map(BookSnapshot::of).collect(Collectors.toList());
+		return LibraryReadModel.versioned(UserSnapshot.of(u), u.getLastModified(), owned);
 	}
 
 // ----------------------------------------------------- USERDTOIN --------------------------------------------------------
@@ -316,7 +516,7 @@ public class UserServ implements UserServImpl {
 		
 		UserDtoIn u = UserDtoIn.builder().name(name).surname(surname).email(email).build();
 		createUser(name, surname, email);
-		log.info("Utente DTO creato");
+		log.debug("Utente DTO creato: {}", email);
 		return u;
 	}
 
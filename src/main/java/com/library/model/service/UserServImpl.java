@@ -1,7 +1,10 @@
 package com.library.model.service;
 
+import java.util.List;
+
 import com.library.model.dto.UserDtoIn;
 import com.library.model.dto.UserDtoOut;
+import com.library.model.read.Versioned;
 
 public interface UserServImpl {
 	
@@ -10,6 +13,8 @@ public interface UserServImpl {
 	public UserDtoOut bookAssignment(String email, String title, String isbn);
 	
 	public UserDtoOut removeBook(String email, String bookName);
+
+	public UserDtoOut returnBooks(String email, List<String> isbns);
 		
 	public UserDtoOut modifyUserParams(String name, String surname, String email);
 
@@ -17,6 +22,10 @@ public interface UserServImpl {
 
 	public UserDtoOut findUser(String email);
 
+	public Versioned<UserDtoOut> findUserVersioned(String email);
+
+	public Versioned<UserDtoOut> lookupUserVersioned(String email);
+
 	public UserDtoIn createDtoin(String name, String surname, String email);
 
 }
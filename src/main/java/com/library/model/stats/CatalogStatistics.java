@@ -0,0 +1,383 @@
+package com.library.model.stats;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.library.model.dto.CatalogStatsDto;
+import com.library.model.dto.GroupStatsDto;
+import com.library.model.dto.UserStatsDto;
+import com.library.model.event.BookChangedEvent;
+import com.library.model.event.BookSnapshot;
+import com.library.model.event.CatalogReloadEvent;
+import com.library.model.event.UserChangedEvent;
+import com.library.model.event.UserSnapshot;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Statistiche di catalogo e utenti mantenute in memoria.
+ * <p>
+ * Gli aggregati (conteggio, somma e media dei prezzi per autore, tipologia e lingua, libri
+ * venduti, utenti per numero di libri posseduti) vengono aggiornati in modo incrementale
+ * dagli eventi di {@code BookServ} e {@code UserServ}, quindi la lettura non interroga il
+ * database. Una riconciliazione periodica ricalcola tutto con query GROUP BY e corregge
+ * eventuali scostamenti (es. modifiche fatte direttamente sul database).
+ * </p>
+ * <p>
+ * Le query della riconciliazione leggono una fotografia coerente del database (transazione
+ * serializzabile in sola lettura). Gli eventi ricevuti nel frattempo vengono conservati e,
+ * prima di sostituire gli aggregati, riapplicati solo se la fotografia non li contiene: per
+ * ogni riga coinvolta si confronta la versione letta nella fotografia con quella dell'evento.
+ * </p>
+ */
+@Slf4j
+@Component
+public class CatalogStatistics {
+
+	static final String UNKNOWN = "N/D";
+
+	static final String TOTALS_SQL = "select count(*), coalesce(sum(costo), 0) from books";
+
+	@Autowired
+	private JdbcTemplate jdbc;
+	@Autowired
+	private PlatformTransactionManager txManager;
+
+	private State state = new State();
+
+	/** eventi ricevuti durante una riconciliazione, {@code null} se non è in corso */
+	private List<Object> pending;
+
+	// ReentrantLock e non synchronized: la riconciliazione esegue query e non deve bloccare il
+	// carrier di un virtual thread
+	private final ReentrantLock reconciling = new ReentrantLock();
+
+	/**
+	 * Conteggio e somma dei prezzi di un gruppo di libri.
+	 */
+	static final class Group {
+		long count;
+		double sum;
+
+		void add(double price) {
+			count++;
+			sum += price;
+		}
+
+		void remove(double price) {
+			count--;
+			sum -= price;
+		}
+
+		GroupStatsDto toDto() {
+			return new GroupStatsDto(count, sum, count > 0 ? sum / count : 0);
+		}
+	}
+
+	/**
+	 * Insieme degli aggregati; viene sostituito per intero a ogni riconciliazione.
+	 */
+	static final class State {
+		final Group totals = new Group();
+		final Map<String, Group> byAutore = new HashMap<>();
+		final Map<String, Group> byTipologia = new HashMap<>();
+		final Map<String, Group> byLinguaggio = new HashMap<>();
+		/** email → libri posseduti, solo per gli utenti con almeno un libro */
+		final Map<String, Integer> loans = new HashMap<>();
+		/** numero di libri → numero di utenti, solo per valori maggiori di zero */
+		final Map<Integer, Long> histogram = new TreeMap<>();
+		long users;
+		long sold;
+
+		void addBook(BookSnapshot b) {
+			totals.add(b.costo());
+			group(byAutore, b.autore()).add(b.costo());
+			group(byTipologia, b.tipologia()).add(b.costo());
+			group(byLinguaggio, b.linguaggio()).add(b.costo());
+			if (b.proprietario() != null) {
+				sold++;
+				setLoans(b.proprietario(), loans.getOrDefault(b.proprietario(), 0) + 1);
+			}
+		}
+
+		void removeBook(BookSnapshot b) {
+			totals.remove(b.costo());
+			ungroup(byAutore, b.autore(), b.costo());
+			ungroup(byTipologia, b.tipologia(), b.costo());
+			ungroup(byLinguaggio, b.linguaggio(), b.costo());
+			if (b.proprietario() != null) {
+				sold--;
+				setLoans(b.proprietario(), loans.getOrDefault(b.proprietario(), 0) - 1);
+			}
+		}
+
+		void apply(BookChangedEvent e) {
+			if (e.before() != null)
+				removeBook(e.before());
+			if (e.after() != null)
+				addBook(e.after());
+		}
+
+		void apply(UserChangedEvent e) {
+			if (e.isCreate()) {
+				users++;
+			} else if (e.isDelete()) {
+				users--;
+				setLoans(e.before().email(), 0);
+			}
+			// cambio di email: i libri in possesso passano alla nuova email con i loro eventi
+		}
+
+		void apply(Object e) {
+			if (e instanceof BookChangedEvent b)
+				apply(b);
+			else
+				apply((UserChangedEvent) e);
+		}
+
+		void setLoans(String email, int n) {
+			Integer old = loans.get(email);
+			if (old != null)
+				histogram.computeIfPresent(old, (k, v) -> v > 1 ? v - 1 : null);
+			if (n > 0) {
+				loans.put(email, n);
+				histogram.merge(n, 1L, Long::sum);
+			} else {
+				loans.remove(email);
+			}
+		}
+
+		private static Group group(Map<String, Group> map, String key) {
+			return map.computeIfAbsent(key != null ? key : UNKNOWN, k -> new Group());
+		}
+
+		private static void ungroup(Map<String, Group> map, String key, double price) {
+			String k = key != null ? key : UNKNOWN;
+			Group g = map.get(k);
+			if (g == null)
+				return;
+			g.remove(price);
+			if (g.count <= 0)
+				map.remove(k);
+		}
+	}
+
+	/**
+	 * Aggiorna gli aggregati dopo la modifica di un libro.
+	 *
+	 * @param e evento di modifica
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public synchronized void onBookChanged(BookChangedEvent e) {
+		state.apply(e);
+		if (pending != null)
+			pending.add(e);
+	}
+
+	/**
+	 * Aggiorna il numero di utenti e, se cambia l'email, la chiave dei libri posseduti.
+	 *
+	 * @param e evento di modifica
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public synchronized void onUserChanged(UserChangedEvent e) {
+		state.apply(e);
+		if (pending != null)
+			pending.add(e);
+	}
+
+	/**
+	 * Ricalcola tutti gli aggregati dal database e sostituisce quelli in memoria, riapplicando
+	 * gli eventi ricevuti durante il calcolo che la lettura non comprende.
+	 *
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	@EventListener({ ApplicationReadyEvent.class, CatalogReloadEvent.class })
+	@Scheduled(fixedDelayString = "${library.stats.reconcile-interval:PT10M}",
+			initialDelayString = "${library.stats.reconcile-interval:PT10M}")
+	public void reconcile() {
+
+		TransactionTemplate snapshot = new TransactionTemplate(txManager);
+		snapshot.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
+		snapshot.setReadOnly(true);
+
+		reconciling.lock();
+		try {
+			synchronized (this) {
+				pending = new ArrayList<>();
+			}
+			snapshot.executeWithoutResult(status -> swap(load()));
+		} finally {
+			synchronized (this) {
+				pending = null;
+			}
+			reconciling.unlock();
+		}
+	}
+
+	private State load() {
+
+		State fresh = new State();
+		jdbc.query(TOTALS_SQL, rs -> {
+			fresh.totals.count = rs.getLong(1);
+			fresh.totals.sum = rs.getDouble(2);
+		});
+		loadGroups("autore", fresh.byAutore);
+		loadGroups("tipologia", fresh.byTipologia);
+		loadGroups("linguaggio", fresh.byLinguaggio);
+		jdbc.query("select u.email, count(*) from books b join users u on u.id = b.user_id group by u.email", rs -> {
+			int n = rs.getInt(2);
+			fresh.sold += n;
+			fresh.setLoans(rs.getString(1), n);
+		});
+		fresh.users = jdbc.queryForObject("select count(*) from users", Long.class);
+		return fresh;
+	}
+
+	/**
+	 * Verifica gli eventi ricevuti durante la lettura (le query restano fuori dal lock), poi
+	 * riapplica quelli non compresi e sostituisce gli aggregati in un solo passo.
+	 */
+	private void swap(State fresh) {
+
+		Set<String> replayed = new HashSet<>();
+		List<Object> replay = new ArrayList<>();
+		int checked = 0;
+		while (true) {
+			List<Object> batch;
+			synchronized (this) {
+				if (checked == pending.size()) {
+					replay.forEach(fresh::apply);
+					if (state.totals.count != fresh.totals.count || state.users != fresh.users
+							|| state.sold != fresh.sold)
+						log.warn("Statistiche riallineate: libri {} -> {}, utenti {} -> {}, venduti {} -> {}",
+								state.totals.count, fresh.totals.count, state.users, fresh.users, state.sold,
+								fresh.sold);
+					state = fresh;
+					break;
+				}
+				batch = new ArrayList<>(pending.subList(checked, pending.size()));
+			}
+			for (Object e : batch) {
+				if (!included(e, replayed))
+					replay.add(e);
+			}
+			checked += batch.size();
+		}
+		log.debug("Statistiche riconciliate: {} libri, {} utenti, {} eventi riapplicati", fresh.totals.count,
+				fresh.users, replay.size());
+	}
+
+	/**
+	 * Stabilisce se la lettura comprende già l'evento, dalla versione della riga nella
+	 * fotografia: una creazione o modifica è compresa se la riga ha almeno la versione
+	 * dell'evento; una cancellazione se la riga non c'è più. Una riga assente letta per una
+	 * modifica è stata cancellata prima della lettura, a meno che la creazione non sia stata
+	 * riapplicata.
+	 */
+	private boolean included(Object event, Set<String> replayed) {
+
+		String key;
+		Long version;
+		long eventVersion;
+		boolean create;
+		boolean delete;
+		if (event instanceof BookChangedEvent e) {
+			BookSnapshot b = e.after() != null ? e.after() : e.before();
+			key = "b" + (b.id() != null ? b.id() : b.identificativoIsbn());
+			version = version(b.id() != null ? "select version from books where id = ?"
+					: "select version from books where identificativo_isbn = ?",
+					b.id() != null ? b.id() : b.identificativoIsbn());
+			eventVersion = b.version();
+			create = e.before() == null;
+			delete = e.after() == null;
+		} else {
+			UserChangedEvent e = (UserChangedEvent) event;
+			UserSnapshot u = e.after() != null ? e.after() : e.before();
+			key = "u" + (u.id() != null ? u.id() : u.email());
+			version = version(u.id() != null ? "select version from users where id = ?"
+					: "select version from users where email = ?", u.id() != null ? u.id() : u.email());
+			eventVersion = u.version();
+			create = e.isCreate();
+			delete = e.isDelete();
+		}
+
+		boolean included;
+		if (delete)
+			included = version == null && !replayed.contains(key);
+		else if (version != null)
+			included = version >= eventVersion;
+		else
+			included = !create && !replayed.contains(key);
+		if (!included)
+			replayed.add(key);
+		return included;
+	}
+
+	private Long version(String sql, Object key) {
+		List<Long> v = jdbc.queryForList(sql, Long.class, key);
+		return v.isEmpty() ? null : v.get(0);
+	}
+
+	private void loadGroups(String column, Map<String, Group> target) {
+		// column è una costante interna, non un input dell'utente
+		jdbc.query("select " + column + ", count(*), coalesce(sum(costo), 0) from books group by " + column, rs -> {
+			Group g = new Group();
+			g.count = rs.getLong(2);
+			g.sum = rs.getDouble(3);
+			String key = rs.getString(1);
+			target.put(key != null ? key : UNKNOWN, g);
+		});
+	}
+
+	/**
+	 * @return statistiche di catalogo: totali, medie e raggruppamenti
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public synchronized CatalogStatsDto catalog() {
+		return new CatalogStatsDto(state.totals.toDto(), state.sold, state.totals.count - state.sold,
+				toDto(state.byAutore), toDto(state.byTipologia), toDto(state.byLinguaggio));
+	}
+
+	/**
+	 * @return statistiche utenti: totali e distribuzione per numero di libri posseduti
+	 * @author Nicholas
+	 * @version 1.0.0
+	 */
+	public synchronized UserStatsDto users() {
+		Map<Integer, Long> byCount = new TreeMap<>();
+		byCount.put(0, state.users - state.loans.size());
+		byCount.putAll(state.histogram);
+		return new UserStatsDto(state.users, state.totals.count, state.sold, byCount);
+	}
+
+	private static Map<String, GroupStatsDto> toDto(Map<String, Group> groups) {
+		Map<String, GroupStatsDto> out = new TreeMap<>();
+		groups.forEach((k, g) -> out.put(k, g.toDto()));
+		return out;
+	}
+
+}
@@ -0,0 +1,21 @@
+-- Schema iniziale, equivalente a quello generato da Hibernate con ddl-auto=update.
+-- I database già esistenti vengono marcati come versione 1 (baseline-on-migrate).
+
+create table users (
+	id bigint generated by default as identity primary key,
+	nome varchar(255),
+	cognome varchar(255),
+	email varchar(255)
+);
+
+create table books (
+	id bigint generated by default as identity primary key,
+	identificativo_isbn varchar(255),
+	titolo varchar(255),
+	tipologia varchar(255),
+	autore varchar(255),
+	linguaggio varchar(255),
+	costo double precision not null,
+	user_id bigint,
+	constraint fk_books_user foreign key (user_id) references users (id)
+);
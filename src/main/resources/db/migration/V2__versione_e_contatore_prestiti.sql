@@ -0,0 +1,8 @@
+-- Controllo di concorrenza ottimistico (@Version) e contatore dei libri in possesso.
+-- "if not exists": le colonne possono essere già state create da ddl-auto=update.
+
+alter table books add column if not exists version bigint default 0 not null;
+alter table users add column if not exists version bigint default 0 not null;
+alter table users add column if not exists loans integer default 0 not null;
+
+update users u set loans = (select count(*) from books b where b.user_id = u.id);
@@ -0,0 +1,20 @@
+-- Indici per le ricerche puntuali dei repository e per la paginazione keyset.
+-- Sostituiscono gli indici non univoci creati in precedenza da ddl-auto=update.
+
+drop index if exists idx_books_isbn;
+drop index if exists idx_users_email;
+
+-- BookRepository.findByIdentificativoIsbn, findByTitoloAndIdentificativoIsbn (il titolo viene
+-- solo verificato sulla riga trovata), verifica duplicati dell'import
+create unique index if not exists ux_books_isbn on books (identificativo_isbn);
+-- User.booksInPossession, contatore loans
+create index if not exists idx_books_user on books (user_id);
+
+-- UserRepository.findByEmail, existsByEmail, incrementLoans/decrementLoans
+create unique index if not exists ux_users_email on users (email);
+
+-- BookRepositoryCustom.findPageAfter: ordinamento (campo, id)
+create index if not exists idx_books_titolo_id on books (titolo, id);
+create index if not exists idx_books_autore_id on books (autore, id);
+create index if not exists idx_books_costo_id on books (costo, id);
+create index if not exists idx_books_tipologia_id on books (tipologia, id);
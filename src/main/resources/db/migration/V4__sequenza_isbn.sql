@@ -0,0 +1,4 @@
+-- Numerazione interna dei libri (IsbnAllocator): ogni valore riserva un blocco di 1000 numeri,
+-- quindi l'incremento deve coincidere con IsbnAllocator.BLOCK_SIZE.
+
+create sequence if not exists isbn_seq start with 1 increment by 1000;
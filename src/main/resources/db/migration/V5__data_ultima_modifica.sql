@@ -0,0 +1,5 @@
+-- Data dell'ultima modifica di libri e utenti, usata con la versione per le GET condizionali
+-- (Last-Modified / ETag). Le righe esistenti partono dalla data della migrazione.
+
+alter table books add column if not exists last_modified timestamp(6) with time zone default current_timestamp not null;
+alter table users add column if not exists last_modified timestamp(6) with time zone default current_timestamp not null;
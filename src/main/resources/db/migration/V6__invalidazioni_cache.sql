@@ -0,0 +1,15 @@
+-- Registro delle invalidazioni di cache tra più istanze (CacheInvalidationLog): ogni scrittura
+-- aggiunge le chiavi invalidate nella stessa transazione, le altre istanze leggono le righe
+-- nuove per id e le eliminano dopo il periodo di conservazione.
+
+create table if not exists cache_invalidations (
+	id bigint generated by default as identity primary key,
+	node varchar(64) not null,
+	target varchar(8) not null,
+	titolo varchar(255),
+	chiave varchar(255) not null,
+	created_at timestamp(6) with time zone default current_timestamp not null
+);
+
+-- pulizia delle righe scadute
+create index if not exists idx_cache_invalidations_created on cache_invalidations (created_at);
@@ -0,0 +1,53 @@
+package com.library.config;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.library.model.exception.BookNotFoundException;
+import com.library.model.service.BookServ;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+@SpringBootTest
+public class MetricsConfigTest {
+
+	@Autowired
+	private MeterRegistry registry;
+
+	@Autowired
+	private BookServ bookServ;
+
+	/**
+	 * Verifica che le chiamate ai servizi vengano misurate con il timer per classe/metodo,
+	 * anche quando terminano con un'eccezione.
+	 */
+	@Test
+	void testServiceTimer() {
+		assertThrows(BookNotFoundException.class, () -> bookServ.deleteBook("XX-000"));
+
+		Timer timer = registry.find(MetricsConfig.SERVICE_TIMER).tag("class", BookServ.class.getName()).tag("method", "deleteBook")
+				.tag("exception", "BookNotFoundException").timer();
+		assertNotNull(timer);
+		assertTrue(timer.count() >= 1);
+	}
+
+	/**
+	 * Verifica che siano registrate le metriche di cache, pool di connessioni e Hibernate.
+	 */
+	@Test
+	void testInfrastructureMeters() {
+		assertNotNull(registry.find("cache.gets").tag("cache", "bookCache").meter());
+		assertNotNull(registry.find("cache.size").tag("cache", "userCache").meter());
+		assertNotNull(registry.find("hikaricp.connections.pending").meter());
+		assertNotNull(registry.find("hibernate.statements").meter());
+		assertNotNull(registry.find("hibernate.entities.loads").meter());
+		assertNotNull(registry.find("hibernate.flushes").meter());
+	}
+
+}
@@ -0,0 +1,160 @@
+package com.library.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import com.library.model.dto.LibroDtoIn;
+import com.library.model.dto.LibroDtoOut;
+import com.library.model.dto.UserDtoIn;
+import com.library.model.dto.UserDtoOut;
+import com.library.model.entity.User;
+import com.library.model.event.BookSnapshot;
+import com.library.model.event.UserSnapshot;
+import com.library.model.read.LibraryReadModel;
+import com.library.model.repo.UserRepository;
+import com.library.model.service.BookServ;
+import com.library.model.service.UserServ;
+
+import jakarta.persistence.EntityManagerFactory;
+
+@SpringBootTest
+public class ConditionalGetTest {
+
+	private static final String EMAIL = "condizionale@email.it";
+
+	@Autowired
+	private BookController books;
+
+	@Autowired
+	private UserController users;
+
+	@Autowired
+	private BookServ bookServ;
+
+	@Autowired
+	private UserServ userServ;
+
+	@Autowired
+	private UserRepository userRep;
+
+	@Autowired
+	private EntityManagerFactory emf;
+
+	private static ServletWebRequest get(String header, String value) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/find");
+		if (header != null)
+			request.addHeader(header, value);
+		return new ServletWebRequest(request, new MockHttpServletResponse());
+	}
+
+	private static String etag(ServletWebRequest r) {
+		return r.getResponse().getHeader(HttpHeaders.ETAG);
+	}
+
+	/**
+	 * Con l'ETag corrente il libro risponde 304 senza query né DTO; dopo una modifica l'ETag
+	 * cambia e la risposta torna completa.
+	 */
+	@Test
+	public void testBookNotModified() {
+		LibroDtoIn in = bookServ.createDtoInParam("Condizionale", "Saggio", "Autore", "IT", 10);
+
+		ServletWebRequest first = get(null, null);
+		assertNotNull(books.findBook(in.getTitolo(), in.getIdentificativoIsbn(), first));
+		String etag = etag(first);
+		assertNotNull(etag);
+		assertNotNull(first.getResponse().getHeader(HttpHeaders.LAST_MODIFIED));
+
+		Statistics stats = emf.unwrap(SessionFactory.class).getStatistics();
+		stats.clear();
+		ServletWebRequest again = get(HttpHeaders.IF_NONE_MATCH, etag);
+		assertNull(books.findBook(in.getTitolo(), in.getIdentificativoIsbn(), again));
+		assertEquals(304, again.getResponse().getStatus());
+		assertEquals(0, stats.getPrepareStatementCount());
+
+		ServletWebRequest since = get(HttpHeaders.IF_MODIFIED_SINCE,
+				first.getResponse().getHeader(HttpHeaders.LAST_MODIFIED));
+		assertNull(books.findBook(in.getTitolo(), in.getIdentificativoIsbn(), since));
+		assertEquals(304, since.getResponse().getStatus());
+
+		bookServ.modifyBookParam(in.getIdentificativoIsbn(), null, null, null, null, 12);
+		ServletWebRequest changed = get(HttpHeaders.IF_NONE_MATCH, etag);
+		LibroDtoOut dto = books.findBook(in.getTitolo(), in.getIdentificativoIsbn(), changed);
+		assertEquals(12, dto.getCosto());
+		assertEquals(200, changed.getResponse().getStatus());
+		assertNotEquals(etag, etag(changed));
+	}
+
+	/**
+	 * Il cambio di email del proprietario cambia il DTO del libro: la ricerca restituisce la
+	 * nuova email con un nuovo ETag, anche con il libro già nel modello di lettura e in cache.
+	 */
+	@Test
+	public void testOwnerEmailChangeUpdatesBook() {
+		String renamed = "rinominato@email.it";
+		userServ.createDtoin("Ugo", "Neri", "proprietario@email.it");
+		LibroDtoIn in = bookServ.createDtoInParam("Condizionale proprietario", "Saggio", "Autore", "IT", 10);
+		userServ.bookAssignment("proprietario@email.it", in.getTitolo(), in.getIdentificativoIsbn());
+
+		ServletWebRequest first = get(null, null);
+		assertEquals("proprietario@email.it",
+				books.findBook(in.getTitolo(), in.getIdentificativoIsbn(), first).getProprietario());
+		String etag = etag(first);
+
+		userServ.modifyUserJson("proprietario@email.it", UserDtoIn.builder().email(renamed).build());
+
+		ServletWebRequest changed = get(HttpHeaders.IF_NONE_MATCH, etag);
+		LibroDtoOut dto = books.findBook(in.getTitolo(), in.getIdentificativoIsbn(), changed);
+		assertNotNull(dto);
+		assertEquals(renamed, dto.getProprietario());
+		assertEquals(200, changed.getResponse().getStatus());
+		assertNotEquals(etag, etag(changed));
+		assertEquals(1, users.findUser(renamed, get(null, null)).getBooksInPossession().size());
+	}
+
+	/**
+	 * L'ETag dell'utente cambia quando cambiano i libri in possesso ed è lo stesso se letto
+	 * dal modello di lettura o dal database.
+	 */
+	@Test
+	public void testUserEtagFollowsBooks() {
+		userServ.createDtoin("Ada", "Verdi", EMAIL);
+		LibroDtoIn in = bookServ.createDtoInParam("Condizionale utente", "Saggio", "Autore", "IT", 10);
+
+		ServletWebRequest first = get(null, null);
+		users.findUser(EMAIL, first);
+		String empty = etag(first);
+
+		userServ.bookAssignment(EMAIL, in.getTitolo(), in.getIdentificativoIsbn());
+		ServletWebRequest changed = get(HttpHeaders.IF_NONE_MATCH, empty);
+		UserDtoOut dto = users.findUser(EMAIL, changed);
+		assertEquals(1, dto.getBooksInPossession().size());
+		String owning = etag(changed);
+		assertNotEquals(empty, owning);
+		User u = userRep.findWithBooksByEmail(EMAIL);
+		assertEquals(owning, LibraryReadModel.versioned(UserSnapshot.of(u), u.getLastModified(),
+				u.getBooksInPossession().stream().map(BookSnapshot::of).collect(Collectors.toList())).etag());
+
+		userServ.returnBooks(EMAIL, List.of(in.getIdentificativoIsbn()));
+		ServletWebRequest returned = get(HttpHeaders.IF_NONE_MATCH, owning);
+		assertEquals(0, users.findUser(EMAIL, returned).getBooksInPossession().size());
+		// stessa rappresentazione di prima dell'acquisto, stesso ETag
+		assertEquals(empty, etag(returned));
+	}
+
+}
@@ -0,0 +1,67 @@
+package com.library.model.activity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+
+public class ActivityLogTest {
+
+	private final Logger logger = (Logger) LoggerFactory.getLogger(ActivityLog.LOGGER);
+	private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+	private Level previous;
+
+	@BeforeEach
+	public void setup() {
+		previous = logger.getLevel();
+		logger.setLevel(Level.INFO);
+		appender.start();
+		logger.addAppender(appender);
+	}
+
+	@AfterEach
+	public void cleanup() {
+		logger.detachAppender(appender);
+		logger.setLevel(previous);
+	}
+
+	@Test
+	public void testRecordWritesKeyValues() {
+		new ActivityLog().record("bookAssignment", "email", "a@b.it", "isbn", "AB-CDE");
+
+		assertEquals(1, appender.list.size());
+		ILoggingEvent e = appender.list.get(0);
+		assertEquals("bookAssignment", e.getMessage());
+		Map<String, Object> kv = e.getKeyValuePairs().stream().collect(Collectors.toMap(p -> p.key, p -> p.value));
+		assertEquals(Map.of("operation", "bookAssignment", "email", "a@b.it", "isbn", "AB-CDE"), kv);
+	}
+
+	@Test
+	public void testSampling() {
+		ActivityLog activity = new ActivityLog();
+		activity.getSampling().put("findBook", 0.0);
+		activity.getSampling().put("findUser", 0.5);
+
+		for (int i = 0; i < 1000; i++) {
+			activity.record("findBook", "isbn", i);
+			activity.record("findUser", "email", i);
+		}
+
+		assertTrue(appender.list.stream().noneMatch(e -> e.getMessage().equals("findBook")));
+		long users = appender.list.size();
+		assertTrue(users > 350 && users < 650, "eventi campionati: " + users);
+		assertTrue(appender.list.get(0).getKeyValuePairs().stream().anyMatch(p -> p.key.equals("sampleRate")));
+	}
+
+}
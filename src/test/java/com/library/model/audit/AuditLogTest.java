@@ -0,0 +1,162 @@
+package com.library.model.audit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.model.dto.AuditEntryDto;
+import com.library.model.event.UserChangedEvent;
+import com.library.model.event.UserSnapshot;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class AuditLogTest {
+
+	@TempDir
+	Path dir;
+
+	private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+
+	private AuditLog open(Duration retention) {
+		return new AuditLog(mapper, new SimpleMeterRegistry(), dir, DataSize.ofKilobytes(16), 64, retention,
+				Duration.ofDays(1));
+	}
+
+	private static void record(AuditLog audit, String email, int n) {
+		audit.append("USER", "UPDATE", Map.of("email", email, "n", n - 1), Map.of("email", email, "n", n), Set.of(email));
+	}
+
+	private static List<Integer> numbers(List<AuditEntryDto> entries) {
+		List<Integer> l = new ArrayList<>();
+		for (AuditEntryDto e : entries)
+			l.add((Integer) e.getAfter().get("n"));
+		return l;
+	}
+
+	private static Instant tick() throws InterruptedException {
+		Thread.sleep(5);
+		Instant i = Instant.now();
+		Thread.sleep(5);
+		return i;
+	}
+
+	/**
+	 * La ricerca restituisce solo i record dell'utente nell'intervallo, in ordine, anche su più
+	 * segmenti; un cambio di email è visibile con entrambe le email.
+	 */
+	@Test
+	public void testHistoryByUserAndTimeRange() throws Exception {
+		AuditLog audit = open(Duration.ofDays(1));
+		for (int i = 0; i < 300; i++) {
+			record(audit, "prima@email.it", i);
+			record(audit, "altro@email.it", i);
+		}
+		Instant t1 = tick();
+		for (int i = 300; i < 600; i++) {
+			record(audit, "prima@email.it", i);
+			record(audit, "altro@email.it", i);
+		}
+		Instant t2 = tick();
+		record(audit, "prima@email.it", 600);
+		audit.onUserChanged(new UserChangedEvent(new UserSnapshot(1L, "Ada", "Rossi", "prima@email.it", 0, null),
+				new UserSnapshot(1L, "Ada", "Rossi", "dopo@email.it", 1, null)));
+		audit.awaitWritten();
+
+		assertTrue(audit.segmentCount() > 3);
+		List<Integer> between = numbers(audit.history("prima@email.it", t1, t2, AuditLog.MAX_LIMIT));
+		assertEquals(300, between.size());
+		assertEquals(300, between.get(0));
+		assertEquals(599, between.get(299));
+
+		assertEquals(List.of(0, 1, 2), numbers(audit.history("prima@email.it", null, null, 3)));
+		assertEquals(602, audit.history("prima@email.it", null, null, AuditLog.MAX_LIMIT).size());
+
+		List<AuditEntryDto> renamed = audit.history("dopo@email.it", t2, null, 10);
+		assertEquals(1, renamed.size());
+		assertEquals(AuditLog.SYSTEM_ACTOR, renamed.get(0).getActor());
+		assertEquals("prima@email.it", renamed.get(0).getBefore().get("email"));
+		assertEquals("dopo@email.it", renamed.get(0).getAfter().get("email"));
+		audit.close();
+	}
+
+	/**
+	 * Dopo un riavvio i segmenti vengono riaperti dall'indice; la compattazione unisce i
+	 * segmenti piccoli senza cambiare i risultati e la retention cancella quelli scaduti.
+	 */
+	@Test
+	public void testRestartCompactionAndRetention() throws Exception {
+		for (int run = 0; run < 3; run++) {
+			AuditLog audit = open(Duration.ofDays(1));
+			for (int i = 0; i < 5; i++)
+				record(audit, "riavvio@email.it", run * 5 + i);
+			audit.awaitWritten();
+			audit.close();
+		}
+
+		AuditLog audit = open(Duration.ofDays(1));
+		assertEquals(4, audit.segmentCount());
+		List<Integer> all = numbers(audit.history("riavvio@email.it", null, null, 100));
+		assertEquals(15, all.size());
+
+		audit.compact();
+		assertEquals(2, audit.segmentCount());
+		assertEquals(all, numbers(audit.history("riavvio@email.it", null, null, 100)));
+		audit.close();
+
+		audit = open(Duration.ofDays(1));
+		assertEquals(2, audit.segmentCount());
+		assertEquals(all, numbers(audit.history("riavvio@email.it", null, null, 100)));
+		audit.close();
+
+		Thread.sleep(5);
+		audit = open(Duration.ofMillis(1));
+		audit.compact();
+		assertEquals(1, audit.segmentCount());
+		assertTrue(audit.history("riavvio@email.it", null, null, 100).isEmpty());
+		audit.close();
+	}
+
+	/**
+	 * Un segmento non chiuso (spegnimento improvviso) viene riletto fino all'ultimo record
+	 * integro.
+	 */
+	@Test
+	public void testRecoveryStopsAtTornRecord() throws Exception {
+		AuditSegment s = AuditSegment.create(dir, 7, 1 << 16);
+		byte[][] keys = { AuditSegment.utf8("crash@email.it") };
+		for (int i = 0; i < 100; i++)
+			assertTrue(s.append(1000 + i, keys, AuditSegment.utf8("{\"n\":" + i + "}")));
+		int complete = s.size();
+		// record interrotto: lunghezza scritta, contenuto e crc no
+		s.append(2000, keys, new byte[40]);
+		try (FileChannel ch = FileChannel.open(s.file, StandardOpenOption.WRITE)) {
+			ch.write(ByteBuffer.allocate(4).putInt(0xBAD).flip(), complete + 4);
+		}
+		s.force();
+
+		AuditSegment reopened = AuditSegment.open(s.file);
+		assertEquals(complete, reopened.size());
+		assertEquals(complete, Files.size(s.file));
+		List<byte[]> found = new ArrayList<>();
+		reopened.scan(keys[0], 1050, 1059, 100, found);
+		assertEquals(10, found.size());
+		assertEquals("{\"n\":50}", new String(found.get(0)));
+	}
+
+}
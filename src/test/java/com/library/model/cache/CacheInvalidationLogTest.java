@@ -0,0 +1,148 @@
+package com.library.model.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.library.model.dto.LibroDtoIn;
+import com.library.model.read.LibraryReadModel;
+import com.library.model.service.BookServ;
+import com.library.model.service.UserServ;
+
+@SpringBootTest
+public class CacheInvalidationLogTest {
+
+	private static final String REMOTE = "altro-nodo";
+
+	@Autowired
+	private CacheInvalidationLog invalidations;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Autowired
+	private LibraryReadModel readModel;
+
+	@Autowired
+	private BookServ bookServ;
+
+	@Autowired
+	private UserServ userServ;
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	@Autowired
+	private TransactionTemplate tx;
+
+	private void remoteInvalidation(String target, String title, String key) {
+		jdbc.update("insert into cache_invalidations (node, target, titolo, chiave) values (?, ?, ?, ?)", REMOTE, target,
+				title, key);
+	}
+
+	/**
+	 * Un acquisto fatto da un'altra istanza: dopo l'interrogazione del registro il libro non è
+	 * più "Non venduto", mentre le altre chiavi in cache e le righe del nodo stesso restano.
+	 */
+	@Test
+	public void testRemoteWriteEvictsOnlyItsKeys() {
+		userServ.createDtoin("Ada", "Remota", "remota@email.it");
+		LibroDtoIn a = bookServ.createDtoInParam("Coerenza uno", "Saggio", "Autore", "IT", 10);
+		LibroDtoIn b = bookServ.createDtoInParam("Coerenza due", "Saggio", "Autore", "IT", 11);
+		Cache books = cacheManager.getCache(LibraryCache.BOOK_CACHE);
+		String keyA = LibraryCache.bookKey(a.getTitolo(), a.getIdentificativoIsbn());
+		String keyB = LibraryCache.bookKey(b.getTitolo(), b.getIdentificativoIsbn());
+
+		invalidations.poll();
+		assertEquals("Non venduto",
+				bookServ.findBookVersioned(a.getTitolo(), a.getIdentificativoIsbn()).get().getProprietario());
+		bookServ.findBookVersioned(b.getTitolo(), b.getIdentificativoIsbn()).get();
+
+		// scrittura dell'altra istanza: update della riga e invalidazioni nella stessa transazione
+		tx.executeWithoutResult(s -> {
+			jdbc.update("update books set user_id = (select id from users where email = ?), version = version + 1"
+					+ " where identificativo_isbn = ?", "remota@email.it", a.getIdentificativoIsbn());
+			remoteInvalidation("BOOK", a.getTitolo(), a.getIdentificativoIsbn());
+			remoteInvalidation("USER", null, "remota@email.it");
+		});
+		// riga del nodo stesso: già applicata localmente, non viene riletta
+		jdbc.update("insert into cache_invalidations (node, target, titolo, chiave) values (?, 'BOOK', ?, ?)",
+				invalidations.node(), b.getTitolo(), b.getIdentificativoIsbn());
+		assertNotNull(books.get(keyA));
+
+		invalidations.poll();
+		assertNull(books.get(keyA));
+		assertNotNull(books.get(keyB));
+		assertNull(readModel.book(a.getTitolo(), a.getIdentificativoIsbn()));
+		assertNotNull(readModel.book(b.getTitolo(), b.getIdentificativoIsbn()));
+		assertEquals("remota@email.it",
+				bookServ.findBookVersioned(a.getTitolo(), a.getIdentificativoIsbn()).get().getProprietario());
+	}
+
+	/**
+	 * Le scritture locali registrano le chiavi invalidate con l'id del nodo.
+	 */
+	@Test
+	public void testLocalWritesArePublished() {
+		userServ.createDtoin("Bruno", "Locale", "locale@email.it");
+		LibroDtoIn a = bookServ.createDtoInParam("Coerenza tre", "Saggio", "Autore", "IT", 12);
+
+		userServ.bookAssignment("locale@email.it", a.getTitolo(), a.getIdentificativoIsbn());
+
+		String count = "select count(*) from cache_invalidations where node = ? and chiave = ?";
+		assertEquals(1, jdbc.queryForObject(count, Integer.class, invalidations.node(), a.getIdentificativoIsbn()));
+		assertEquals(1, jdbc.queryForObject(count, Integer.class, invalidations.node(), "locale@email.it"));
+	}
+
+	/**
+	 * Una transazione con un id più basso che termina dopo una con id più alto non viene persa.
+	 */
+	@Test
+	public void testOutOfOrderCommitIsNotSkipped() throws Exception {
+		Cache users = cacheManager.getCache(LibraryCache.USER_CACHE);
+		users.put("lento@email.it", "valore");
+		users.put("veloce@email.it", "valore");
+		invalidations.poll();
+
+		CountDownLatch inserted = new CountDownLatch(1);
+		CountDownLatch commit = new CountDownLatch(1);
+		try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+			Future<?> slow = pool.submit(() -> tx.executeWithoutResult(s -> {
+				remoteInvalidation("USER", null, "lento@email.it");
+				inserted.countDown();
+				try {
+					commit.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}));
+			inserted.await();
+			remoteInvalidation("USER", null, "veloce@email.it");
+
+			invalidations.poll();
+			assertNull(users.get("veloce@email.it"));
+			assertNotNull(users.get("lento@email.it"));
+
+			commit.countDown();
+			slow.get(10, TimeUnit.SECONDS);
+		}
+
+		invalidations.poll();
+		assertNull(users.get("lento@email.it"));
+	}
+
+}
@@ -0,0 +1,121 @@
+package com.library.model.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+
+import com.library.model.activity.ActivityLog;
+import com.library.model.dto.LibroDtoIn;
+import com.library.model.service.BookServ;
+import com.library.model.service.UserServ;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+
+@SpringBootTest
+public class LibraryCacheTest {
+
+	private static final String EMAIL = "cache@email.it";
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Autowired
+	private BookServ bookServ;
+
+	@Autowired
+	private UserServ userServ;
+
+	@Autowired
+	private ActivityLog activity;
+
+	/**
+	 * Le letture popolano {@code bookCache} e {@code userCache} (Caffeine); modifica del
+	 * libro, assegnazione e modifica dell'utente eliminano le voci interessate, così la
+	 * lettura successiva restituisce i dati aggiornati.
+	 */
+	@Test
+	public void testWritesEvictCachedEntries() {
+		userServ.createDtoin("Carla", "Cache", EMAIL);
+		LibroDtoIn in = bookServ.createDtoInParam("Cache uno", "Saggio", "Autore", "IT", 10);
+		String bookKey = LibraryCache.bookKey(in.getTitolo(), in.getIdentificativoIsbn());
+		Cache books = cacheManager.getCache(LibraryCache.BOOK_CACHE);
+		Cache users = cacheManager.getCache(LibraryCache.USER_CACHE);
+		assertInstanceOf(CaffeineCache.class, books);
+		assertInstanceOf(CaffeineCache.class, users);
+
+		bookServ.findBookVersioned(in.getTitolo(), in.getIdentificativoIsbn());
+		userServ.findUserVersioned(EMAIL);
+		assertNotNull(books.get(bookKey));
+		assertNotNull(users.get(EMAIL));
+
+		bookServ.modifyBookParam(in.getIdentificativoIsbn(), null, null, null, null, 12);
+		assertNull(books.get(bookKey));
+		assertEquals(12, bookServ.findBookVersioned(in.getTitolo(), in.getIdentificativoIsbn()).get().getCosto());
+
+		userServ.bookAssignment(EMAIL, in.getTitolo(), in.getIdentificativoIsbn());
+		assertNull(books.get(bookKey));
+		assertNull(users.get(EMAIL));
+		assertEquals(EMAIL, bookServ.findBookVersioned(in.getTitolo(), in.getIdentificativoIsbn()).get()
+				.getProprietario());
+		assertEquals(1, userServ.findUserVersioned(EMAIL).get().getBooksInPossession().size());
+
+		userServ.modifyUserParams("Carlotta", null, EMAIL);
+		assertNull(users.get(EMAIL));
+		assertEquals("Carlotta", userServ.findUserVersioned(EMAIL).get().getName());
+	}
+
+	/**
+	 * {@code findBook} e {@code findUser} passano dal proxy, quindi popolano le cache; la
+	 * ricerca viene registrata nel registro delle attività anche quando il risultato è in
+	 * cache.
+	 */
+	@Test
+	public void testFindThroughProxyUsesCache() {
+		userServ.createDtoin("Piero", "Proxy", "proxy@email.it");
+		LibroDtoIn in = bookServ.createDtoInParam("Cache proxy", "Saggio", "Autore", "IT", 10);
+		Cache books = cacheManager.getCache(LibraryCache.BOOK_CACHE);
+		Cache users = cacheManager.getCache(LibraryCache.USER_CACHE);
+
+		bookServ.findBook(in.getTitolo(), in.getIdentificativoIsbn());
+		userServ.findUser("proxy@email.it");
+		assertNotNull(books.get(LibraryCache.bookKey(in.getTitolo(), in.getIdentificativoIsbn())));
+		assertNotNull(users.get("proxy@email.it"));
+
+		// le ricerche sono campionate in application.properties
+		Map<String, Double> sampling = Map.copyOf(activity.getSampling());
+		activity.getSampling().clear();
+		Logger logger = (Logger) LoggerFactory.getLogger(ActivityLog.LOGGER);
+		ListAppender<ILoggingEvent> appender = new ListAppender<>();
+		Level previous = logger.getLevel();
+		logger.setLevel(Level.INFO);
+		appender.start();
+		logger.addAppender(appender);
+		try {
+			bookServ.findBook(in.getTitolo(), in.getIdentificativoIsbn());
+			userServ.findUser("proxy@email.it");
+		} finally {
+			logger.detachAppender(appender);
+			logger.setLevel(previous);
+			activity.getSampling().putAll(sampling);
+		}
+		assertEquals(List.of("findBook", "findUser"),
+				appender.list.stream().map(ILoggingEvent::getMessage).collect(Collectors.toList()));
+	}
+
+}
@@ -0,0 +1,71 @@
+package com.library.model.concurrency;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import com.library.controller.BookController;
+import com.library.model.exception.BulkheadFullException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class BulkheadInterceptorTest {
+
+	private SimpleMeterRegistry registry;
+	private BulkheadInterceptor bulkhead;
+	private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+	@BeforeEach
+	public void setup() {
+		registry = new SimpleMeterRegistry();
+		bulkhead = new BulkheadInterceptor(registry, 2, 1, Duration.ZERO);
+	}
+
+	@Test
+	public void testWriteBurstDoesNotBlockReads() throws Exception {
+		MockHttpServletRequest buy = new MockHttpServletRequest("PATCH", "/api/users/buy");
+		assertTrue(bulkhead.preHandle(buy, response, null));
+
+		assertThrows(BulkheadFullException.class,
+				() -> bulkhead.preHandle(new MockHttpServletRequest("POST", "/api/users/create"), response, null));
+		assertTrue(bulkhead.preHandle(new MockHttpServletRequest("GET", "/api/books/find"), response, null));
+
+		assertEquals(1.0, registry.get(BulkheadInterceptor.REJECTED_METRIC).tag("group", "write").counter().count());
+		assertEquals(0.0, registry.get(BulkheadInterceptor.AVAILABLE_METRIC).tag("group", "write").gauge().value());
+		assertEquals(1.0, registry.get(BulkheadInterceptor.AVAILABLE_METRIC).tag("group", "read").gauge().value());
+
+		bulkhead.afterCompletion(buy, response, null, null);
+		assertTrue(bulkhead.preHandle(new MockHttpServletRequest("POST", "/api/users/create"), response, null));
+	}
+
+	@Test
+	public void testReadRequestUsesReadGroup() throws Exception {
+		HandlerMethod batchGet = new HandlerMethod(new BookController(),
+				BookController.class.getMethod("batchGet", List.class));
+		assertTrue(bulkhead.preHandle(new MockHttpServletRequest("POST", "/api/books/batch-get"), response, batchGet));
+
+		assertEquals(1.0, registry.get(BulkheadInterceptor.AVAILABLE_METRIC).tag("group", "read").gauge().value());
+		assertEquals(1.0, registry.get(BulkheadInterceptor.AVAILABLE_METRIC).tag("group", "write").gauge().value());
+	}
+
+	@Test
+	public void testReleaseOnlyOnce() throws Exception {
+		MockHttpServletRequest find = new MockHttpServletRequest("GET", "/api/books/find");
+		bulkhead.preHandle(find, response, null);
+
+		bulkhead.afterConcurrentHandlingStarted(find, response, null);
+		bulkhead.afterCompletion(find, response, null, null);
+
+		assertEquals(2.0, registry.get(BulkheadInterceptor.AVAILABLE_METRIC).tag("group", "read").gauge().value());
+	}
+
+}
@@ -0,0 +1,98 @@
+package com.library.model.concurrency;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.library.model.exception.BookNotFoundException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class SingleFlightTest {
+
+	private static final int CALLERS = 32;
+
+	private SimpleMeterRegistry registry;
+	private SingleFlight singleFlight;
+
+	@BeforeEach
+	public void setup() {
+		registry = new SimpleMeterRegistry();
+		singleFlight = new SingleFlight(registry);
+	}
+
+	private double coalesced(String group) {
+		return registry.counter(SingleFlight.COALESCED_METRIC, "group", group).count();
+	}
+
+	/**
+	 * Il caricamento resta in corso finché tutti gli altri chiamanti non si sono accodati:
+	 * una sola esecuzione per chiave, lo stesso risultato per tutti.
+	 */
+	@Test
+	public void testConcurrentCallersShareOneLoad() throws Exception {
+		AtomicInteger loads = new AtomicInteger();
+		Object value = new Object();
+		List<CompletableFuture<Object>> results = new ArrayList<>();
+
+		try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int i = 0; i < CALLERS; i++) {
+				results.add(CompletableFuture.supplyAsync(() -> singleFlight.execute("findBook", "chiave", () -> {
+					loads.incrementAndGet();
+					while (coalesced("findBook") < CALLERS - 1)
+						Thread.onSpinWait();
+					return value;
+				}), pool));
+			}
+			for (CompletableFuture<Object> r : results)
+				assertSame(value, r.get(10, TimeUnit.SECONDS));
+		}
+
+		assertEquals(1, loads.get());
+		assertEquals(CALLERS - 1, coalesced("findBook"));
+		assertEquals(0, singleFlight.inFlight());
+	}
+
+	/**
+	 * Chi attende riceve la stessa eccezione del caricamento; chiavi diverse non si bloccano
+	 * a vicenda e una chiave liberata viene ricaricata.
+	 */
+	@Test
+	public void testExceptionIsSharedAndKeysAreIndependent() throws Exception {
+		CountDownLatch loading = new CountDownLatch(1);
+		BookNotFoundException notFound = new BookNotFoundException("Libro non trovato");
+
+		try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+			CompletableFuture<Object> first = CompletableFuture.supplyAsync(
+					() -> singleFlight.execute("findBook", "mancante", () -> {
+						loading.countDown();
+						while (coalesced("findBook") < 1)
+							Thread.onSpinWait();
+						throw notFound;
+					}), pool);
+			loading.await();
+
+			assertEquals("altro", singleFlight.execute("findBook", "altra chiave", () -> "altro"));
+			BookNotFoundException e = assertThrows(BookNotFoundException.class,
+					() -> singleFlight.execute("findBook", "mancante", () -> "mai eseguito"));
+			assertSame(notFound, e);
+			assertThrows(Exception.class, () -> first.get(10, TimeUnit.SECONDS));
+		}
+
+		assertEquals("ricaricato", singleFlight.execute("findBook", "mancante", () -> "ricaricato"));
+		assertEquals(3, registry.counter(SingleFlight.LOADS_METRIC, "group", "findBook").count());
+	}
+
+}
@@ -0,0 +1,43 @@
+package com.library.model.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.library.model.exception.InvalidCsvException;
+
+public class CsvReaderTest {
+
+	/**
+	 * Verifica la lettura di campi semplici, tra virgolette, con virgolette raddoppiate,
+	 * vuoti e con a capo interni, con terminatori di riga misti.
+	 */
+	@Test
+	void testNext_quotedAndEmptyFields() throws IOException {
+		CsvReader csv = new CsvReader(new StringReader(
+				"a,b,c\r\n\"x, y\",\"di \"\"lui\"\"\",\n\n\"riga\nlunga\",2,3"));
+
+		assertEquals(List.of("a", "b", "c"), csv.next());
+		assertEquals(1, csv.getRecordLine());
+		assertEquals(List.of("x, y", "di \"lui\"", ""), csv.next());
+		assertEquals(List.of("riga\nlunga", "2", "3"), csv.next());
+		assertEquals(4, csv.getRecordLine());
+		assertNull(csv.next());
+	}
+
+	/**
+	 * Verifica che un campo con virgolette non chiuse sollevi InvalidCsvException.
+	 */
+	@Test
+	void testNext_unterminatedQuote() throws IOException {
+		CsvReader csv = new CsvReader(new StringReader("a,\"non chiuso\n"));
+		assertThrows(InvalidCsvException.class, csv::next);
+	}
+
+}
@@ -0,0 +1,51 @@
+package com.library.model.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class CsvWriterTest {
+
+	/**
+	 * Verifica che solo i campi con separatore, virgolette o a capo vengano racchiusi tra
+	 * virgolette, con le virgolette interne raddoppiate, e che {@code null} diventi un campo
+	 * vuoto.
+	 */
+	@Test
+	void testWriteRecord_quotingAndEscaping() throws IOException {
+		StringWriter out = new StringWriter();
+		CsvWriter csv = new CsvWriter(out);
+
+		csv.writeRecord("semplice", "con, virgola", "di \"lui\"", "riga\nlunga", "ritorno\r", null, 12.5);
+		csv.flush();
+
+		assertEquals("semplice,\"con, virgola\",\"di \"\"lui\"\"\",\"riga\nlunga\",\"ritorno\r\",,12.5\n",
+				out.toString());
+	}
+
+	/**
+	 * Verifica che quanto scritto venga riletto da {@link CsvReader} con gli stessi campi.
+	 */
+	@Test
+	void testWriteRecord_readBack() throws IOException {
+		List<String> first = Arrays.asList("a", "\"", ",,", "x\ny", "");
+		List<String> second = Arrays.asList("", "fine", " spazi ", "\"\"", "z");
+		StringWriter out = new StringWriter();
+		CsvWriter csv = new CsvWriter(out);
+		csv.writeRecord(first.toArray());
+		csv.writeRecord(second.toArray());
+
+		CsvReader reader = new CsvReader(new StringReader(out.toString()));
+		assertEquals(first, reader.next());
+		assertEquals(second, reader.next());
+		assertNull(reader.next());
+	}
+
+}
@@ -0,0 +1,52 @@
+package com.library.model.isbn;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@SpringBootTest
+public class IsbnAllocatorTest {
+
+	@Autowired
+	private IsbnAllocator allocator;
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	@Test
+	public void testCheckDigit() {
+		// ISBN reale 978-0-306-40615-7
+		assertEquals(7, IsbnAllocator.checkDigit("978030640615"));
+		assertEquals("2000000000015", IsbnAllocator.format(1));
+		assertEquals("2009999999997", IsbnAllocator.format(IsbnAllocator.MAX_NUMBER));
+	}
+
+	/**
+	 * Due allocatori sullo stesso database (come due istanze dell'applicazione) non assegnano
+	 * mai lo stesso codice, anche su più blocchi.
+	 */
+	@Test
+	public void testUniqueAcrossInstances() {
+		IsbnAllocator other = new IsbnAllocator(jdbc);
+		Set<String> codes = new HashSet<>();
+
+		for (int i = 0; i < IsbnAllocator.BLOCK_SIZE * 3; i++) {
+			assertTrue(codes.add(allocator.next()));
+			assertTrue(codes.add(other.next()));
+		}
+
+		for (String code : codes) {
+			assertEquals(13, code.length());
+			assertTrue(code.startsWith(IsbnAllocator.PREFIX));
+			assertEquals(IsbnAllocator.checkDigit(code), code.charAt(12) - '0');
+		}
+	}
+
+}
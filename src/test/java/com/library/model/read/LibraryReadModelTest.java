@@ -0,0 +1,108 @@
+package com.library.model.read;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.library.model.dto.LibroDtoIn;
+import com.library.model.dto.LibroDtoOut;
+import com.library.model.dto.UserDtoOut;
+import com.library.model.event.BookChangedEvent;
+import com.library.model.event.BookSnapshot;
+import com.library.model.event.UserChangedEvent;
+import com.library.model.event.UserSnapshot;
+import com.library.model.repo.BookRepository;
+import com.library.model.repo.UserRepository;
+import com.library.model.service.BookServ;
+import com.library.model.service.UserServ;
+
+@SpringBootTest
+public class LibraryReadModelTest {
+
+	private static final String EMAIL = "modello@email.it";
+
+	@Autowired
+	private LibraryReadModel readModel;
+
+	@Autowired
+	private UserServ userServ;
+
+	@Autowired
+	private BookServ bookServ;
+
+	@Autowired
+	private BookRepository bookRep;
+
+	@Autowired
+	private UserRepository userRep;
+
+	private static List<String> isbns(UserDtoOut u) {
+		return u.getBooksInPossession().stream().map(LibroDtoOut::getIdentificativoIsbn).collect(Collectors.toList());
+	}
+
+	/**
+	 * Gli aggiornamenti incrementali portano allo stesso stato di una ricostruzione completa.
+	 */
+	@Test
+	public void testIncrementalMatchesRebuild() {
+		userServ.createDtoin("Lia", "Neri", EMAIL);
+		LibroDtoIn a = bookServ.createDtoInParam("Modello uno", "Giallo", "Autore", "IT", 12);
+		LibroDtoIn b = bookServ.createDtoInParam("Modello due", "Giallo", "Autore", "IT", 14);
+		userServ.bookAssignment(EMAIL, a.getTitolo(), a.getIdentificativoIsbn());
+		userServ.bookAssignment(EMAIL, b.getTitolo(), b.getIdentificativoIsbn());
+		userServ.removeBook(EMAIL, a.getTitolo());
+		userServ.modifyUserParams("Lucia", null, EMAIL);
+
+		UserDtoOut incremental = readModel.user(EMAIL);
+		assertEquals("Lucia", incremental.getName());
+		assertEquals(List.of(b.getIdentificativoIsbn()), isbns(incremental));
+		assertEquals(EMAIL, incremental.getBooksInPossession().get(0).getProprietario());
+		assertEquals("Non venduto", readModel.book(a.getTitolo(), a.getIdentificativoIsbn()).getProprietario());
+		assertNull(readModel.book("Altro titolo", a.getIdentificativoIsbn()));
+
+		readModel.rebuild();
+		assertEquals(incremental.toString(), readModel.user(EMAIL).toString());
+		assertEquals(bookServ.libroDtoOut(bookRep.findByIdentificativoIsbn(b.getIdentificativoIsbn())).toString(),
+				readModel.book(b.getTitolo(), b.getIdentificativoIsbn()).toString());
+
+		userServ.removeUser(EMAIL);
+		assertNull(readModel.user(EMAIL));
+		assertEquals("Non venduto", readModel.book(b.getTitolo(), b.getIdentificativoIsbn()).getProprietario());
+	}
+
+	/**
+	 * Eventi consegnati in ordine diverso dai commit: quello con la versione più vecchia
+	 * arriva per ultimo e viene scartato.
+	 */
+	@Test
+	public void testOutOfOrderEventsAreDropped() {
+		userServ.createDtoin("Ugo", "Ordine", "ordine@email.it");
+		LibroDtoIn in = bookServ.createDtoInParam("Modello ordine", "Giallo", "Autore", "IT", 10);
+		BookSnapshot v0 = BookSnapshot.of(bookRep.findByIdentificativoIsbn(in.getIdentificativoIsbn()));
+		BookSnapshot v1 = new BookSnapshot(v0.id(), v0.identificativoIsbn(), v0.titolo(), v0.tipologia(), v0.autore(),
+				v0.linguaggio(), 20, null, v0.version() + 1, v0.lastModified());
+		BookSnapshot v2 = new BookSnapshot(v0.id(), v0.identificativoIsbn(), v0.titolo(), v0.tipologia(), v0.autore(),
+				v0.linguaggio(), 30, null, v0.version() + 2, v0.lastModified());
+
+		readModel.onBookChanged(new BookChangedEvent(v1, v2));
+		readModel.onBookChanged(new BookChangedEvent(v0, v1));
+		assertEquals(30, readModel.book(v0.titolo(), v0.identificativoIsbn()).getCosto());
+
+		UserSnapshot u0 = UserSnapshot.of(userRep.findByEmail("ordine@email.it"));
+		UserSnapshot u1 = new UserSnapshot(u0.id(), "Primo", u0.cognome(), u0.email(), u0.version() + 1,
+				u0.lastModified());
+		UserSnapshot u2 = new UserSnapshot(u0.id(), "Secondo", u0.cognome(), u0.email(), u0.version() + 2,
+				u0.lastModified());
+
+		readModel.onUserChanged(new UserChangedEvent(u1, u2));
+		readModel.onUserChanged(new UserChangedEvent(u0, u1));
+		assertEquals("Secondo", readModel.user(u0.email()).getName());
+	}
+
+}
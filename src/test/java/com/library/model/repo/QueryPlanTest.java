@@ -0,0 +1,133 @@
+package com.library.model.repo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.library.model.dto.BookSortField;
+import com.library.model.service.BookImportServ;
+
+/**
+ * Verifica, tramite EXPLAIN, che le ricerche più frequenti dei repository usino gli indici
+ * creati dalle migrazioni e non una scansione completa della tabella. Le istruzioni sono
+ * quelle generate da Hibernate durante le chiamate ai repository ({@link SqlCapture}).
+ */
+@SpringBootTest
+public class QueryPlanTest {
+
+	@Autowired
+	private NamedParameterJdbcTemplate jdbc;
+
+	@Autowired
+	private BookRepository bookRep;
+
+	@Autowired
+	private UserRepository userRep;
+
+	@Autowired
+	private TransactionTemplate tx;
+
+	private static Object[] params(Object... values) {
+		return values;
+	}
+
+	/**
+	 * Esegue le chiamate ai repository e restituisce l'EXPLAIN di ogni istruzione generata, con
+	 * i parametri indicati per ognuna.
+	 */
+	private List<String> plans(Runnable repositoryCalls, Object[]... params) {
+		List<String> sql = SqlCapture.capture(repositoryCalls);
+		assertEquals(params.length, sql.size(), sql.toString());
+		List<String> plans = new ArrayList<>(sql.size());
+		for (int i = 0; i < sql.size(); i++)
+			plans.add(jdbc.getJdbcTemplate().queryForObject("explain " + sql.get(i), String.class, params[i]));
+		return plans;
+	}
+
+	private String plan(Runnable repositoryCall, Object... params) {
+		return plans(repositoryCall, params).get(0);
+	}
+
+	private static void assertUsesIndex(String index, String plan) {
+		assertTrue(plan.contains("PUBLIC." + index), plan);
+		assertFalse(plan.contains("tableScan"), plan);
+	}
+
+	private static void assertSortedByIndex(String index, String plan) {
+		assertTrue(plan.contains(index), plan);
+		assertTrue(plan.contains("index sorted"), plan);
+	}
+
+	/**
+	 * findByIdentificativoIsbn, findByTitoloAndIdentificativoIsbn e la verifica dei duplicati
+	 * dell'import usano l'indice univoco sull'ISBN.
+	 */
+	@Test
+	void testBookLookups_useIsbnIndex() {
+		assertUsesIndex("UX_BOOKS_ISBN", plan(() -> bookRep.findByIdentificativoIsbn("Ti-FAI"), "Ti-FAI"));
+		assertUsesIndex("UX_BOOKS_ISBN",
+				plan(() -> bookRep.findByTitoloAndIdentificativoIsbn("Titolo", "Ti-FAI"), "Titolo", "Ti-FAI"));
+
+		// l'import usa JDBC, senza Hibernate: EXPLAIN della stessa istruzione
+		String plan = jdbc.queryForObject("explain " + BookImportServ.EXISTING_SQL,
+				Map.of("isbns", List.of("Ti-FAI", "Al-FAI")), String.class);
+		assertUsesIndex("UX_BOOKS_ISBN", plan);
+	}
+
+	/**
+	 * findByEmail, existsByEmail e il contatore dei prestiti usano l'indice univoco sull'email;
+	 * il caricamento dei libri in possesso usa l'indice su user_id.
+	 */
+	@Test
+	void testUserLookups_useEmailIndex() {
+		String email = "mario@email.it";
+		assertUsesIndex("UX_USERS_EMAIL", plan(() -> userRep.findByEmail(email), email));
+		assertUsesIndex("UX_USERS_EMAIL", plan(() -> userRep.existsByEmail(email), email, 1));
+		assertUsesIndex("UX_USERS_EMAIL", plan(() -> tx.executeWithoutResult(status -> {
+			userRep.incrementLoans(email, 5);
+			status.setRollbackOnly();
+		}), email, 5));
+
+		String plan = plan(() -> userRep.findWithBooksByEmail(email), email);
+		assertUsesIndex("UX_USERS_EMAIL", plan);
+		assertTrue(plan.contains("PUBLIC.IDX_BOOKS_USER"), plan);
+	}
+
+	/**
+	 * La paginazione keyset si posiziona sull'indice (campo, id) e non ordina in memoria,
+	 * anche per le pagine che proseguono tra i valori nulli.
+	 */
+	@Test
+	void testKeysetPage_usesSortIndex() {
+		int limit = 21;
+		String plan = plan(() -> bookRep.findPageAfter(BookSortField.AUTORE, true, "King", 10L, limit), "King",
+				"King", 10, limit);
+		assertSortedByIndex("PUBLIC.IDX_BOOKS_AUTORE_ID: AUTORE >= ?1", plan);
+
+		// limite alto: la pagina non si riempie e viene eseguita anche la query sui nulli
+		int all = 100_000;
+		List<String> plans = plans(() -> bookRep.findPageAfter(BookSortField.COSTO, false, 5.0, 10L, all),
+				params(5.0, 5.0, 10, all), params(all));
+		assertSortedByIndex("PUBLIC.IDX_BOOKS_COSTO_ID: COSTO <= ?1", plans.get(0));
+		assertSortedByIndex("PUBLIC.IDX_BOOKS_COSTO_ID: COSTO IS NULL", plans.get(1));
+
+		plans = plans(() -> bookRep.findPageAfter(BookSortField.TIPOLOGIA, true, null, 10L, all), params(10, all),
+				params(all));
+		assertSortedByIndex("PUBLIC.IDX_BOOKS_TIPOLOGIA_ID: TIPOLOGIA IS NULL", plans.get(0));
+		assertSortedByIndex("PUBLIC.IDX_BOOKS_TIPOLOGIA_ID", plans.get(1));
+
+		assertSortedByIndex("PUBLIC.IDX_BOOKS_COSTO_ID",
+				plan(() -> bookRep.findPageAfter(BookSortField.COSTO, false, null, null, limit), limit));
+	}
+
+}
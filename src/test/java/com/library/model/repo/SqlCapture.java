@@ -0,0 +1,42 @@
+package com.library.model.repo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Registra le istruzioni SQL generate da Hibernate nel thread corrente, mentre è attiva una
+ * cattura (vedi {@code hibernate.session_factory.statement_inspector} nelle proprietà dei
+ * test). Fuori da {@link #capture(Runnable)} non registra nulla.
+ */
+public class SqlCapture implements StatementInspector {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final ThreadLocal<List<String>> CAPTURED = new ThreadLocal<>();
+
+	@Override
+	public String inspect(String sql) {
+		List<String> captured = CAPTURED.get();
+		if (captured != null)
+			captured.add(sql);
+		return sql;
+	}
+
+	/**
+	 * @param action chiamate ai repository da eseguire
+	 * @return le istruzioni SQL eseguite da Hibernate durante l'azione, in ordine
+	 */
+	public static List<String> capture(Runnable action) {
+		List<String> captured = new ArrayList<>();
+		CAPTURED.set(captured);
+		try {
+			action.run();
+		} finally {
+			CAPTURED.remove();
+		}
+		return captured;
+	}
+
+}
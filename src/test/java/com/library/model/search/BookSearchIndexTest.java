@@ -0,0 +1,59 @@
+package com.library.model.search;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.library.model.event.BookChangedEvent;
+import com.library.model.event.BookSnapshot;
+
+public class BookSearchIndexTest {
+
+	private BookSearchIndex index;
+
+	@BeforeEach
+	public void setup() {
+		index = new BookSearchIndex();
+		index.onBookChanged(created(1, "Fantasy", "Tolkien", "EN", 10));
+		index.onBookChanged(created(2, "Fantasy", "Rowling", "EN", 20));
+		index.onBookChanged(created(3, "Horror", "King", "IT", 30));
+	}
+
+	private static BookSnapshot book(long id, String type, String author, String language, double price) {
+		return new BookSnapshot(id, "isbn-" + id, "Titolo " + id, type, author, language, price, null, 0, null);
+	}
+
+	private static BookChangedEvent created(long id, String type, String author, String language, double price) {
+		return new BookChangedEvent(null, book(id, type, author, language, price));
+	}
+
+	/**
+	 * Verifica che i filtri combinati restituiscano l'intersezione delle posting list,
+	 * senza distinzione tra maiuscole e minuscole.
+	 */
+	@Test
+	void testSearch_combinedFilters() {
+		assertArrayEquals(new int[] { 1, 2 }, index.search(new BookSearchCriteria(null, "fantasy", null, null, null)).toArray());
+		assertArrayEquals(new int[] { 2 }, index.search(new BookSearchCriteria(null, "FANTASY", "en", 15.0, 25.0)).toArray());
+		assertArrayEquals(new int[] { 3 }, index.search(new BookSearchCriteria("king", null, null, 30.0, null)).toArray());
+		assertEquals(0, index.search(new BookSearchCriteria("nessuno", null, null, null, null)).getCardinality());
+	}
+
+	/**
+	 * Verifica che modifica e cancellazione aggiornino l'indice in modo incrementale.
+	 */
+	@Test
+	void testSearch_incrementalUpdates() {
+		index.onBookChanged(new BookChangedEvent(book(1, "Fantasy", "Tolkien", "EN", 10), book(1, "Horror", "Tolkien", "EN", 12)));
+		assertArrayEquals(new int[] { 2 }, index.search(new BookSearchCriteria(null, "fantasy", null, null, null)).toArray());
+		assertArrayEquals(new int[] { 1, 3 }, index.search(new BookSearchCriteria(null, "horror", null, null, null)).toArray());
+		assertEquals(0, index.search(new BookSearchCriteria(null, null, null, 10.0, 10.0)).getCardinality());
+
+		index.onBookChanged(new BookChangedEvent(book(3, "Horror", "King", "IT", 30), null));
+		assertArrayEquals(new int[] { 1 }, index.search(new BookSearchCriteria(null, "horror", null, null, null)).toArray());
+		assertEquals(2, index.size());
+	}
+
+}
@@ -0,0 +1,113 @@
+package com.library.model.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.library.model.event.BookChangedEvent;
+import com.library.model.event.BookSnapshot;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class SuggestionTrieTest {
+
+	private SimpleMeterRegistry registry;
+	private SuggestionTrie trie;
+
+	@BeforeEach
+	public void setup() {
+		registry = new SimpleMeterRegistry();
+		trie = new SuggestionTrie(registry);
+	}
+
+	private static BookSnapshot book(long id, String title, String author) {
+		return new BookSnapshot(id, "isbn-" + id, title, "Romanzo", author, "IT", 10, null, 0, null);
+	}
+
+	private static List<String> texts(List<SuggestionTrie.Suggestion> suggestions) {
+		return suggestions.stream().map(SuggestionTrie.Suggestion::text).collect(Collectors.toList());
+	}
+
+	/**
+	 * Verifica che titoli e autori siano ordinati per numero di libri, senza distinzione di
+	 * maiuscole e accenti, anche quando il prefisso finisce a metà di un nodo.
+	 */
+	@Test
+	void testSuggest_ordersByBooks() {
+		trie.onBookChanged(new BookChangedEvent(null, book(1, "Il signore degli anelli", "Tolkien")));
+		trie.onBookChanged(new BookChangedEvent(null, book(2, "Lo Hobbit", "Tolkien")));
+		trie.onBookChanged(new BookChangedEvent(null, book(3, "Il Silmarillion", "Tolkien")));
+		trie.onBookChanged(new BookChangedEvent(null, book(4, "Guerra e pace", "Tolstòj")));
+		trie.onBookChanged(new BookChangedEvent(null, book(5, "Tolleranza zero", "Autore")));
+
+		List<SuggestionTrie.Suggestion> tol = trie.suggest("TOL", 10);
+		assertEquals(List.of("Tolkien", "Tolleranza zero", "Tolstòj"), texts(tol));
+		assertEquals(3, tol.get(0).weight());
+		assertTrue(tol.get(0).author());
+		assertEquals(List.of("Tolstòj"), texts(trie.suggest("tolsto", 10)));
+		assertEquals(List.of("Il signore degli anelli", "Il Silmarillion"), texts(trie.suggest("il si", 10)));
+		assertEquals(List.of("Il signore degli anelli"), texts(trie.suggest("il si", 1)));
+		assertTrue(trie.suggest("tolx", 10).isEmpty());
+		assertTrue(trie.suggest(" ", 10).isEmpty());
+		assertEquals(8, trie.size());
+	}
+
+	/**
+	 * Verifica con modifiche casuali che i migliori conservati nei nodi coincidano con quelli
+	 * calcolati da zero e che, tolti tutti i libri, il trie torni vuoto.
+	 */
+	@Test
+	void testSuggest_incrementalUpdatesMatchFullScan() {
+		Random random = new Random(7);
+		Map<Long, BookSnapshot> books = new HashMap<>();
+		for (long id = 1; id <= 2_000; id++) {
+			BookSnapshot b = book(id, "Libro " + random.nextInt(300), "Autore " + random.nextInt(50));
+			books.put(id, b);
+			trie.onBookChanged(new BookChangedEvent(null, b));
+		}
+		for (int i = 0; i < 1_000; i++) {
+			long id = 1 + random.nextInt(2_000);
+			BookSnapshot before = books.get(id);
+			BookSnapshot after = random.nextBoolean() ? null
+					: book(id, "Libro " + random.nextInt(300), "Autore " + random.nextInt(50));
+			trie.onBookChanged(new BookChangedEvent(before, after));
+			if (after == null)
+				books.remove(id);
+			else
+				books.put(id, after);
+		}
+
+		for (String prefix : List.of("l", "libro 1", "libro 12", "autore", "autore 4", "a")) {
+			Map<String, Long> weights = new HashMap<>();
+			for (BookSnapshot b : books.values()) {
+				for (String text : List.of(b.titolo(), b.autore()))
+					if (text.toLowerCase().startsWith(prefix))
+						weights.merge(text, 1L, Long::sum);
+			}
+			List<String> expected = weights.entrySet().stream()
+					.sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+					.limit(SuggestionTrie.TOP_K).map(Map.Entry::getKey).collect(Collectors.toList());
+			assertEquals(expected, texts(trie.suggest(prefix, SuggestionTrie.TOP_K)), prefix);
+		}
+
+		List<BookSnapshot> remaining = new ArrayList<>(books.values());
+		remaining.sort(Comparator.comparing(BookSnapshot::id));
+		for (BookSnapshot b : remaining)
+			trie.onBookChanged(new BookChangedEvent(b, null));
+		assertEquals(0, trie.size());
+		assertTrue(trie.suggest("l", 10).isEmpty());
+		assertEquals(new SuggestionTrie(new SimpleMeterRegistry()).sizeInBytes(), trie.sizeInBytes());
+		assertEquals(trie.sizeInBytes(), registry.get(SuggestionTrie.BYTES_METRIC).gauge().value());
+	}
+
+}
@@ -0,0 +1,85 @@
+package com.library.model.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.library.model.event.BookChangedEvent;
+import com.library.model.event.BookSnapshot;
+
+public class TrigramIndexTest {
+
+	private TrigramIndex index;
+
+	@BeforeEach
+	public void setup() {
+		index = new TrigramIndex();
+		index.onBookChanged(created(1, "Harry Potter e la pietra filosofale", "J. K. Rowling"));
+		index.onBookChanged(created(2, "Il signore degli anelli", "J. R. R. Tolkien"));
+		index.onBookChanged(created(3, "Il nome della rosa", "Umberto Eco"));
+		index.onBookChanged(created(4, "La coscienza di Zeno", "Italo Svevo"));
+	}
+
+	private static BookSnapshot book(long id, String title, String author) {
+		return new BookSnapshot(id, "isbn-" + id, title, "Romanzo", author, "IT", 10, null, 0, null);
+	}
+
+	private static BookChangedEvent created(long id, String title, String author) {
+		return new BookChangedEvent(null, book(id, title, author));
+	}
+
+	private int first(String query) {
+		List<TrigramIndex.Match> matches = index.search(query, 5);
+		assertTrue(!matches.isEmpty(), "nessun risultato per " + query);
+		return matches.get(0).id();
+	}
+
+	/**
+	 * Verifica che errori di battitura, accenti e maiuscole non impediscano di trovare il
+	 * libro, cercando sia nel titolo sia nell'autore.
+	 */
+	@Test
+	void testSearch_toleratesTypos() {
+		assertEquals(1, first("hary poter"));
+		assertEquals(2, first("signor degli anneli"));
+		assertEquals(3, first("Umberto Ecò"));
+		assertEquals(4, first("svevo"));
+		assertEquals(4, first("cosienza"));
+		assertEquals(0, index.search("xyzw", 5).size());
+		assertEquals(0, index.search("  ", 5).size());
+	}
+
+	/**
+	 * Verifica che la corrispondenza esatta abbia punteggio più alto di quella con errori.
+	 */
+	@Test
+	void testSearch_ranksExactFirst() {
+		index.onBookChanged(created(5, "Il nome della rose", "Autore"));
+
+		List<TrigramIndex.Match> matches = index.search("nome della rosa", 5);
+		assertEquals(3, matches.get(0).id());
+		assertEquals(5, matches.get(1).id());
+		assertTrue(matches.get(0).score() > matches.get(1).score());
+		assertEquals(1.0, matches.get(0).score());
+	}
+
+	/**
+	 * Verifica che modifica e cancellazione aggiornino l'indice in modo incrementale.
+	 */
+	@Test
+	void testSearch_incrementalUpdates() {
+		index.onBookChanged(new BookChangedEvent(book(1, "Harry Potter e la pietra filosofale", "J. K. Rowling"),
+				book(1, "Harry Potter e la camera dei segreti", "J. K. Rowling")));
+		assertEquals(1, first("camera segreti"));
+		assertTrue(index.search("pietra filosofale", 5).stream().noneMatch(m -> m.id() == 1));
+
+		index.onBookChanged(new BookChangedEvent(book(3, "Il nome della rosa", "Umberto Eco"), null));
+		assertTrue(index.search("umberto eco", 5).isEmpty());
+		assertEquals(3, index.size());
+	}
+
+}
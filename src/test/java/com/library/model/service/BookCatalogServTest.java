@@ -0,0 +1,147 @@
+package com.library.model.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.library.model.dto.BookBatchReportDto;
+import com.library.model.dto.BookBatchResultDto;
+import com.library.model.dto.BookPageDto;
+import com.library.model.dto.LibroDtoIn;
+import com.library.model.dto.LibroDtoOut;
+import com.library.model.exception.InvalidPageTokenException;
+import com.library.model.repo.BookRepository;
+
+import jakarta.persistence.EntityManagerFactory;
+
+@SpringBootTest
+public class BookCatalogServTest {
+
+	@Autowired
+	private BookCatalogServ catalog;
+
+	@Autowired
+	private BookServ bookServ;
+
+	@Autowired
+	private EntityManagerFactory emf;
+
+	@Autowired
+	private BookRepository bookRep;
+
+	private List<LibroDtoOut> walk(String sort, String direction, int size) {
+		List<LibroDtoOut> all = new ArrayList<>();
+		String token = null;
+		do {
+			BookPageDto page = catalog.listBooks(sort, direction, size, token);
+			all.addAll(page.getContent());
+			token = page.getNextToken();
+		} while (token != null);
+		return all;
+	}
+
+	private static String token(String json) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Gli ISBN inesistenti sono riportati nella propria voce, l'ordine (con i duplicati) è
+	 * quello della richiesta e serve una query ogni {@value BookCatalogServ#BATCH_CHUNK} ISBN.
+	 */
+	@Test
+	public void testFindBooksReportsMissingPerItem() {
+		LibroDtoIn a = bookServ.createDtoInParam("Multipla uno", "Saggio", "Autore", "IT", 10);
+		LibroDtoIn b = bookServ.createDtoInParam("Multipla due", "Saggio", "Autore", "IT", 11);
+
+		List<String> isbns = new ArrayList<>(List.of(b.getIdentificativoIsbn(), "inesistente", a.getIdentificativoIsbn(),
+				b.getIdentificativoIsbn()));
+		for (int i = 0; i < BookCatalogServ.BATCH_CHUNK; i++)
+			isbns.add("mancante-" + i);
+
+		Statistics stats = emf.unwrap(SessionFactory.class).getStatistics();
+		stats.clear();
+		BookBatchReportDto report = catalog.findBooks(isbns);
+		assertEquals(2, stats.getPrepareStatementCount());
+
+		assertEquals(isbns.size(), report.getRequested());
+		assertEquals(3, report.getFound());
+		assertEquals(isbns.size() - 3, report.getMissing());
+
+		List<BookBatchResultDto> results = report.getResults();
+		assertEquals("Multipla due", results.get(0).getBook().getTitolo());
+		assertFalse(results.get(1).isFound());
+		assertNull(results.get(1).getBook());
+		assertEquals(BookCatalogServ.NOT_FOUND, results.get(1).getReason());
+		assertEquals("Multipla uno", results.get(2).getBook().getTitolo());
+		assertTrue(results.get(3).isFound());
+		assertEquals("inesistente", results.get(1).getIdentificativoIsbn());
+	}
+
+	/**
+	 * Scorrendo tutte le pagine ogni libro compare una sola volta, anche con valori uguali
+	 * a cavallo tra due pagine e con valori nulli, che vengono per primi in ordine crescente e
+	 * per ultimi in ordine decrescente.
+	 */
+	@Test
+	public void testListBooksWalksEveryPageWithTiesAndNulls() {
+		for (int i = 0; i < 3; i++) {
+			bookServ.createDtoInParam("Pagina nulla " + i, null, "Autore", "IT", 10);
+			bookServ.createDtoInParam("Pagina pari " + i, "Pari", "Autore", "IT", 10);
+		}
+		bookServ.createDtoInParam("Pagina ultima", "Zeta", "Autore", "IT", 10);
+
+		List<LibroDtoOut> asc = walk("tipologia", "asc", 2);
+		List<String> isbns = asc.stream().map(LibroDtoOut::getIdentificativoIsbn).collect(Collectors.toList());
+		assertEquals(bookRep.count(), isbns.size());
+		assertEquals(isbns.size(), new HashSet<>(isbns).size());
+
+		int nulls = (int) asc.stream().filter(b -> b.getTipologia() == null).count();
+		assertTrue(nulls >= 3);
+		for (int i = 0; i < asc.size(); i++) {
+			assertEquals(i < nulls, asc.get(i).getTipologia() == null);
+			if (i > nulls)
+				assertTrue(asc.get(i - 1).getTipologia().compareTo(asc.get(i).getTipologia()) <= 0);
+		}
+
+		List<String> desc = walk("tipologia", "desc", 2).stream().map(LibroDtoOut::getIdentificativoIsbn)
+				.collect(Collectors.toList());
+		Collections.reverse(desc);
+		assertEquals(isbns, desc);
+	}
+
+	/**
+	 * Un token modificato o non coerente con l'ordinamento viene rifiutato.
+	 */
+	@Test
+	public void testListBooksRejectsTamperedToken() {
+		bookServ.createDtoInParam("Pagina token uno", "Saggio", "Autore", "IT", 10);
+		bookServ.createDtoInParam("Pagina token due", "Saggio", "Autore", "IT", 11);
+		String valid = catalog.listBooks("costo", "asc", 1, null).getNextToken();
+
+		assertThrows(InvalidPageTokenException.class, () -> catalog.listBooks("titolo", "asc", 1, valid));
+		assertThrows(InvalidPageTokenException.class, () -> catalog.listBooks("costo", "desc", 1, valid));
+		assertThrows(InvalidPageTokenException.class, () -> catalog.listBooks("costo", "asc", 1, "non-base64!"));
+		String costo = "{\"s\":\"COSTO\",\"d\":\"asc\",";
+		// valore non numerico, valore presente ma indicato come nullo, valore mancante
+		for (String json : List.of(costo + "\"v\":\"abc\",\"i\":1}", costo + "\"v\":\"1\",\"n\":true,\"i\":1}",
+				costo + "\"i\":1}"))
+			assertThrows(InvalidPageTokenException.class, () -> catalog.listBooks("costo", "asc", 1, token(json)));
+	}
+
+}
@@ -0,0 +1,128 @@
+package com.library.model.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.model.activity.ActivityLog;
+import com.library.model.event.BookSnapshot;
+import com.library.model.io.ExportFormat;
+import com.library.model.repo.BookRepository;
+
+public class BookExportServTest {
+
+	@InjectMocks
+	private BookExportServ exportServ;
+
+	@Mock
+	private BookRepository bookRep;
+
+	@Mock
+	private ActivityLog activity;
+
+	@Spy
+	private ObjectMapper mapper = new ObjectMapper();
+
+	@BeforeEach
+	public void setup() {
+		MockitoAnnotations.openMocks(this);
+	}
+
+	private static BookSnapshot book(int i, String titolo, String proprietario) {
+		return new BookSnapshot((long) i, "isbn-" + i, titolo, "Saggio", "Autore", "IT", 10.5, proprietario, 0, null);
+	}
+
+	private static String[] lines(ByteArrayOutputStream out) {
+		return out.toString(StandardCharsets.UTF_8).split("\n");
+	}
+
+	/**
+	 * Verifica intestazione, campi tra virgolette e proprietario ("Non venduto" se assente).
+	 */
+	@Test
+	void testExportCsv_quotingAndOwner() throws Exception {
+		when(bookRep.streamAllSnapshots()).thenReturn(List.of(book(1, "Semplice", "ada@email.it"),
+				book(2, "Titolo, con \"virgolette\"", null)).stream());
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertEquals(2, exportServ.exportBooks(ExportFormat.CSV, out));
+
+		String[] lines = lines(out);
+		assertEquals(3, lines.length);
+		assertEquals(String.join(",", BookExportServ.CSV_HEADER), lines[0]);
+		assertEquals("isbn-1,Semplice,Saggio,Autore,IT,10.5,ada@email.it", lines[1]);
+		assertEquals("isbn-2,\"Titolo, con \"\"virgolette\"\"\",Saggio,Autore,IT,10.5," + BookServ.NOT_SOLD, lines[2]);
+	}
+
+	/**
+	 * Verifica che ogni riga NDJSON sia un oggetto JSON completo, senza separatori tra righe.
+	 */
+	@Test
+	void testExportNdjson_oneObjectPerLine() throws Exception {
+		when(bookRep.streamAllSnapshots()).thenReturn(List.of(book(1, "Primo\nriga", "ada@email.it"),
+				book(2, "Secondo", null)).stream());
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertEquals(2, exportServ.exportBooks(ExportFormat.NDJSON, out));
+
+		String[] lines = lines(out);
+		assertEquals(2, lines.length);
+		JsonNode first = mapper.readTree(lines[0]);
+		assertEquals("isbn-1", first.get("identificativoIsbn").asText());
+		assertEquals("Primo\nriga", first.get("titolo").asText());
+		assertEquals(10.5, first.get("costo").asDouble());
+		assertEquals("ada@email.it", first.get("proprietario").asText());
+		assertEquals(BookServ.NOT_SOLD, mapper.readTree(lines[1]).get("proprietario").asText());
+	}
+
+	/**
+	 * Verifica che l'esportazione scriva sul flusso a blocchi mentre legge le righe, invece di
+	 * accumulare l'intero catalogo, e che il cursore venga chiuso.
+	 */
+	@Test
+	void testExport_streamsInChunks() throws Exception {
+		int total = BookExportServ.FLUSH_EVERY * 2 + 5;
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		AtomicInteger writtenBeforeChunk = new AtomicInteger(-1);
+		AtomicInteger writtenBeforeLast = new AtomicInteger(-1);
+		AtomicBoolean closed = new AtomicBoolean();
+
+		for (ExportFormat format : ExportFormat.values()) {
+			out.reset();
+			closed.set(false);
+			when(bookRep.streamAllSnapshots()).thenReturn(IntStream.rangeClosed(1, total).mapToObj(i -> {
+				if (i == BookExportServ.FLUSH_EVERY + 1)
+					writtenBeforeChunk.set(out.size());
+				if (i == total)
+					writtenBeforeLast.set(out.size());
+				return book(i, "Titolo " + i, null);
+			}).onClose(() -> closed.set(true)));
+
+			assertEquals(total, exportServ.exportBooks(format, out));
+
+			// il primo blocco è già sul flusso quando viene letta la riga successiva
+			assertTrue(writtenBeforeChunk.get() > 0, format.name());
+			assertTrue(writtenBeforeLast.get() > writtenBeforeChunk.get(), format.name());
+			assertTrue(writtenBeforeLast.get() < out.size(), format.name());
+			assertTrue(closed.get(), format.name());
+			assertEquals(format == ExportFormat.CSV ? total + 1 : total, lines(out).length);
+		}
+	}
+
+}
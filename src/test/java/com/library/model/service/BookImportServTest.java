@@ -0,0 +1,110 @@
+package com.library.model.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.library.model.dto.ImportRejectDto;
+import com.library.model.dto.ImportReportDto;
+import com.library.model.read.LibraryReadModel;
+
+@SpringBootTest
+public class BookImportServTest {
+
+	@Autowired
+	private BookImportServ importServ;
+
+	@Autowired
+	private NamedParameterJdbcTemplate jdbc;
+
+	@Autowired
+	private LibraryReadModel readModel;
+
+	private static String csv(String... rows) {
+		return "identificativoIsbn,titolo,tipologia,autore,linguaggio,costo\n" + String.join("\n", rows) + "\n";
+	}
+
+	private String title(String isbn) {
+		return jdbc.getJdbcTemplate().queryForObject("select titolo from books where identificativo_isbn = ?",
+				String.class, isbn);
+	}
+
+	/**
+	 * Import a blocchi di due righe: duplicato in un blocco successivo, prezzo non valido e un
+	 * ISBN inserito da un'altra richiesta dopo la verifica. Il blocco in conflitto viene
+	 * inserito riga per riga e l'import prosegue. I libri importati arrivano al modello di
+	 * lettura con gli eventi di creazione, anche quelli inseriti riga per riga.
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testImportAcrossChunksWithRejectsAndConcurrentInsert() throws Exception {
+		BookImportServ target = AopTestUtils.getTargetObject(importServ);
+		NamedParameterJdbcTemplate concurrent = spy(jdbc);
+		doAnswer(inv -> {
+			Object result = inv.callRealMethod();
+			Collection<String> isbns = (Collection<String>) ((Map<String, ?>) inv.getArgument(1)).get("isbns");
+			// un'altra istanza inserisce lo stesso ISBN tra la verifica e il batch
+			if (isbns.contains("imp-5"))
+				jdbc.getJdbcTemplate().update("insert into books (identificativo_isbn, titolo, tipologia, autore,"
+						+ " linguaggio, costo) values ('imp-5', 'Concorrente', 'Saggio', 'Autore', 'IT', 5)");
+			return result;
+		}).when(concurrent).queryForList(anyString(), anyMap(), eq(String.class));
+		ReflectionTestUtils.setField(target, "jdbc", concurrent);
+		ReflectionTestUtils.setField(target, "chunkSize", 2);
+		try {
+			String file = csv("imp-1,Import uno,Saggio,Autore,IT,10",
+					"imp-2,Import due,Saggio,Autore,IT,11",
+					"imp-1,Import doppio,Saggio,Autore,IT,12",
+					"imp-3,Import prezzo,Saggio,Autore,IT,abc",
+					"imp-4,Import quattro,Saggio,Autore,IT,14",
+					"imp-5,Import cinque,Saggio,Autore,IT,15",
+					"imp-6,Import sei,Saggio,Autore,IT,16");
+
+			ImportReportDto report = importServ
+					.importCsv(new ByteArrayInputStream(file.getBytes(StandardCharsets.UTF_8)));
+
+			assertEquals(7, report.getRowsRead());
+			assertEquals(4, report.getImported());
+			assertEquals(3, report.getRejected());
+			// gli errori di formato sono scartati alla lettura, i duplicati all'inserimento del blocco
+			assertEquals(List.of(5L, 4L, 7L),
+					report.getRejects().stream().map(ImportRejectDto::getRow).collect(Collectors.toList()));
+			assertEquals(List.of("imp-3", "imp-1", "imp-5"),
+					report.getRejects().stream().map(ImportRejectDto::getKey).collect(Collectors.toList()));
+			assertEquals("Prezzo non numerico: abc", report.getRejects().get(0).getReason());
+			assertEquals("Libro già presente nel sistema", report.getRejects().get(1).getReason());
+			assertEquals("Libro già presente nel sistema", report.getRejects().get(2).getReason());
+
+			assertEquals("Import uno", title("imp-1"));
+			assertEquals("Import quattro", title("imp-4"));
+			assertEquals("Concorrente", title("imp-5"));
+			assertEquals("Import sei", title("imp-6"));
+
+			assertNotNull(readModel.book("Import uno", "imp-1"));
+			assertNotNull(readModel.book("Import quattro", "imp-4"));
+			assertNotNull(readModel.book("Import sei", "imp-6"));
+		} finally {
+			ReflectionTestUtils.setField(target, "jdbc", jdbc);
+			ReflectionTestUtils.setField(target, "chunkSize", 5000);
+		}
+	}
+
+}
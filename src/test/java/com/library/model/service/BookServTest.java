@@ -3,26 +3,48 @@ package com.library.model.service;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import com.library.model.activity.ActivityLog;
+import com.library.model.cache.LibraryCache;
+import com.library.model.concurrency.SingleFlight;
 import com.library.model.dto.LibroDtoIn;
 import com.library.model.dto.LibroDtoOut;
 import com.library.model.entity.Book;
 import com.library.model.exception.BookAlreadyExistsException;
 import com.library.model.exception.BookNotFoundException;
 import com.library.model.exception.InvalidPriceException;
+import com.library.model.isbn.IsbnAllocator;
+import com.library.model.read.LibraryReadModel;
 import com.library.model.repo.BookRepository;
+import com.library.model.repo.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 @SpringBootTest
 public class BookServTest {
@@ -33,14 +55,39 @@ public class BookServTest {
 	@Mock
 	private BookRepository bookRep;
 
+	@Mock
+	private UserRepository userRep;
+
+	@Mock
+	private LibraryCache cache;
+
+	@Mock
+	private ApplicationEventPublisher events;
+
+	@Mock
+	private ActivityLog activity;
+
+	@Mock
+	private IsbnAllocator isbnAllocator;
+
+	@Mock
+	private LibraryReadModel readModel;
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@Spy
+	private SingleFlight singleFlight = new SingleFlight(registry);
+
 	@BeforeEach
 	public void setup() {
 		MockitoAnnotations.openMocks(this);
+		// senza contesto Spring non c'è proxy: le chiamate interne restano sull'istanza
+		ReflectionTestUtils.setField(bookServ, "self", bookServ);
 	}
 
 	/**
 	 * Verifica che la creazione di un libro con parametri validi:
-	 * - invochi `findByIdentificativoIsbn` che restituisce null (libro non esistente)
+	 * - usi l'ISBN assegnato da `IsbnAllocator`, senza verificarlo con `findByIdentificativoIsbn`
 	 * - ritorni un DTO non nullo con titolo corretto
 	 * - salvi il libro tramite `bookRep.save(...)`
 	 */
@@ -52,17 +99,16 @@ public class BookServTest {
 		String language = "EN";
 		double price = 10.0;
 		
-//		non mi piace vedere il Warning
-		@SuppressWarnings("unused")
-		String isbn = "Te-FAE";
-		
-		when(bookRep.findByIdentificativoIsbn(anyString())).thenReturn(null);
+		String isbn = "2000000010014";
+		when(isbnAllocator.next()).thenReturn(isbn);
 
 		LibroDtoIn dto = bookServ.createDtoInParam(title, type, author, language, price);
 
 		assertNotNull(dto);
 		assertEquals(title, dto.getTitolo());
+		assertEquals(isbn, dto.getIdentificativoIsbn());
 		verify(bookRep).save(any(Book.class));
+		verify(bookRep, never()).findByIdentificativoIsbn(anyString());
 	}
 
 	/**
@@ -78,12 +124,13 @@ public class BookServTest {
 
 	/**
 	 * Verifica la gestione del caso in cui si prova a creare un libro già esistente:
-	 * - `findByIdentificativoIsbn(...)` restituisce un Book non nullo
+	 * - `bookRep.save(...)` viola l'indice univoco sull'ISBN
 	 * - viene sollevata un'eccezione BookAlreadyExistsException
 	 */
 	@Test
 	void testCreateDtoInParam_bookAlreadyExists() {
-		when(bookRep.findByIdentificativoIsbn(anyString())).thenReturn(new Book());
+		when(isbnAllocator.next()).thenReturn("2000000010014");
+		when(bookRep.save(any(Book.class))).thenThrow(new DataIntegrityViolationException("ux_books_isbn"));
 		assertThrows(BookAlreadyExistsException.class, () -> {
 			bookServ.createDtoInParam("Title", "Type", "Author", "EN", 20.0);
 		});
@@ -93,7 +140,7 @@ public class BookServTest {
 	 * Verifica la modifica di un libro esistente:
 	 * - `findByIdentificativoIsbn(...)` restituisce un Book
 	 * - vengono aggiornati campi come titolo e prezzo
-	 * - viene invocato `bookRep.save(...)`
+	 * - viene invocato `bookRep.saveAndFlush(...)`
 	 * - il DTO restituito riflette la modifica del titolo
 	 */
 	@Test
@@ -108,7 +155,7 @@ public class BookServTest {
 		LibroDtoOut result = bookServ.modifyBookParam(isbn, "NewTitle", "Type", "Author", "EN", 15.0);
 
 		assertEquals("NewTitle", result.getTitolo());
-		verify(bookRep).save(any(Book.class));
+		verify(bookRep).saveAndFlush(any(Book.class));
 	}
 
 	/**
@@ -188,4 +235,58 @@ public class BookServTest {
 		assertThrows(BookNotFoundException.class, () -> bookServ.deleteBook("missing"));
 	}
 	
+	/**
+	 * Verifica che le richieste concorrenti dello stesso libro non presente nel modello di
+	 * lettura eseguano una sola query: la query resta in corso finché tutte le altre
+	 * richieste non si sono accodate.
+	 */
+	@Test
+	void testFindBook_concurrentMissesShareOneQuery() throws Exception {
+		int callers = 16;
+		Book book = Book.builder().titolo("Promo").identificativoIsbn("isbn-promo").costo(9.0).build();
+		when(bookRep.findByTitoloAndIdentificativoIsbn("Promo", "isbn-promo")).thenAnswer(inv -> {
+			// yield e non onSpinWait: con un solo carrier gli altri virtual thread devono poter partire
+			while (registry.counter("library.singleflight.coalesced", "group", "findBook").count() < callers - 1)
+				Thread.yield();
+			return book;
+		});
+
+		List<Future<LibroDtoOut>> results = new ArrayList<>();
+		try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int i = 0; i < callers; i++)
+				results.add(pool.submit(() -> bookServ.findBook("Promo", "isbn-promo")));
+			for (Future<LibroDtoOut> r : results)
+				assertEquals("Promo", r.get(10, TimeUnit.SECONDS).getTitolo());
+		}
+		verify(bookRep, times(1)).findByTitoloAndIdentificativoIsbn("Promo", "isbn-promo");
+	}
+
+	/**
+	 * Le richieste accorpate condividono la query ma non il DTO: la modifica del risultato da
+	 * parte di un chiamante non si vede in quello degli altri.
+	 */
+	@Test
+	void testFindBook_coalescedCallersGetOwnCopy() throws Exception {
+		Book book = Book.builder().titolo("Copia").identificativoIsbn("isbn-copia").costo(9.0).build();
+		when(bookRep.findByTitoloAndIdentificativoIsbn("Copia", "isbn-copia")).thenAnswer(inv -> {
+			while (registry.counter("library.singleflight.coalesced", "group", "findBook").count() < 1)
+				Thread.yield();
+			return book;
+		});
+
+		try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+			Future<LibroDtoOut> first = pool.submit(() -> bookServ.findBook("Copia", "isbn-copia"));
+			Future<LibroDtoOut> second = pool.submit(() -> bookServ.findBook("Copia", "isbn-copia"));
+			LibroDtoOut a = first.get(10, TimeUnit.SECONDS);
+			LibroDtoOut b = second.get(10, TimeUnit.SECONDS);
+
+			assertNotSame(a, b);
+			a.setProprietario("scrittore@email.it");
+			a.setTitolo("Modificato");
+			assertEquals(BookServ.NOT_SOLD, b.getProprietario());
+			assertEquals("Copia", b.getTitolo());
+		}
+		verify(bookRep, times(1)).findByTitoloAndIdentificativoIsbn("Copia", "isbn-copia");
+	}
+
 }
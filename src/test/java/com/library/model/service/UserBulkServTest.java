@@ -0,0 +1,87 @@
+package com.library.model.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.library.model.dto.UserBulkReportDto;
+import com.library.model.dto.UserBulkResultDto;
+import com.library.model.dto.UserDtoIn;
+import com.library.model.repo.UserRepository;
+
+@SpringBootTest
+public class UserBulkServTest {
+
+	@Autowired
+	private UserBulkServ bulk;
+
+	@Autowired
+	private UserServ userServ;
+
+	@Autowired
+	private UserRepository userRep;
+
+	private static UserDtoIn user(String email) {
+		return new UserDtoIn("Nome", "Cognome", email);
+	}
+
+	@Test
+	public void testRegisterAllReportsEveryEntry() {
+		userServ.createDtoin("Gia", "Presente", "presente@bulk.it");
+
+		UserBulkReportDto report = bulk.registerAll(Arrays.asList(user("uno@bulk.it"), user("presente@bulk.it"),
+				user("uno@bulk.it"), new UserDtoIn("Nome", " ", "vuoto@bulk.it"), null, user("due@bulk.it")));
+
+		assertEquals(6, report.getReceived());
+		assertEquals(2, report.getCreated());
+		assertEquals(4, report.getRejected());
+		assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L),
+				report.getResults().stream().map(UserBulkResultDto::getRow).collect(Collectors.toList()));
+		assertEquals(List.of(true, false, false, false, false, true),
+				report.getResults().stream().map(UserBulkResultDto::isCreated).collect(Collectors.toList()));
+		assertNull(report.getResults().get(0).getReason());
+		assertEquals("Email già registrata", report.getResults().get(1).getReason());
+		assertEquals("Email duplicata nell'input", report.getResults().get(2).getReason());
+		assertTrue(userRep.existsByEmail("uno@bulk.it"));
+		assertTrue(userRep.existsByEmail("due@bulk.it"));
+		assertFalse(userRep.existsByEmail("vuoto@bulk.it"));
+	}
+
+	@Test
+	public void testRegisterCsvAcrossChunks() throws Exception {
+		UserBulkServ target = AopTestUtils.getTargetObject(bulk);
+		ReflectionTestUtils.setField(target, "chunkSize", 2);
+		try {
+			String csv = "email,nome,cognome\n"
+					+ "a@csv.it,Anna,Bianchi\n"
+					+ "b@csv.it,Bruno,Verdi\n"
+					+ "a@csv.it,Anna,Doppia\n"
+					+ "c@csv.it,Carla,Neri\n";
+
+			UserBulkReportDto report = bulk.registerCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+			assertEquals(4, report.getReceived());
+			assertEquals(3, report.getCreated());
+			// il duplicato è nel blocco successivo: viene trovato dalla verifica sul database
+			assertEquals(4, report.getResults().get(2).getRow());
+			assertEquals("Email già registrata", report.getResults().get(2).getReason());
+			assertEquals("Neri", userRep.findByEmail("c@csv.it").getCognome());
+		} finally {
+			ReflectionTestUtils.setField(target, "chunkSize", 5000);
+		}
+	}
+
+}
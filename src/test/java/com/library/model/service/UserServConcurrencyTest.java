@@ -0,0 +1,118 @@
+package com.library.model.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.library.model.dto.LibroDtoIn;
+import com.library.model.exception.BookAlreadyOwnedException;
+import com.library.model.exception.ConcurrentUpdateException;
+import com.library.model.exception.MaxBooksException;
+
+@SpringBootTest
+public class UserServConcurrencyTest {
+
+	private static final int THREADS = 8;
+
+	@Autowired
+	private UserServ userServ;
+
+	@Autowired
+	private BookServ bookServ;
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	/**
+	 * Esegue i task in parallelo, partendo tutti insieme, e restituisce quanti sono riusciti.
+	 * Gli unici errori ammessi sono i conflitti previsti.
+	 */
+	private static int runConcurrently(List<Callable<Object>> tasks) throws Exception {
+
+		ExecutorService pool = Executors.newFixedThreadPool(tasks.size());
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicInteger ok = new AtomicInteger();
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (Callable<Object> task : tasks) {
+				futures.add(pool.submit(() -> {
+					start.await();
+					try {
+						task.call();
+						ok.incrementAndGet();
+					} catch (BookAlreadyOwnedException | ConcurrentUpdateException | MaxBooksException e) {
+						// conflitto atteso
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> f : futures)
+				f.get();
+		} finally {
+			pool.shutdown();
+		}
+		return ok.get();
+	}
+
+	/**
+	 * Verifica che, con più utenti che acquistano lo stesso libro nello stesso momento,
+	 * il libro venga assegnato a uno solo di loro.
+	 */
+	@Test
+	void testBookAssignment_noDoubleAssignment() throws Exception {
+
+		LibroDtoIn book = bookServ.createDtoInParam("Conteso", "Thriller", "Autore", "IT", 15);
+		List<Callable<Object>> tasks = new ArrayList<>();
+		for (int i = 0; i < THREADS; i++) {
+			String email = "conteso" + i + "@email.it";
+			userServ.createDtoin("Nome", "Cognome", email);
+			tasks.add(() -> userServ.bookAssignment(email, "Conteso", book.getIdentificativoIsbn()));
+		}
+
+		assertEquals(1, runConcurrently(tasks));
+
+		int owners = 0;
+		for (int i = 0; i < THREADS; i++)
+			owners += userServ.findUser("conteso" + i + "@email.it").getBooksInPossession().size();
+		assertEquals(1, owners);
+	}
+
+	/**
+	 * Verifica che acquisti concorrenti dello stesso utente non superino il limite di 5 libri
+	 * e che il contatore {@code loans} resti allineato ai libri assegnati.
+	 */
+	@Test
+	void testBookAssignment_limitUnderContention() throws Exception {
+
+		String email = "limite@email.it";
+		userServ.createDtoin("Nome", "Cognome", email);
+		List<Callable<Object>> tasks = new ArrayList<>();
+		for (int i = 0; i < THREADS; i++) {
+			String title = i + " limite";
+			LibroDtoIn book = bookServ.createDtoInParam(title, "Saggio", "Autore", "IT", 10);
+			tasks.add(() -> userServ.bookAssignment(email, title, book.getIdentificativoIsbn()));
+		}
+
+		int assigned = runConcurrently(tasks);
+		int owned = userServ.findUser(email).getBooksInPossession().size();
+
+		assertTrue(owned <= 5, "libri in possesso: " + owned);
+		assertEquals(assigned, owned);
+		assertEquals(owned, jdbc.queryForObject("select loans from users where email = ?", Integer.class, email));
+	}
+
+}
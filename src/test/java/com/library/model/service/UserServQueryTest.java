@@ -0,0 +1,156 @@
+package com.library.model.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+
+import com.library.model.cache.LibraryCache;
+import com.library.model.dto.LibroDtoIn;
+import com.library.model.dto.LibroDtoOut;
+import com.library.model.dto.UserDtoOut;
+import com.library.model.exception.BookNotInPossessionException;
+import com.library.model.read.LibraryReadModel;
+import com.library.model.repo.BookRepository;
+import com.library.model.repo.UserRepository;
+
+import jakarta.persistence.EntityManagerFactory;
+
+@SpringBootTest
+public class UserServQueryTest {
+
+	private static final String EMAIL = "lettore@email.it";
+
+	@Autowired
+	private UserServ userServ;
+
+	@Autowired
+	private BookServ bookServ;
+
+	@Autowired
+	private UserRepository userRep;
+
+	@Autowired
+	private BookRepository bookRep;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Autowired
+	private LibraryReadModel readModel;
+
+	@Autowired
+	private EntityManagerFactory emf;
+
+	private Statistics stats;
+
+	@BeforeEach
+	public void setup() {
+		if (!userRep.existsByEmail(EMAIL)) {
+			userServ.createDtoin("Mario", "Rossi", EMAIL);
+			for (String title : new String[] { "Primo", "Secondo", "Terzo" }) {
+				LibroDtoIn b = bookServ.createDtoInParam(title, "Fantasy", "Autore", "IT", 10);
+				userServ.bookAssignment(EMAIL, title, b.getIdentificativoIsbn());
+			}
+		}
+		cacheManager.getCache(LibraryCache.USER_CACHE).clear();
+		stats = emf.unwrap(SessionFactory.class).getStatistics();
+		stats.clear();
+	}
+
+	/**
+	 * Verifica che utente e libri in possesso vengano letti dal modello di lettura, senza
+	 * query; senza modello (es. prima dell'avvio completo) basta una sola query,
+	 * indipendentemente dal numero di libri.
+	 */
+	@Test
+	void testFindUser_singleStatement() {
+		UserDtoOut dto = userServ.findUser(EMAIL);
+
+		assertEquals(3, dto.getBooksInPossession().size());
+		assertEquals(EMAIL, dto.getBooksInPossession().get(0).getProprietario());
+		assertEquals(0, stats.getPrepareStatementCount());
+
+		// utente assente dal modello (es. invalidato da un'altra istanza): lettura dal database
+		readModel.forgetUser(EMAIL);
+		cacheManager.getCache(LibraryCache.USER_CACHE).evict(EMAIL);
+		try {
+			dto = userServ.findUser(EMAIL);
+			assertEquals(3, dto.getBooksInPossession().size());
+			assertEquals(EMAIL, dto.getBooksInPossession().get(0).getProprietario());
+			assertEquals(1, stats.getPrepareStatementCount());
+		} finally {
+			readModel.rebuild();
+		}
+	}
+
+	/**
+	 * Verifica che la modifica dell'utente non carichi i libri con query separate:
+	 * una select con join e un update.
+	 */
+	@Test
+	void testModifyUser_noCollectionQueries() {
+		UserDtoOut dto = userServ.modifyUserParams("Maria", null, EMAIL);
+
+		assertEquals(3, dto.getBooksInPossession().size());
+		assertEquals(0, stats.getCollectionFetchCount());
+		assertEquals(2, stats.getPrepareStatementCount());
+	}
+
+	private List<String> userWithBooks(String email, String... titles) {
+		userServ.createDtoin("Anna", "Verdi", email);
+		List<String> isbns = new ArrayList<>();
+		for (String title : titles) {
+			LibroDtoIn b = bookServ.createDtoInParam(title, "Saggio", "Rilascio", "IT", 10);
+			userServ.bookAssignment(email, title, b.getIdentificativoIsbn());
+			isbns.add(b.getIdentificativoIsbn());
+		}
+		stats.clear();
+		return isbns;
+	}
+
+	/**
+	 * Verifica che la cancellazione di un utente rilasci i libri con un numero costante di
+	 * statement: select utente, select libri, un update, delete utente.
+	 */
+	@Test
+	void testRemoveUser_setBasedRelease() {
+		List<String> isbns = userWithBooks("uscente@email.it", "Ra uno", "Rb due", "Rc tre", "Rd quattro");
+
+		userServ.removeUser("uscente@email.it");
+
+		assertEquals(4, stats.getPrepareStatementCount());
+		assertFalse(userRep.existsByEmail("uscente@email.it"));
+		for (String isbn : isbns)
+			assertNull(bookRep.findByIdentificativoIsbn(isbn).getProprietario());
+	}
+
+	@Test
+	void testReturnBooks() {
+		List<String> isbns = userWithBooks("restituisce@email.it", "Sa uno", "Sb due", "Sc tre");
+
+		UserDtoOut dto = userServ.returnBooks("restituisce@email.it", List.of(isbns.get(0), isbns.get(2)));
+
+		assertEquals(List.of(isbns.get(1)), dto.getBooksInPossession().stream()
+				.map(LibroDtoOut::getIdentificativoIsbn).collect(Collectors.toList()));
+		assertEquals(1, userRep.findByEmail("restituisce@email.it").getLoans());
+		assertNull(bookRep.findByIdentificativoIsbn(isbns.get(0)).getProprietario());
+
+		assertThrows(BookNotInPossessionException.class,
+				() -> userServ.returnBooks("restituisce@email.it", List.of(isbns.get(1), isbns.get(2))));
+		assertEquals("restituisce@email.it", bookRep.findByIdentificativoIsbn(isbns.get(1)).getProprietario().getEmail());
+	}
+
+}
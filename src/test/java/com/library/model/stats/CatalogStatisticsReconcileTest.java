@@ -0,0 +1,76 @@
+package com.library.model.stats;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.library.model.dto.LibroDtoIn;
+import com.library.model.service.BookServ;
+
+@SpringBootTest
+public class CatalogStatisticsReconcileTest {
+
+	@Autowired
+	private CatalogStatistics stats;
+
+	@Autowired
+	private BookServ bookServ;
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	private long count(String sql) {
+		return jdbc.queryForObject(sql, Long.class);
+	}
+
+	/**
+	 * Modifiche concluse mentre la riconciliazione legge il database: la creazione fatta dopo
+	 * la lettura dei totali e la modifica di prezzo non vanno perse con la sostituzione degli
+	 * aggregati.
+	 */
+	@Test
+	public void testEventsDuringReconcileAreNotLost() throws Exception {
+		LibroDtoIn existing = bookServ.createDtoInParam("Statistiche prima", "Saggio", "Autore", "IT", 10);
+		stats.reconcile();
+
+		JdbcTemplate racing = spy(jdbc);
+		doAnswer(inv -> {
+			Object result = inv.callRealMethod();
+			// scritture di un'altra richiesta, concluse prima della fine della riconciliazione
+			try (ExecutorService other = Executors.newSingleThreadExecutor()) {
+				other.submit(() -> {
+					bookServ.createDtoInParam("Statistiche durante", "Saggio", "Autore", "IT", 20);
+					bookServ.modifyBookParam(existing.getIdentificativoIsbn(), null, null, null, null, 15.0);
+				}).get(10, TimeUnit.SECONDS);
+			}
+			return result;
+		}).when(racing).query(eq(CatalogStatistics.TOTALS_SQL), any(RowCallbackHandler.class));
+
+		ReflectionTestUtils.setField(stats, "jdbc", racing);
+		try {
+			stats.reconcile();
+		} finally {
+			ReflectionTestUtils.setField(stats, "jdbc", jdbc);
+		}
+
+		assertEquals(count("select count(*) from books"), stats.catalog().getTotals().getCount());
+		assertEquals(jdbc.queryForObject("select sum(costo) from books", Double.class),
+				stats.catalog().getTotals().getTotalPrice(), 1e-9);
+		assertEquals(count("select count(*) from books where autore = 'Autore'"),
+				stats.catalog().getByAuthor().get("Autore").getCount());
+	}
+
+}
@@ -0,0 +1,77 @@
+package com.library.model.stats;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.library.model.dto.CatalogStatsDto;
+import com.library.model.dto.UserStatsDto;
+import com.library.model.event.BookChangedEvent;
+import com.library.model.event.BookSnapshot;
+import com.library.model.event.UserChangedEvent;
+import com.library.model.event.UserSnapshot;
+
+public class CatalogStatisticsTest {
+
+	private CatalogStatistics stats;
+
+	@BeforeEach
+	public void setup() {
+		stats = new CatalogStatistics();
+		stats.onUserChanged(new UserChangedEvent(null, new UserSnapshot(1L, "Mario", "Rossi", "mario@email.it", 0, null)));
+		stats.onUserChanged(new UserChangedEvent(null, new UserSnapshot(2L, "Luca", "Bianchi", "luca@email.it", 0, null)));
+		stats.onBookChanged(new BookChangedEvent(null, book(1, "Tolkien", 10, null)));
+		stats.onBookChanged(new BookChangedEvent(null, book(2, "Tolkien", 20, null)));
+		stats.onBookChanged(new BookChangedEvent(null, book(3, "King", 30, null)));
+	}
+
+	private static BookSnapshot book(long id, String author, double price, String owner) {
+		return new BookSnapshot(id, "isbn-" + id, "Titolo " + id, "Fantasy", author, "IT", price, owner, 0, null);
+	}
+
+	/**
+	 * Verifica totali e medie per autore dopo creazione e modifica di prezzo.
+	 */
+	@Test
+	void testCatalog_groupsAndAverages() {
+		stats.onBookChanged(new BookChangedEvent(book(2, "Tolkien", 20, null), book(2, "Tolkien", 40, null)));
+
+		CatalogStatsDto dto = stats.catalog();
+		assertEquals(3, dto.getTotals().getCount());
+		assertEquals(80, dto.getTotals().getTotalPrice());
+		assertEquals(25, dto.getByAuthor().get("Tolkien").getAveragePrice());
+		assertEquals(3, dto.getByType().get("Fantasy").getCount());
+
+		stats.onBookChanged(new BookChangedEvent(book(3, "King", 30, null), null));
+		assertNull(stats.catalog().getByAuthor().get("King"));
+	}
+
+	/**
+	 * Verifica venduti/non venduti e la distribuzione degli utenti per numero di libri,
+	 * anche quando un utente cambia email.
+	 */
+	@Test
+	void testUsers_ownershipHistogram() {
+		stats.onBookChanged(new BookChangedEvent(book(1, "Tolkien", 10, null), book(1, "Tolkien", 10, "mario@email.it")));
+		stats.onBookChanged(new BookChangedEvent(book(2, "Tolkien", 20, null), book(2, "Tolkien", 20, "mario@email.it")));
+		stats.onUserChanged(new UserChangedEvent(new UserSnapshot(1L, "Mario", "Rossi", "mario@email.it", 0, null),
+				new UserSnapshot(1L, "Mario", "Rossi", "mario.rossi@email.it", 0, null)));
+		// il cambio di email è seguito dagli eventi dei libri in possesso
+		stats.onBookChanged(new BookChangedEvent(book(1, "Tolkien", 10, "mario@email.it"), book(1, "Tolkien", 10, "mario.rossi@email.it")));
+		stats.onBookChanged(new BookChangedEvent(book(2, "Tolkien", 20, "mario@email.it"), book(2, "Tolkien", 20, "mario.rossi@email.it")));
+		stats.onBookChanged(new BookChangedEvent(book(1, "Tolkien", 10, "mario.rossi@email.it"), book(1, "Tolkien", 10, null)));
+
+		assertEquals(1, stats.catalog().getSold());
+		assertEquals(2, stats.catalog().getNotSold());
+
+		UserStatsDto users = stats.users();
+		assertEquals(2, users.getTotalUsers());
+		assertEquals(1, users.getBooksInPossession());
+		assertEquals(Map.of(0, 1L, 1, 1L), users.getUsersByBookCount());
+	}
+
+}